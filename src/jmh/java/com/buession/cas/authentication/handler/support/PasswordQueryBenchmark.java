@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 
+ * (the "License"); you may not use this file except in compliance with the License. You may obtain 
+ * a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * =================================================================================================
+ * 
+ * This software consists of voluntary contributions made by many individuals on behalf of the
+ * Apache Software Foundation. For more information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ * 
+ * +------------------------------------------------------------------------------------------------+
+ * | License: http://cas-server-support.buession.com.cn/LICENSE 									|
+ * | Author: Yong.Teng <webmaster@buession.com> 													|
+ * | Copyright @ 2013-2014 Buession.com Inc.														|
+ * +------------------------------------------------------------------------------------------------+
+ */
+package com.buession.cas.authentication.handler.support;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+/**
+ * 用户密码查询基准测试（H2 内存数据库）：通用 queryForObject 与预编译语句创建器、结果提取器对比
+ * 
+ * @author Yong.Teng <webmaster@buession.com>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PasswordQueryBenchmark {
+
+	private final static String SQL = "SELECT password FROM users WHERE username = ?";
+
+	private final static int USERS = 10000;
+
+	private SingleConnectionDataSource dataSource;
+
+	private JdbcTemplate jdbcTemplate;
+
+	private DatabaseQueryAuthenticationHandler handler;
+
+	private int next;
+
+	@Setup
+	public void setUp() {
+		dataSource = new SingleConnectionDataSource("jdbc:h2:mem:password_query", "sa", "", true);
+		jdbcTemplate = new JdbcTemplate(dataSource);
+
+		jdbcTemplate.execute("CREATE TABLE users (username VARCHAR(64) PRIMARY KEY, "
+				+ "password VARCHAR(128) NOT NULL)");
+		for (int i = 0; i < USERS; i++) {
+			jdbcTemplate.update("INSERT INTO users (username, password) VALUES (?, ?)", "user" + i,
+					"password" + i);
+		}
+
+		handler = new DatabaseQueryAuthenticationHandler();
+		handler.setJdbcTemplate(jdbcTemplate);
+		handler.setSql(SQL);
+	}
+
+	@TearDown
+	public void tearDown() {
+		jdbcTemplate.execute("DROP ALL OBJECTS");
+		dataSource.destroy();
+	}
+
+	@Benchmark
+	public String queryForObject() {
+		return jdbcTemplate.queryForObject(SQL, String.class, nextUsername());
+	}
+
+	@Benchmark
+	public String statementCreator() {
+		return handler.queryPassword(nextUsername());
+	}
+
+	private String nextUsername() {
+		next = next + 1 == USERS ? 0 : next + 1;
+		return "user" + next;
+	}
+
+}
\ No newline at end of file
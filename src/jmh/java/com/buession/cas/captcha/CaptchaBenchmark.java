@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 
+ * (the "License"); you may not use this file except in compliance with the License. You may obtain 
+ * a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * =================================================================================================
+ * 
+ * This software consists of voluntary contributions made by many individuals on behalf of the
+ * Apache Software Foundation. For more information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ * 
+ * +------------------------------------------------------------------------------------------------+
+ * | License: http://cas-server-support.buession.com.cn/LICENSE 									|
+ * | Author: Yong.Teng <webmaster@buession.com> 													|
+ * | Copyright @ 2013-2014 Buession.com Inc.														|
+ * +------------------------------------------------------------------------------------------------+
+ */
+package com.buession.cas.captcha;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.code.kaptcha.impl.DefaultKaptcha;
+import com.google.code.kaptcha.util.Config;
+
+/**
+ * 验证码生成基准测试：生成文本、渲染图片、编码图片
+ * 
+ * @author Yong.Teng <webmaster@buession.com>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CaptchaBenchmark {
+
+	@Param({"jpg", "png", "gif"})
+	private String formatName;
+
+	private DefaultKaptcha producer;
+
+	private CaptchaImageEncoder encoder;
+
+	private String text;
+
+	private BufferedImage image;
+
+	@Setup
+	public void setUp() {
+		producer = new DefaultKaptcha();
+		producer.setConfig(new Config(new Properties()));
+
+		encoder = new CaptchaImageEncoder(formatName);
+		text = producer.createText();
+		image = producer.createImage(text);
+	}
+
+	@TearDown
+	public void tearDown() {
+		encoder.destroy();
+	}
+
+	@Benchmark
+	public String createText() {
+		return producer.createText();
+	}
+
+	@Benchmark
+	public BufferedImage createImage() {
+		return producer.createImage(text);
+	}
+
+	@Benchmark
+	public CaptchaImage encode() throws IOException {
+		return encoder.encode(text, image);
+	}
+
+	@Benchmark
+	public CaptchaImage createAndEncode() throws IOException {
+		final String value = producer.createText();
+		return encoder.encode(value, producer.createImage(value));
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 
+ * (the "License"); you may not use this file except in compliance with the License. You may obtain 
+ * a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * =================================================================================================
+ * 
+ * This software consists of voluntary contributions made by many individuals on behalf of the
+ * Apache Software Foundation. For more information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ * 
+ * +------------------------------------------------------------------------------------------------+
+ * | License: http://cas-server-support.buession.com.cn/LICENSE 									|
+ * | Author: Yong.Teng <webmaster@buession.com> 													|
+ * | Copyright @ 2013-2014 Buession.com Inc.														|
+ * +------------------------------------------------------------------------------------------------+
+ */
+package com.buession.cas.service;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.code.kaptcha.util.Config;
+
+/**
+ * 进程内验证码服务基准测试：缓存、验证、删除
+ * 
+ * @author Yong.Teng <webmaster@buession.com>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class LocalCaptchaServiceBenchmark {
+
+	private final static String VALIDATE_CODE = "a3k9x";
+
+	private LocalCaptchaService captchaService;
+
+	@Setup
+	public void setUp() {
+		captchaService = new LocalCaptchaService(new Config(new Properties()));
+		captchaService.setLifetime(60);
+	}
+
+	@State(Scope.Thread)
+	public static class Keys {
+
+		private final static AtomicInteger SEQUENCE = new AtomicInteger();
+
+		private final String prefix = "validateCode_" + SEQUENCE.incrementAndGet() + "_";
+
+		private int next;
+
+		public String next() {
+			return prefix + (next++ & 0xffff);
+		}
+
+	}
+
+	@Benchmark
+	public boolean addValidateDelete(final Keys keys) {
+		final String key = keys.next();
+
+		captchaService.add(key, VALIDATE_CODE);
+
+		final boolean result = captchaService.validate(key, VALIDATE_CODE);
+		captchaService.delete(key);
+
+		return result;
+	}
+
+	@Benchmark
+	public boolean addAndConsume(final Keys keys) {
+		final String key = keys.next();
+
+		captchaService.add(key, VALIDATE_CODE);
+
+		return captchaService.validateAndConsume(key, VALIDATE_CODE);
+	}
+
+}
\ No newline at end of file
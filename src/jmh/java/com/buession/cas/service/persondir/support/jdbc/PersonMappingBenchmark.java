@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 
+ * (the "License"); you may not use this file except in compliance with the License. You may obtain 
+ * a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * =================================================================================================
+ * 
+ * This software consists of voluntary contributions made by many individuals on behalf of the
+ * Apache Software Foundation. For more information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ * 
+ * +------------------------------------------------------------------------------------------------+
+ * | License: http://cas-server-support.buession.com.cn/LICENSE 									|
+ * | Author: Yong.Teng <webmaster@buession.com> 													|
+ * | Copyright @ 2013-2014 Buession.com Inc.														|
+ * +------------------------------------------------------------------------------------------------+
+ */
+package com.buession.cas.service.persondir.support.jdbc;
+
+import java.sql.Date;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.jasig.services.persondir.IPersonAttributes;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+/**
+ * 用户属性映射基准测试（H2 内存数据库）：直接从 ResultSet 构建用户属性与经 RowMapper 和多值属性转换对比，
+ * 配合 -prof gc 比较每次查询的内存分配
+ * 
+ * @author Yong.Teng <webmaster@buession.com>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PersonMappingBenchmark {
+
+	private final static String QUERY_TEMPLATE = "SELECT username, nickname, email, mobile, "
+			+ "realname, gender, birthday, status FROM people WHERE {0}";
+
+	private final static int USERS = 10000;
+
+	private SingleConnectionDataSource dataSource;
+
+	private JdbcTemplate jdbcTemplate;
+
+	private SingleRowJdbcPersonAttributeDao directDao;
+
+	private SingleRowJdbcPersonAttributeDao rowMapperDao;
+
+	private int next;
+
+	@Setup
+	public void setUp() {
+		dataSource = new SingleConnectionDataSource("jdbc:h2:mem:person_mapping", "sa", "", true);
+		jdbcTemplate = new JdbcTemplate(dataSource);
+
+		jdbcTemplate.execute("CREATE TABLE people (username VARCHAR(64) PRIMARY KEY, "
+				+ "nickname VARCHAR(64), email VARCHAR(128), mobile VARCHAR(32), "
+				+ "realname VARCHAR(64), gender INT, birthday DATE, status INT NOT NULL)");
+		for (int i = 0; i < USERS; i++) {
+			jdbcTemplate.update("INSERT INTO people (username, nickname, email, mobile, realname, "
+					+ "gender, birthday, status) VALUES (?, ?, ?, ?, ?, ?, ?, ?)", "user" + i,
+					"nickname" + i, "user" + i + "@buession.com", i % 3 == 0 ? null : "1380000"
+							+ i, "realname" + i, i % 2, new Date(0), 1);
+		}
+
+		directDao = createDao(true);
+		rowMapperDao = createDao(false);
+	}
+
+	@TearDown
+	public void tearDown() {
+		jdbcTemplate.execute("DROP ALL OBJECTS");
+		dataSource.destroy();
+	}
+
+	@Benchmark
+	public IPersonAttributes directMapping() {
+		return directDao.getPerson(nextUsername());
+	}
+
+	@Benchmark
+	public IPersonAttributes rowMapper() {
+		return rowMapperDao.getPerson(nextUsername());
+	}
+
+	private SingleRowJdbcPersonAttributeDao createDao(final boolean directMapping) {
+		final SingleRowJdbcPersonAttributeDao dao = new SingleRowJdbcPersonAttributeDao();
+
+		dao.setJdbcTemplate(jdbcTemplate);
+		dao.setQueryTemplate(QUERY_TEMPLATE);
+		dao.setQueryAttributeMapping(Collections.singletonMap("username", "username"));
+		dao.setDirectMapping(directMapping);
+
+		return dao;
+	}
+
+	private String nextUsername() {
+		next = next + 1 == USERS ? 0 : next + 1;
+		return "user" + next;
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 
+ * (the "License"); you may not use this file except in compliance with the License. You may obtain 
+ * a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * =================================================================================================
+ * 
+ * This software consists of voluntary contributions made by many individuals on behalf of the
+ * Apache Software Foundation. For more information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ * 
+ * +------------------------------------------------------------------------------------------------+
+ * | License: http://cas-server-support.buession.com.cn/LICENSE 									|
+ * | Author: Yong.Teng <webmaster@buession.com> 													|
+ * | Copyright @ 2013-2014 Buession.com Inc.														|
+ * +------------------------------------------------------------------------------------------------+
+ */
+package com.buession.cas.web.utils;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.http.Cookie;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import com.buession.mcrypt.Sha512Mcrypt;
+import com.google.code.kaptcha.util.Config;
+
+/**
+ * 验证码 Cookie 验证基准测试
+ * 
+ * @author Yong.Teng <webmaster@buession.com>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CaptchaUtilsBenchmark {
+
+	private final static String VALIDATE_CODE = "a3k9x";
+
+	/**
+	 * 是否接受 0.0.1 版本的验证码 Cookie
+	 */
+	@Param({ "false", "true" })
+	private boolean legacyCookieEnabled;
+
+	private Config config;
+
+	private MockHttpServletRequest request;
+
+	private MockHttpServletRequest legacyRequest;
+
+	@Setup
+	public void setUp() {
+		config = new Config(new Properties());
+		CaptchaUtils.setLegacyCookieEnabled(legacyCookieEnabled);
+
+		request = new MockHttpServletRequest();
+		request.setCookies(new Cookie(CaptchaUtils.getCaptchaCookieName(config), CaptchaUtils
+				.encode(request.getSession().getId(), VALIDATE_CODE)));
+
+		legacyRequest = new MockHttpServletRequest();
+
+		final Sha512Mcrypt mcrypt = new Sha512Mcrypt("UTF-8", 2);
+		mcrypt.setSalt(legacyRequest.getSession().getId());
+		legacyRequest.setCookies(new Cookie(CaptchaUtils.getCaptchaCookieName(config), mcrypt
+				.encode(VALIDATE_CODE)));
+	}
+
+	@Benchmark
+	public boolean validate() {
+		return CaptchaUtils.validate(request, config, VALIDATE_CODE);
+	}
+
+	@Benchmark
+	public boolean validateMismatch() {
+		return CaptchaUtils.validate(request, config, "b7m2q");
+	}
+
+	@Benchmark
+	public boolean validateLegacy() {
+		return CaptchaUtils.validate(legacyRequest, config, VALIDATE_CODE);
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,56 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 
+ * (the "License"); you may not use this file except in compliance with the License. You may obtain 
+ * a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * =================================================================================================
+ * 
+ * This software consists of voluntary contributions made by many individuals on behalf of the
+ * Apache Software Foundation. For more information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ * 
+ * +------------------------------------------------------------------------------------------------+
+ * | License: http://cas-server-support.buession.com.cn/LICENSE 									|
+ * | Author: Yong.Teng <webmaster@buession.com> 													|
+ * | Copyright @ 2013-2014 Buession.com Inc.														|
+ * +------------------------------------------------------------------------------------------------+
+ */
+package com.buession.cas.authentication.handler;
+
+/**
+ * 可验证密码的加密器，由加密器自行比较用户输入密码与存储的密码，以支持带盐值和参数的密码格式
+ * 
+ * @author Yong.Teng <webmaster@buession.com>
+ */
+public interface MatchablePasswordEncoder extends org.jasig.cas.authentication.handler.PasswordEncoder {
+
+	/**
+	 * 以恒定时间验证密码
+	 * 
+	 * @param password
+	 *        用户输入密码
+	 * @param encodedPassword
+	 *        存储的密码
+	 * @return 密码是否正确
+	 */
+	boolean matches(String password, String encodedPassword);
+
+	/**
+	 * 判断存储的密码是否需要以当前算法和参数重新加密
+	 * 
+	 * @param encodedPassword
+	 *        存储的密码
+	 * @return 是否需要重新加密
+	 */
+	boolean needsUpgrade(String encodedPassword);
+
+}
\ No newline at end of file
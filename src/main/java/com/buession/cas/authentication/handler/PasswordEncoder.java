@@ -26,6 +26,9 @@
  */
 package com.buession.cas.authentication.handler;
 
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+
 import com.buession.mcrypt.Mcrypt;
 
 /**
@@ -33,12 +36,29 @@ import com.buession.mcrypt.Mcrypt;
  * 
  * @author Yong.Teng <webmaster@buession.com>
  */
-public class PasswordEncoder extends Mcrypt implements
-		org.jasig.cas.authentication.handler.PasswordEncoder {
+public class PasswordEncoder extends Mcrypt implements MatchablePasswordEncoder {
+
+	private final static Charset UTF_8 = Charset.forName("UTF-8");
 
 	@Override
 	public String encode(String password) {
 		return super.encode(password);
 	}
 
+	@Override
+	public boolean matches(final String password, final String encodedPassword) {
+		if (encodedPassword == null) {
+			return false;
+		}
+
+		final String encoded = encode(password == null ? "" : password);
+		return encoded != null
+				&& MessageDigest.isEqual(encoded.getBytes(UTF_8), encodedPassword.getBytes(UTF_8));
+	}
+
+	@Override
+	public boolean needsUpgrade(final String encodedPassword) {
+		return false;
+	}
+
 }
\ No newline at end of file
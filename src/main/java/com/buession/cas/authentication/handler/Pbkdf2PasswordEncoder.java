@@ -0,0 +1,443 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 
+ * (the "License"); you may not use this file except in compliance with the License. You may obtain 
+ * a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * =================================================================================================
+ * 
+ * This software consists of voluntary contributions made by many individuals on behalf of the
+ * Apache Software Foundation. For more information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ * 
+ * +------------------------------------------------------------------------------------------------+
+ * | License: http://cas-server-support.buession.com.cn/LICENSE 									|
+ * | Author: Yong.Teng <webmaster@buession.com> 													|
+ * | Copyright @ 2013-2014 Buession.com Inc.														|
+ * +------------------------------------------------------------------------------------------------+
+ */
+package com.buession.cas.authentication.handler;
+
+import java.nio.charset.Charset;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Locale;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.util.Assert;
+
+import com.buession.cas.utils.HexUtils;
+
+/**
+ * PBKDF2 密码加密，算法、迭代次数和盐值随密码一起存储，格式为：
+ * $pbkdf2-sha256$迭代次数$盐值$摘要（盐值和摘要为十六进制）
+ * 
+ * 非 PBKDF2 格式的密码交由 legacyPasswordEncoder 验证，并视为需要重新加密；
+ * 设置 targetLatency 后，启动时按本机性能调整迭代次数，使一次验证耗时接近目标值；
+ * 调整结果受测量误差和节点性能影响，此时存储的迭代次数不低于调整结果的一半即不再重新加密
+ * 
+ * @author Yong.Teng <webmaster@buession.com>
+ */
+public class Pbkdf2PasswordEncoder implements MatchablePasswordEncoder, InitializingBean {
+
+	private final static String PREFIX = "$pbkdf2-";
+
+	private final static Charset UTF_8 = Charset.forName("UTF-8");
+
+	/**
+	 * 摘要算法（sha1、sha256、sha512）
+	 */
+	private String algorithm = "sha256";
+
+	/**
+	 * 迭代次数
+	 */
+	private volatile int iterations = 10000;
+
+	/**
+	 * 迭代次数是否由 {@link #tune()} 调整
+	 */
+	private volatile boolean tuned = false;
+
+	/**
+	 * 最小迭代次数
+	 */
+	private int minIterations = 1000;
+
+	/**
+	 * 盐值长度（字节）
+	 */
+	private int saltLength = 16;
+
+	/**
+	 * 摘要长度（字节）
+	 */
+	private int hashLength = 32;
+
+	/**
+	 * 目标验证耗时（毫秒），小于等于 0 时不调整迭代次数
+	 */
+	private long targetLatency;
+
+	/**
+	 * 旧密码加密器
+	 */
+	private org.jasig.cas.authentication.handler.PasswordEncoder legacyPasswordEncoder;
+
+	private final SecureRandom random = new SecureRandom();
+
+	private final static Logger logger = LoggerFactory.getLogger(Pbkdf2PasswordEncoder.class);
+
+	/**
+	 * 返回摘要算法
+	 * 
+	 * @return 摘要算法
+	 */
+	public String getAlgorithm() {
+		return algorithm;
+	}
+
+	/**
+	 * 设置摘要算法
+	 * 
+	 * @param algorithm
+	 *        摘要算法（sha1、sha256、sha512）
+	 */
+	public void setAlgorithm(final String algorithm) {
+		Assert.hasText(algorithm, "Algorithm could not be empty");
+
+		final String value = algorithm.toLowerCase(Locale.ENGLISH);
+		Assert.isTrue(value.equals("sha1") || value.equals("sha256") || value.equals("sha512"),
+				"Unsupported algorithm: " + algorithm);
+
+		this.algorithm = value;
+	}
+
+	/**
+	 * 返回迭代次数
+	 * 
+	 * @return 迭代次数
+	 */
+	public int getIterations() {
+		return iterations;
+	}
+
+	/**
+	 * 设置迭代次数
+	 * 
+	 * @param iterations
+	 *        迭代次数
+	 */
+	public void setIterations(final int iterations) {
+		Assert.isTrue(iterations > 0, "Iterations must be greater than 0");
+		this.iterations = iterations;
+		this.tuned = false;
+	}
+
+	/**
+	 * 返回最小迭代次数
+	 * 
+	 * @return 最小迭代次数
+	 */
+	public int getMinIterations() {
+		return minIterations;
+	}
+
+	/**
+	 * 设置最小迭代次数，调整迭代次数时不低于该值
+	 * 
+	 * @param minIterations
+	 *        最小迭代次数
+	 */
+	public void setMinIterations(final int minIterations) {
+		Assert.isTrue(minIterations > 0, "Min iterations must be greater than 0");
+		this.minIterations = minIterations;
+	}
+
+	/**
+	 * 返回盐值长度（字节）
+	 * 
+	 * @return 盐值长度
+	 */
+	public int getSaltLength() {
+		return saltLength;
+	}
+
+	/**
+	 * 设置盐值长度（字节）
+	 * 
+	 * @param saltLength
+	 *        盐值长度
+	 */
+	public void setSaltLength(final int saltLength) {
+		Assert.isTrue(saltLength >= 8, "Salt length must be at least 8");
+		this.saltLength = saltLength;
+	}
+
+	/**
+	 * 返回摘要长度（字节）
+	 * 
+	 * @return 摘要长度
+	 */
+	public int getHashLength() {
+		return hashLength;
+	}
+
+	/**
+	 * 设置摘要长度（字节）
+	 * 
+	 * @param hashLength
+	 *        摘要长度
+	 */
+	public void setHashLength(final int hashLength) {
+		Assert.isTrue(hashLength >= 16, "Hash length must be at least 16");
+		this.hashLength = hashLength;
+	}
+
+	/**
+	 * 返回目标验证耗时（毫秒）
+	 * 
+	 * @return 目标验证耗时
+	 */
+	public long getTargetLatency() {
+		return targetLatency;
+	}
+
+	/**
+	 * 设置目标验证耗时（毫秒），小于等于 0 时不调整迭代次数
+	 * 
+	 * @param targetLatency
+	 *        目标验证耗时
+	 */
+	public void setTargetLatency(final long targetLatency) {
+		this.targetLatency = targetLatency;
+	}
+
+	/**
+	 * 返回旧密码加密器
+	 * 
+	 * @return 旧密码加密器
+	 */
+	public org.jasig.cas.authentication.handler.PasswordEncoder getLegacyPasswordEncoder() {
+		return legacyPasswordEncoder;
+	}
+
+	/**
+	 * 设置旧密码加密器，用于验证尚未升级的密码
+	 * 
+	 * @param legacyPasswordEncoder
+	 *        旧密码加密器
+	 */
+	public void setLegacyPasswordEncoder(
+			final org.jasig.cas.authentication.handler.PasswordEncoder legacyPasswordEncoder) {
+		this.legacyPasswordEncoder = legacyPasswordEncoder;
+	}
+
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		if (targetLatency > 0) {
+			tune();
+		}
+	}
+
+	/**
+	 * 按本机性能调整迭代次数，使一次验证耗时接近目标验证耗时；调整后存储的迭代次数低于调整结果的一半时才需重新加密
+	 * 
+	 * @return 调整后的迭代次数
+	 */
+	public int tune() {
+		Assert.isTrue(targetLatency > 0, "Target latency must be greater than 0");
+
+		final byte[] password = "tune".getBytes(UTF_8);
+		final byte[] salt = new byte[saltLength];
+		final int sample = 10000;
+		long elapsed = Long.MAX_VALUE;
+
+		// 取多次测量的最小值，排除 JIT 预热和调度干扰
+		for (int i = 0; i < 5; i++) {
+			final long start = System.nanoTime();
+
+			pbkdf2(macAlgorithm(algorithm), password, salt, sample, hashLength);
+			elapsed = Math.min(elapsed, System.nanoTime() - start);
+		}
+
+		final double perIteration = (double) Math.max(1, elapsed) / sample;
+		final long target = (long) (targetLatency * 1000000L / perIteration);
+
+		iterations = (int) Math.max(minIterations, Math.min(Integer.MAX_VALUE, target / 1000 * 1000));
+		tuned = true;
+		logger.info("PBKDF2 iterations tuned to {} for target latency {} ms, "
+				+ "set iterations to {} and unset targetLatency to pin it on all nodes", new Object[] {
+				iterations, targetLatency, iterations });
+
+		return iterations;
+	}
+
+	@Override
+	public String encode(final String password) {
+		if (password == null) {
+			return null;
+		}
+
+		final int iterations = this.iterations;
+		final byte[] salt = new byte[saltLength];
+		random.nextBytes(salt);
+
+		final byte[] hash = pbkdf2(macAlgorithm(algorithm), password.getBytes(UTF_8), salt,
+				iterations, hashLength);
+		final StringBuilder sb = new StringBuilder(PREFIX.length() + 16 + (saltLength + hashLength)
+				* 2);
+
+		sb.append(PREFIX).append(algorithm).append('$').append(iterations).append('$');
+		sb.append(HexUtils.encode(salt)).append('$').append(HexUtils.encode(hash));
+
+		return sb.toString();
+	}
+
+	@Override
+	public boolean matches(final String password, final String encodedPassword) {
+		if (encodedPassword == null) {
+			return false;
+		}
+
+		if (encodedPassword.startsWith(PREFIX) == false) {
+			return legacyMatches(password, encodedPassword);
+		}
+
+		final String[] parts = encodedPassword.split("\\$");
+		if (parts.length != 5) {
+			return false;
+		}
+
+		final String macAlgorithm;
+		final int storedIterations;
+		try {
+			macAlgorithm = macAlgorithm(parts[1].substring(PREFIX.length() - 1));
+			storedIterations = Integer.parseInt(parts[2]);
+		} catch (final IllegalArgumentException e) {
+			return false;
+		}
+
+		final byte[] salt = HexUtils.decode(parts[3]);
+		final byte[] expected = HexUtils.decode(parts[4]);
+		if (storedIterations <= 0 || salt.length == 0 || expected.length == 0) {
+			return false;
+		}
+
+		final byte[] actual = pbkdf2(macAlgorithm, (password == null ? "" : password)
+				.getBytes(UTF_8), salt, storedIterations, expected.length);
+
+		return MessageDigest.isEqual(expected, actual);
+	}
+
+	@Override
+	public boolean needsUpgrade(final String encodedPassword) {
+		if (encodedPassword == null || encodedPassword.startsWith(PREFIX) == false) {
+			return true;
+		}
+
+		final String[] parts = encodedPassword.split("\\$");
+		if (parts.length != 5 || parts[1].equals(PREFIX.substring(1) + algorithm) == false) {
+			return true;
+		}
+
+		try {
+			// 调整的迭代次数随测量和节点波动，留出余量，避免密码被反复重新加密
+			return Integer.parseInt(parts[2]) < (tuned ? iterations / 2 : iterations);
+		} catch (final NumberFormatException e) {
+			return true;
+		}
+	}
+
+	private boolean legacyMatches(final String password, final String encodedPassword) {
+		if (legacyPasswordEncoder == null) {
+			return false;
+		}
+
+		if (legacyPasswordEncoder instanceof MatchablePasswordEncoder) {
+			return ((MatchablePasswordEncoder) legacyPasswordEncoder).matches(password,
+					encodedPassword);
+		}
+
+		final String encoded = legacyPasswordEncoder.encode(password == null ? "" : password);
+		return encoded != null
+				&& MessageDigest.isEqual(encoded.getBytes(UTF_8), encodedPassword.getBytes(UTF_8));
+	}
+
+	private final static String macAlgorithm(final String algorithm) {
+		if ("sha1".equals(algorithm)) {
+			return "HmacSHA1";
+		} else if ("sha256".equals(algorithm)) {
+			return "HmacSHA256";
+		} else if ("sha512".equals(algorithm)) {
+			return "HmacSHA512";
+		}
+
+		throw new IllegalArgumentException("Unsupported algorithm: " + algorithm);
+	}
+
+	/**
+	 * PBKDF2（RFC 2898）
+	 */
+	private final static byte[] pbkdf2(final String macAlgorithm, final byte[] password,
+			final byte[] salt, final int iterations, final int length) {
+		final Mac mac;
+
+		try {
+			mac = Mac.getInstance(macAlgorithm);
+			// HMAC 密钥不足分组长度时补零，单个零字节与空密钥等价
+			mac.init(new SecretKeySpec(password.length == 0 ? new byte[1] : password, macAlgorithm));
+		} catch (final GeneralSecurityException e) {
+			throw new IllegalStateException(e);
+		}
+
+		final int macLength = mac.getMacLength();
+		final byte[] result = new byte[length];
+		final byte[] u = new byte[macLength];
+		final byte[] t = new byte[macLength];
+
+		try {
+			for (int block = 1, offset = 0; offset < length; block++) {
+				mac.update(salt);
+				mac.update((byte) (block >>> 24));
+				mac.update((byte) (block >>> 16));
+				mac.update((byte) (block >>> 8));
+				mac.update((byte) block);
+				mac.doFinal(u, 0);
+				System.arraycopy(u, 0, t, 0, macLength);
+
+				for (int i = 1; i < iterations; i++) {
+					mac.update(u);
+					mac.doFinal(u, 0);
+
+					for (int j = 0; j < macLength; j++) {
+						t[j] ^= u[j];
+					}
+				}
+
+				final int n = Math.min(macLength, length - offset);
+				System.arraycopy(t, 0, result, offset, n);
+				offset += n;
+			}
+		} catch (final GeneralSecurityException e) {
+			throw new IllegalStateException(e);
+		}
+
+		return result;
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,57 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 
+ * (the "License"); you may not use this file except in compliance with the License. You may obtain 
+ * a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * =================================================================================================
+ * 
+ * This software consists of voluntary contributions made by many individuals on behalf of the
+ * Apache Software Foundation. For more information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ * 
+ * +------------------------------------------------------------------------------------------------+
+ * | License: http://cas-server-support.buession.com.cn/LICENSE 									|
+ * | Author: Yong.Teng <webmaster@buession.com> 													|
+ * | Copyright @ 2013-2014 Buession.com Inc.														|
+ * +------------------------------------------------------------------------------------------------+
+ */
+package com.buession.cas.authentication.handler;
+
+import org.jasig.cas.authentication.handler.AuthenticationException;
+
+/**
+ * 服务器繁忙，密码验证线程池已满或等待超时
+ * 
+ * @author Yong.Teng <webmaster@buession.com>
+ */
+public class ServerBusyAuthenticationException extends AuthenticationException {
+
+	private final static long serialVersionUID = -2894837564718312049L;
+
+	/**
+	 * 错误码
+	 */
+	public final static String CODE = "error.authentication.server.busy";
+
+	public ServerBusyAuthenticationException() {
+		super(CODE);
+	}
+
+	/**
+	 * @param throwable
+	 *        原始异常
+	 */
+	public ServerBusyAuthenticationException(final Throwable throwable) {
+		super(CODE, throwable);
+	}
+
+}
\ No newline at end of file
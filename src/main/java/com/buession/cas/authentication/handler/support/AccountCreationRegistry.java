@@ -0,0 +1,55 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 
+ * (the "License"); you may not use this file except in compliance with the License. You may obtain 
+ * a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * =================================================================================================
+ * 
+ * This software consists of voluntary contributions made by many individuals on behalf of the
+ * Apache Software Foundation. For more information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ * 
+ * +------------------------------------------------------------------------------------------------+
+ * | License: http://cas-server-support.buession.com.cn/LICENSE 									|
+ * | Author: Yong.Teng <webmaster@buession.com> 													|
+ * | Copyright @ 2013-2014 Buession.com Inc.														|
+ * +------------------------------------------------------------------------------------------------+
+ */
+package com.buession.cas.authentication.handler.support;
+
+/**
+ * 新建账号登记，集群部署时在各节点间共享 UnknownUsernameCache.accountCreated
+ * 
+ * @author Yong.Teng <webmaster@buession.com>
+ */
+public interface AccountCreationRegistry {
+
+	/**
+	 * 登记新建的用户名
+	 * 
+	 * @param username
+	 *        用户名
+	 * @param lifetime
+	 *        登记有效期（毫秒）
+	 */
+	void accountCreated(String username, long lifetime);
+
+	/**
+	 * 判断用户名是否在有效期内新建
+	 * 
+	 * @param username
+	 *        用户名
+	 * @return 用户名已登记时返回 true
+	 */
+	boolean isCreated(String username);
+
+}
\ No newline at end of file
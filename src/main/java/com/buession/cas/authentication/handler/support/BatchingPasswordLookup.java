@@ -0,0 +1,564 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 
+ * (the "License"); you may not use this file except in compliance with the License. You may obtain 
+ * a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * =================================================================================================
+ * 
+ * This software consists of voluntary contributions made by many individuals on behalf of the
+ * Apache Software Foundation. For more information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ * 
+ * +------------------------------------------------------------------------------------------------+
+ * | License: http://cas-server-support.buession.com.cn/LICENSE 									|
+ * | Author: Yong.Teng <webmaster@buession.com> 													|
+ * | Copyright @ 2013-2014 Buession.com Inc.														|
+ * +------------------------------------------------------------------------------------------------+
+ */
+package com.buession.cas.authentication.handler.support;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.validation.constraints.NotNull;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.dao.IncorrectResultSizeDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.util.Assert;
+
+import com.buession.cas.jdbc.ReplicaRoutingJdbcTemplate;
+
+/**
+ * 批量密码查询，将一个时间窗口内并发的用户密码查询合并为一条 IN 查询；
+ * 并发查询数较少时直接查询，不等待时间窗口
+ * 
+ * 查询语句中以 {0} 表示用户名参数列表，查询结果第一列为用户名，第二列为密码，如：
+ * SELECT username, password FROM user WHERE username IN ({0})
+ * 
+ * 结果按用户名精确匹配，未匹配的用户名视为不存在；数据库排序规则忽略大小写或尾部空格时，可开启 normalizedMatching，
+ * 未精确匹配时忽略大小写和尾部空格匹配。IN 参数个数补齐到 2 的幂（不超过每批最大用户数），便于连接池缓存预编译语句
+ * 
+ * @author Yong.Teng <webmaster@buession.com>
+ */
+public class BatchingPasswordLookup {
+
+	/**
+	 * JdbcTemplate
+	 */
+	@NotNull
+	private JdbcTemplate jdbcTemplate;
+
+	/**
+	 * 查询语句
+	 */
+	@NotNull
+	private String sql;
+
+	/**
+	 * 时间窗口（毫秒）
+	 */
+	private long window = 2;
+
+	/**
+	 * 每批最大用户数
+	 */
+	private int maxBatchSize = 100;
+
+	/**
+	 * 并发查询数不超过该值时直接查询
+	 */
+	private int bypassThreshold = 4;
+
+	/**
+	 * 等待合并查询结果的最长时间（毫秒），超时后直接查询
+	 */
+	private long waitTimeout = 1000;
+
+	/**
+	 * jdbcTemplate 为 ReplicaRoutingJdbcTemplate 时是否允许在从库查询密码
+	 */
+	private boolean replicaReads = false;
+
+	/**
+	 * 未精确匹配时是否忽略大小写和尾部空格匹配用户名
+	 */
+	private boolean normalizedMatching = false;
+
+	/**
+	 * 当前并发查询数
+	 */
+	private final AtomicInteger inFlight = new AtomicInteger();
+
+	/**
+	 * 执行查询次数
+	 */
+	private final AtomicLong queryCount = new AtomicLong();
+
+	/**
+	 * 用户查询次数
+	 */
+	private final AtomicLong lookupCount = new AtomicLong();
+
+	/**
+	 * 等待合并查询结果超时次数
+	 */
+	private final AtomicLong waitTimeoutCount = new AtomicLong();
+
+	/**
+	 * 按 IN 参数个数缓存的查询语句
+	 */
+	private final ConcurrentMap<Integer, String> batchSqls = new ConcurrentHashMap<Integer, String>();
+
+	/**
+	 * 当前收集中的批次
+	 */
+	private Batch current;
+
+	private final Object lock = new Object();
+
+	private final static Logger logger = LoggerFactory.getLogger(BatchingPasswordLookup.class);
+
+	/**
+	 * 返回 JdbcTemplate
+	 * 
+	 * @return JdbcTemplate
+	 */
+	public JdbcTemplate getJdbcTemplate() {
+		return jdbcTemplate;
+	}
+
+	/**
+	 * 设置 JdbcTemplate
+	 * 
+	 * @param jdbcTemplate
+	 *        JdbcTemplate
+	 */
+	public void setJdbcTemplate(final JdbcTemplate jdbcTemplate) {
+		this.jdbcTemplate = jdbcTemplate;
+	}
+
+	/**
+	 * 返回查询语句
+	 * 
+	 * @return 查询语句
+	 */
+	public String getSql() {
+		return sql;
+	}
+
+	/**
+	 * 设置查询语句，以 {0} 表示用户名参数列表
+	 * 
+	 * @param sql
+	 *        查询语句
+	 */
+	public void setSql(final String sql) {
+		Assert.isTrue(sql != null && sql.indexOf("{0}") > -1, "Sql must contain {0} placeholder");
+		this.sql = sql;
+		batchSqls.clear();
+	}
+
+	/**
+	 * 返回时间窗口（毫秒）
+	 * 
+	 * @return 时间窗口
+	 */
+	public long getWindow() {
+		return window;
+	}
+
+	/**
+	 * 设置时间窗口（毫秒）
+	 * 
+	 * @param window
+	 *        时间窗口
+	 */
+	public void setWindow(final long window) {
+		Assert.isTrue(window >= 0, "Window could not be negative");
+		this.window = window;
+	}
+
+	/**
+	 * 返回每批最大用户数
+	 * 
+	 * @return 每批最大用户数
+	 */
+	public int getMaxBatchSize() {
+		return maxBatchSize;
+	}
+
+	/**
+	 * 设置每批最大用户数
+	 * 
+	 * @param maxBatchSize
+	 *        每批最大用户数
+	 */
+	public void setMaxBatchSize(final int maxBatchSize) {
+		Assert.isTrue(maxBatchSize > 0, "Max batch size must be greater than 0");
+		this.maxBatchSize = maxBatchSize;
+	}
+
+	/**
+	 * 返回直接查询的并发查询数阈值
+	 * 
+	 * @return 直接查询的并发查询数阈值
+	 */
+	public int getBypassThreshold() {
+		return bypassThreshold;
+	}
+
+	/**
+	 * 设置直接查询的并发查询数阈值，并发查询数不超过该值时不合并查询
+	 * 
+	 * @param bypassThreshold
+	 *        直接查询的并发查询数阈值
+	 */
+	public void setBypassThreshold(final int bypassThreshold) {
+		this.bypassThreshold = bypassThreshold;
+	}
+
+	/**
+	 * 返回等待合并查询结果的最长时间（毫秒）
+	 * 
+	 * @return 等待合并查询结果的最长时间
+	 */
+	public long getWaitTimeout() {
+		return waitTimeout;
+	}
+
+	/**
+	 * 设置等待合并查询结果的最长时间（毫秒），超时后直接查询
+	 * 
+	 * @param waitTimeout
+	 *        等待合并查询结果的最长时间
+	 */
+	public void setWaitTimeout(final long waitTimeout) {
+		Assert.isTrue(waitTimeout > 0, "Wait timeout must be greater than 0");
+		this.waitTimeout = waitTimeout;
+	}
+
+	/**
+	 * 返回是否允许在从库查询密码
+	 * 
+	 * @return 是否允许在从库查询密码
+	 */
+	public boolean isReplicaReads() {
+		return replicaReads;
+	}
+
+	/**
+	 * 设置 jdbcTemplate 为 ReplicaRoutingJdbcTemplate 时是否允许在从库查询密码，默认在主库查询
+	 * 
+	 * @param replicaReads
+	 *        是否允许在从库查询密码
+	 */
+	public void setReplicaReads(final boolean replicaReads) {
+		this.replicaReads = replicaReads;
+	}
+
+	/**
+	 * 返回未精确匹配时是否忽略大小写和尾部空格匹配用户名
+	 * 
+	 * @return 未精确匹配时是否忽略大小写和尾部空格匹配用户名
+	 */
+	public boolean isNormalizedMatching() {
+		return normalizedMatching;
+	}
+
+	/**
+	 * 设置未精确匹配时是否忽略大小写和尾部空格匹配用户名，默认不开启；仅当数据库排序规则忽略大小写或尾部空格时开启，
+	 * 否则可能匹配到其他用户
+	 * 
+	 * @param normalizedMatching
+	 *        未精确匹配时是否忽略大小写和尾部空格匹配用户名
+	 */
+	public void setNormalizedMatching(final boolean normalizedMatching) {
+		this.normalizedMatching = normalizedMatching;
+	}
+
+	/**
+	 * 返回执行查询次数
+	 * 
+	 * @return 执行查询次数
+	 */
+	public long getQueryCount() {
+		return queryCount.get();
+	}
+
+	/**
+	 * 返回用户查询次数
+	 * 
+	 * @return 用户查询次数
+	 */
+	public long getLookupCount() {
+		return lookupCount.get();
+	}
+
+	/**
+	 * 返回等待合并查询结果超时次数
+	 * 
+	 * @return 等待合并查询结果超时次数
+	 */
+	public long getWaitTimeoutCount() {
+		return waitTimeoutCount.get();
+	}
+
+	/**
+	 * 查询用户密码
+	 * 
+	 * @param username
+	 *        用户名
+	 * @return 数据库中存储的密码
+	 * @throws IncorrectResultSizeDataAccessException
+	 *         用户不存在或存在多个时
+	 */
+	public String lookup(final String username) {
+		Assert.notNull(username, "Username could not be null");
+		lookupCount.incrementAndGet();
+
+		try {
+			if (inFlight.incrementAndGet() <= bypassThreshold) {
+				return lookupDirect(username);
+			}
+
+			final Batch batch;
+			boolean leader = false;
+
+			synchronized (lock) {
+				if (current == null) {
+					current = new Batch();
+					leader = true;
+				}
+
+				batch = current;
+				batch.add(username);
+
+				if (batch.size() >= maxBatchSize) {
+					current = null;
+					batch.full.countDown();
+				}
+			}
+
+			if (leader) {
+				try {
+					batch.full.await(window, TimeUnit.MILLISECONDS);
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+
+				synchronized (lock) {
+					if (current == batch) {
+						current = null;
+					}
+				}
+
+				execute(batch);
+			} else {
+				try {
+					if (batch.done.await(waitTimeout, TimeUnit.MILLISECONDS) == false) {
+						waitTimeoutCount.incrementAndGet();
+						logger.warn("Batched password lookup timed out after {} ms, query directly",
+								waitTimeout);
+
+						return lookupDirect(username);
+					}
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new DataAccessResourceFailureException(
+							"Interrupted while waiting for batched password lookup", e);
+				}
+			}
+
+			return batch.get(username);
+		} finally {
+			inFlight.decrementAndGet();
+		}
+	}
+
+	/**
+	 * 单独查询一个用户名，返回的行均属于该用户名
+	 */
+	private String lookupDirect(final String username) {
+		final Batch batch = new Batch();
+
+		batch.add(username);
+		execute(batch);
+
+		return batch.get(username);
+	}
+
+	private void execute(final Batch batch) {
+		final int size = batch.size();
+		final int paddedSize = size == 1 ? 1 : Math.min(Integer.highestOneBit(size - 1) << 1,
+				Math.max(size, maxBatchSize));
+		final Object[] args = new Object[paddedSize];
+		int i = 0;
+
+		for (final String username : batch.usernames) {
+			args[i++] = username;
+		}
+
+		// 以最后一个用户名补齐参数，使 IN 参数个数只有少数几种
+		while (i < paddedSize) {
+			args[i] = args[i - 1];
+			i++;
+		}
+
+		final String batchSql = getBatchSql(paddedSize);
+		logger.debug("Qurey SQL: {}, batch size: {}", batchSql, size);
+
+		try {
+			final JdbcTemplate template = replicaReads ? jdbcTemplate : ReplicaRoutingJdbcTemplate
+					.primaryOf(jdbcTemplate);
+
+			queryCount.incrementAndGet();
+			template.query(batchSql, args, new RowCallbackHandler() {
+
+				@Override
+				public void processRow(final ResultSet rs) throws SQLException {
+					// 单个用户名时不比较返回的用户名，兼容忽略大小写或尾部空格的排序规则
+					final String username = size == 1 ? batch.usernames.iterator().next() : rs
+							.getString(1);
+
+					final String password = rs.getString(2);
+
+					batch.put(batch.passwords, batch.duplicates, username, password);
+					if (normalizedMatching) {
+						batch.put(batch.normalizedPasswords, batch.normalizedDuplicates,
+								normalize(username), password);
+					}
+				}
+
+			});
+		} catch (final RuntimeException e) {
+			batch.error = e;
+		} finally {
+			batch.done.countDown();
+		}
+	}
+
+	/**
+	 * 忽略大小写和尾部空格的用户名
+	 */
+	private final static String normalize(final String username) {
+		int end = username.length();
+
+		while (end > 0 && username.charAt(end - 1) == ' ') {
+			end--;
+		}
+
+		return username.substring(0, end).toLowerCase(Locale.ENGLISH);
+	}
+
+	private String getBatchSql(final int size) {
+		String batchSql = batchSqls.get(size);
+
+		if (batchSql == null) {
+			final StringBuilder placeholders = new StringBuilder(size << 1);
+
+			for (int i = 0; i < size; i++) {
+				if (i > 0) {
+					placeholders.append(',');
+				}
+				placeholders.append('?');
+			}
+
+			batchSql = sql.replace("{0}", placeholders);
+			batchSqls.putIfAbsent(size, batchSql);
+		}
+
+		return batchSql;
+	}
+
+	/**
+	 * 查询批次；done 计数归零前由主导线程独占写入，之后只读
+	 */
+	private final static class Batch {
+
+		private final Set<String> usernames = new LinkedHashSet<String>();
+
+		private final Map<String, String> passwords = new HashMap<String, String>();
+
+		private final Set<String> duplicates = new HashSet<String>();
+
+		private final Map<String, String> normalizedPasswords = new HashMap<String, String>();
+
+		private final Set<String> normalizedDuplicates = new HashSet<String>();
+
+		private final CountDownLatch full = new CountDownLatch(1);
+
+		private final CountDownLatch done = new CountDownLatch(1);
+
+		private RuntimeException error;
+
+		public void add(final String username) {
+			usernames.add(username);
+		}
+
+		public int size() {
+			return usernames.size();
+		}
+
+		public void put(final Map<String, String> passwords, final Set<String> duplicates,
+				final String username, final String password) {
+			if (passwords.containsKey(username)) {
+				duplicates.add(username);
+			} else {
+				passwords.put(username, password);
+			}
+		}
+
+		public String get(final String username) {
+			if (error != null) {
+				throw error;
+			}
+
+			if (passwords.containsKey(username)) {
+				return get(passwords, duplicates, username);
+			}
+
+			return get(normalizedPasswords, normalizedDuplicates, normalize(username));
+		}
+
+		private static String get(final Map<String, String> passwords,
+				final Set<String> duplicates, final String username) {
+			if (duplicates.contains(username)) {
+				throw new IncorrectResultSizeDataAccessException(1, 2);
+			}
+
+			if (passwords.containsKey(username) == false) {
+				throw new EmptyResultDataAccessException(1);
+			}
+
+			return passwords.get(username);
+		}
+
+	}
+
+}
\ No newline at end of file
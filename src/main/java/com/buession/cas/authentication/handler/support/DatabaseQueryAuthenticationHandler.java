@@ -26,6 +26,14 @@
  */
 package com.buession.cas.authentication.handler.support;
 
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.Callable;
+
 import javax.validation.constraints.NotNull;
 
 import org.jasig.cas.authentication.handler.AuthenticationException;
@@ -33,7 +41,19 @@ import org.jasig.cas.authentication.handler.PasswordEncoder;
 import org.jasig.cas.authentication.principal.UsernamePasswordCredentials;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.dao.IncorrectResultSizeDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.SqlProvider;
+
+import com.buession.cas.authentication.handler.MatchablePasswordEncoder;
+import com.buession.cas.jdbc.ReplicaRoutingJdbcTemplate;
+import com.buession.cas.utils.ExpiringCache;
+import com.buession.cas.utils.LatencyMonitor;
 
 /**
  * 简单数据库查询
@@ -48,6 +68,58 @@ public class DatabaseQueryAuthenticationHandler extends AbstractJdbcAuthenticati
 	@NotNull
 	protected String sql;
 
+	/**
+	 * 用户密码缓存（用户名 - 数据库中存储的密码），为空时不缓存
+	 */
+	private ExpiringCache<String, String> credentialCache;
+
+	/**
+	 * 不存在用户名缓存，为空时不缓存
+	 */
+	private UnknownUsernameCache unknownUsernameCache;
+
+	/**
+	 * 批量密码查询，为空时逐个查询
+	 */
+	private BatchingPasswordLookup passwordLookup;
+
+	/**
+	 * 密码重新加密队列，为空时不升级密码
+	 */
+	private PasswordRehashQueue passwordRehashQueue;
+
+	/**
+	 * 密码验证线程池，为空时在当前线程验证
+	 */
+	private PasswordVerificationExecutor verificationExecutor;
+
+	/**
+	 * 延迟监控，为空时不记录
+	 */
+	private LatencyMonitor latencyMonitor;
+
+	/**
+	 * 是否请求连接池缓存预编译语句
+	 */
+	private boolean statementPoolable = true;
+
+	/**
+	 * jdbcTemplate 为 ReplicaRoutingJdbcTemplate 时是否允许在从库查询密码
+	 */
+	private boolean replicaReads = false;
+
+	/**
+	 * 预编译语句创建器
+	 */
+	private final PreparedStatementCreator statementCreator = new PasswordStatementCreator();
+
+	/**
+	 * 密码结果提取器
+	 */
+	private final static ResultSetExtractor<String> PASSWORD_EXTRACTOR = new PasswordExtractor();
+
+	private final static Charset UTF_8 = Charset.forName("UTF-8");
+
 	private final static Logger logger = LoggerFactory
 			.getLogger(DatabaseQueryAuthenticationHandler.class);
 
@@ -70,22 +142,400 @@ public class DatabaseQueryAuthenticationHandler extends AbstractJdbcAuthenticati
 		this.sql = sql;
 	}
 
+	/**
+	 * 返回密码重新加密队列
+	 * 
+	 * @return 密码重新加密队列
+	 */
+	public PasswordRehashQueue getPasswordRehashQueue() {
+		return passwordRehashQueue;
+	}
+
+	/**
+	 * 设置密码重新加密队列，登录成功后将旧算法或旧参数加密的密码以当前密码加密器重新加密
+	 * 
+	 * @param passwordRehashQueue
+	 *        密码重新加密队列
+	 */
+	public void setPasswordRehashQueue(final PasswordRehashQueue passwordRehashQueue) {
+		this.passwordRehashQueue = passwordRehashQueue;
+	}
+
+	/**
+	 * 返回密码验证线程池
+	 * 
+	 * @return 密码验证线程池
+	 */
+	public PasswordVerificationExecutor getVerificationExecutor() {
+		return verificationExecutor;
+	}
+
+	/**
+	 * 设置密码验证线程池，密码加密器耗时较长时避免占用 Servlet 容器线程
+	 * 
+	 * @param verificationExecutor
+	 *        密码验证线程池
+	 */
+	public void setVerificationExecutor(final PasswordVerificationExecutor verificationExecutor) {
+		this.verificationExecutor = verificationExecutor;
+	}
+
+	/**
+	 * 返回延迟监控
+	 * 
+	 * @return 延迟监控
+	 */
+	public LatencyMonitor getLatencyMonitor() {
+		return latencyMonitor;
+	}
+
+	/**
+	 * 设置延迟监控，记录 auth.handler、auth.query 及 auth.verify 耗时
+	 * 
+	 * @param latencyMonitor
+	 *        延迟监控
+	 */
+	public void setLatencyMonitor(final LatencyMonitor latencyMonitor) {
+		this.latencyMonitor = latencyMonitor;
+	}
+
+	/**
+	 * 返回是否请求连接池缓存预编译语句
+	 * 
+	 * @return 是否请求连接池缓存预编译语句
+	 */
+	public boolean isStatementPoolable() {
+		return statementPoolable;
+	}
+
+	/**
+	 * 设置是否请求连接池缓存预编译语句，仅对支持语句缓存的连接池有效
+	 * 
+	 * @param statementPoolable
+	 *        是否请求连接池缓存预编译语句
+	 */
+	public void setStatementPoolable(final boolean statementPoolable) {
+		this.statementPoolable = statementPoolable;
+	}
+
+	/**
+	 * 返回是否允许在从库查询密码
+	 * 
+	 * @return 是否允许在从库查询密码
+	 */
+	public boolean isReplicaReads() {
+		return replicaReads;
+	}
+
+	/**
+	 * 设置 jdbcTemplate 为 ReplicaRoutingJdbcTemplate 时是否允许在从库查询密码，默认在主库查询；
+	 * 从库存在复制延迟，修改密码后旧密码在延迟期间仍可登录
+	 * 
+	 * @param replicaReads
+	 *        是否允许在从库查询密码
+	 */
+	public void setReplicaReads(final boolean replicaReads) {
+		this.replicaReads = replicaReads;
+	}
+
+	/**
+	 * 返回用户密码缓存
+	 * 
+	 * @return 用户密码缓存
+	 */
+	public ExpiringCache<String, String> getCredentialCache() {
+		return credentialCache;
+	}
+
+	/**
+	 * 设置用户密码缓存，缓存数据库中存储的密码，有效期应较短
+	 * 
+	 * @param credentialCache
+	 *        用户密码缓存
+	 */
+	public void setCredentialCache(final ExpiringCache<String, String> credentialCache) {
+		this.credentialCache = credentialCache;
+	}
+
+	/**
+	 * 返回不存在用户名缓存
+	 * 
+	 * @return 不存在用户名缓存
+	 */
+	public UnknownUsernameCache getUnknownUsernameCache() {
+		return unknownUsernameCache;
+	}
+
+	/**
+	 * 设置不存在用户名缓存，已知不存在的用户名不再查询数据库
+	 * 
+	 * @param unknownUsernameCache
+	 *        不存在用户名缓存
+	 */
+	public void setUnknownUsernameCache(final UnknownUsernameCache unknownUsernameCache) {
+		this.unknownUsernameCache = unknownUsernameCache;
+	}
+
+	/**
+	 * 新建账号后调用，使该用户名不再被视为不存在；未设置 UnknownUsernameCache 的 accountCreationRegistry
+	 * 时只对本节点生效
+	 * 
+	 * @param username
+	 *        用户名
+	 */
+	public void accountCreated(final String username) {
+		if (unknownUsernameCache != null) {
+			unknownUsernameCache.accountCreated(getPrincipalNameTransformer().transform(username));
+		}
+	}
+
+	/**
+	 * 返回批量密码查询
+	 * 
+	 * @return 批量密码查询
+	 */
+	public BatchingPasswordLookup getPasswordLookup() {
+		return passwordLookup;
+	}
+
+	/**
+	 * 设置批量密码查询，登录并发较高时合并数据库查询
+	 * 
+	 * @param passwordLookup
+	 *        批量密码查询
+	 */
+	public void setPasswordLookup(final BatchingPasswordLookup passwordLookup) {
+		this.passwordLookup = passwordLookup;
+	}
+
+	/**
+	 * 使用户密码缓存失效，用户修改密码或被禁用时调用
+	 * 
+	 * @param username
+	 *        用户名
+	 */
+	public void invalidateCredentialCache(final String username) {
+		if (credentialCache != null) {
+			credentialCache.remove(getPrincipalNameTransformer().transform(username));
+		}
+	}
+
+	/**
+	 * 使所有用户密码缓存失效
+	 */
+	public void invalidateCredentialCache() {
+		if (credentialCache != null) {
+			credentialCache.clear();
+		}
+	}
+
 	@Override
 	protected boolean authenticateUsernamePasswordInternal(
 			final UsernamePasswordCredentials credentials) throws AuthenticationException {
-		String username = getPrincipalNameTransformer().transform(credentials.getUsername());
-		String password = credentials.getPassword();
+		final long start = LatencyMonitor.start(latencyMonitor);
 
 		try {
-			PasswordEncoder passwordEncoder = getPasswordEncoder();
+			return authenticate(getPrincipalNameTransformer().transform(credentials.getUsername()),
+					credentials.getPassword());
+		} finally {
+			LatencyMonitor.record(latencyMonitor, "auth.handler", start);
+		}
+	}
 
-			logger.debug("Qurey SQL: {}, username: {}", sql, username);
-			final String dbPassword = jdbcTemplate.queryForObject(sql, String.class, username);
-			return dbPassword != null
-					&& dbPassword.equals(passwordEncoder.encode(password == null ? "" : password));
+	/**
+	 * 查询并验证用户密码
+	 * 
+	 * @param username
+	 *        转换后的用户名
+	 * @param password
+	 *        用户输入密码
+	 * @return 密码是否正确
+	 * @throws AuthenticationException
+	 *         密码验证线程池繁忙时
+	 */
+	private boolean authenticate(final String username, final String password)
+			throws AuthenticationException {
+		String cachedPassword = null;
+
+		if (credentialCache != null) {
+			cachedPassword = credentialCache.get(username);
+
+			// 不匹配时可能是密码已修改，继续查询数据库
+			if (cachedPassword != null && matches(password, cachedPassword)) {
+				return true;
+			}
+		}
+
+		if (unknownUsernameCache != null && unknownUsernameCache.isUnknown(username)) {
+			logger.debug("Username {} is known not to exist", username);
+			return false;
+		}
+
+		try {
+			final String dbPassword = queryPassword(username);
+
+			// 密码未修改，已验证过不匹配，不再重复验证
+			if (dbPassword == null || dbPassword.equals(cachedPassword)) {
+				return false;
+			}
+
+			if (matches(password, dbPassword)) {
+				if (credentialCache != null) {
+					credentialCache.put(username, dbPassword);
+				}
+
+				if (passwordRehashQueue != null && needsUpgrade(dbPassword)) {
+					passwordRehashQueue.submit(username, password, dbPassword);
+				}
+
+				return true;
+			}
+
+			return false;
+		} catch (final EmptyResultDataAccessException e) {
+			if (unknownUsernameCache != null) {
+				unknownUsernameCache.unknown(username);
+			}
+
+			return false;
 		} catch (final IncorrectResultSizeDataAccessException e) {
 			return false;
 		}
 	}
 
+	/**
+	 * 查询数据库中存储的密码
+	 * 
+	 * @param username
+	 *        用户名
+	 * @return 数据库中存储的密码
+	 * @throws IncorrectResultSizeDataAccessException
+	 *         用户不存在或存在多个时
+	 */
+	protected String queryPassword(final String username) {
+		final long start = LatencyMonitor.start(latencyMonitor);
+
+		try {
+			if (passwordLookup != null) {
+				return passwordLookup.lookup(username);
+			}
+
+			logger.debug("Qurey SQL: {}, username: {}", sql, username);
+			return getQueryTemplate().query(statementCreator, new PreparedStatementSetter() {
+
+				@Override
+				public void setValues(final PreparedStatement ps) throws SQLException {
+					ps.setString(1, username);
+				}
+
+			}, PASSWORD_EXTRACTOR);
+		} finally {
+			LatencyMonitor.record(latencyMonitor, "auth.query", start);
+		}
+	}
+
+	/**
+	 * @return 查询密码的 JdbcTemplate，不允许在从库查询时返回主库 JdbcTemplate
+	 */
+	private JdbcTemplate getQueryTemplate() {
+		return replicaReads ? jdbcTemplate : ReplicaRoutingJdbcTemplate.primaryOf(jdbcTemplate);
+	}
+
+	/**
+	 * 以恒定时间验证密码
+	 * 
+	 * @param password
+	 *        用户输入密码
+	 * @param dbPassword
+	 *        数据库中存储的密码
+	 * @return 密码是否正确
+	 * @throws AuthenticationException
+	 *         密码验证线程池繁忙时
+	 */
+	private boolean matches(final String password, final String dbPassword)
+			throws AuthenticationException {
+		final long start = LatencyMonitor.start(latencyMonitor);
+
+		try {
+			if (verificationExecutor == null) {
+				return doMatches(password, dbPassword);
+			}
+
+			return verificationExecutor.verify(new Callable<Boolean>() {
+
+				@Override
+				public Boolean call() throws Exception {
+					return doMatches(password, dbPassword);
+				}
+
+			});
+		} finally {
+			LatencyMonitor.record(latencyMonitor, "auth.verify", start);
+		}
+	}
+
+	private boolean doMatches(final String password, final String dbPassword) {
+		final PasswordEncoder passwordEncoder = getPasswordEncoder();
+
+		if (passwordEncoder instanceof MatchablePasswordEncoder) {
+			return ((MatchablePasswordEncoder) passwordEncoder).matches(password, dbPassword);
+		}
+
+		final String encodedPassword = passwordEncoder.encode(password == null ? "" : password);
+		return encodedPassword != null
+				&& MessageDigest.isEqual(dbPassword.getBytes(UTF_8), encodedPassword.getBytes(UTF_8));
+	}
+
+	private boolean needsUpgrade(final String dbPassword) {
+		final PasswordEncoder passwordEncoder = getPasswordEncoder();
+		return passwordEncoder instanceof MatchablePasswordEncoder
+				&& ((MatchablePasswordEncoder) passwordEncoder).needsUpgrade(dbPassword);
+	}
+
+	/**
+	 * 只读、前向游标，最多读取两行（判断是否唯一）
+	 */
+	private final class PasswordStatementCreator implements PreparedStatementCreator, SqlProvider {
+
+		@Override
+		public PreparedStatement createPreparedStatement(final Connection con) throws SQLException {
+			final PreparedStatement ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
+					ResultSet.CONCUR_READ_ONLY);
+
+			ps.setFetchSize(1);
+			ps.setMaxRows(2);
+			ps.setPoolable(statementPoolable);
+
+			return ps;
+		}
+
+		@Override
+		public String getSql() {
+			return sql;
+		}
+
+	}
+
+	/**
+	 * 读取唯一一行的第一列，不经类型转换
+	 */
+	private final static class PasswordExtractor implements ResultSetExtractor<String> {
+
+		@Override
+		public String extractData(final ResultSet rs) throws SQLException, DataAccessException {
+			if (rs.next() == false) {
+				throw new EmptyResultDataAccessException(1);
+			}
+
+			final String password = rs.getString(1);
+
+			if (rs.next()) {
+				throw new IncorrectResultSizeDataAccessException(1, 2);
+			}
+
+			return password;
+		}
+
+	}
+
 }
\ No newline at end of file
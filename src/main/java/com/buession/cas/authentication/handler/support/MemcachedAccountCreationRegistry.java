@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 
+ * (the "License"); you may not use this file except in compliance with the License. You may obtain 
+ * a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * =================================================================================================
+ * 
+ * This software consists of voluntary contributions made by many individuals on behalf of the
+ * Apache Software Foundation. For more information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ * 
+ * +------------------------------------------------------------------------------------------------+
+ * | License: http://cas-server-support.buession.com.cn/LICENSE 									|
+ * | Author: Yong.Teng <webmaster@buession.com> 													|
+ * | Copyright @ 2013-2014 Buession.com Inc.														|
+ * +------------------------------------------------------------------------------------------------+
+ */
+package com.buession.cas.authentication.handler.support;
+
+import java.nio.charset.Charset;
+
+import javax.validation.constraints.NotNull;
+
+import net.spy.memcached.MemcachedClient;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.DigestUtils;
+
+/**
+ * Memcached 新建账号登记，多个节点共享；Memcached 不可用时视为未登记
+ * 
+ * @author Yong.Teng <webmaster@buession.com>
+ */
+public class MemcachedAccountCreationRegistry implements AccountCreationRegistry {
+
+	private final static Charset UTF_8 = Charset.forName("UTF-8");
+
+	/**
+	 * Memcached Client
+	 */
+	@NotNull
+	private MemcachedClient memcachedClient;
+
+	/**
+	 * Key 前缀
+	 */
+	private String prefix = "account_created_";
+
+	private final static Logger logger = LoggerFactory
+			.getLogger(MemcachedAccountCreationRegistry.class);
+
+	/**
+	 * 返回 Memcached Client
+	 * 
+	 * @return Memcached Client
+	 */
+	public MemcachedClient getMemcachedClient() {
+		return memcachedClient;
+	}
+
+	/**
+	 * 设置 Memcached Client
+	 * 
+	 * @param memcachedClient
+	 *        Memcached Client
+	 */
+	public void setMemcachedClient(final MemcachedClient memcachedClient) {
+		this.memcachedClient = memcachedClient;
+	}
+
+	/**
+	 * 返回 Key 前缀
+	 * 
+	 * @return Key 前缀
+	 */
+	public String getPrefix() {
+		return prefix;
+	}
+
+	/**
+	 * 设置 Key 前缀
+	 * 
+	 * @param prefix
+	 *        Key 前缀
+	 */
+	public void setPrefix(final String prefix) {
+		this.prefix = prefix;
+	}
+
+	@Override
+	public void accountCreated(final String username, final long lifetime) {
+		try {
+			memcachedClient.set(key(username), (int) Math.max(1, (lifetime + 999) / 1000),
+					Boolean.TRUE);
+		} catch (final RuntimeException e) {
+			logger.error("Register created account failure: {}", e.getMessage());
+		}
+	}
+
+	@Override
+	public boolean isCreated(final String username) {
+		try {
+			return memcachedClient.get(key(username)) != null;
+		} catch (final RuntimeException e) {
+			logger.error("Get created account failure: {}", e.getMessage());
+			return false;
+		}
+	}
+
+	/**
+	 * 用户名可能含有 Memcached Key 不允许的字符，统一摘要
+	 */
+	private String key(final String username) {
+		return prefix + DigestUtils.md5DigestAsHex(username.getBytes(UTF_8));
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,444 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 
+ * (the "License"); you may not use this file except in compliance with the License. You may obtain 
+ * a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * =================================================================================================
+ * 
+ * This software consists of voluntary contributions made by many individuals on behalf of the
+ * Apache Software Foundation. For more information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ * 
+ * +------------------------------------------------------------------------------------------------+
+ * | License: http://cas-server-support.buession.com.cn/LICENSE 									|
+ * | Author: Yong.Teng <webmaster@buession.com> 													|
+ * | Copyright @ 2013-2014 Buession.com Inc.														|
+ * +------------------------------------------------------------------------------------------------+
+ */
+package com.buession.cas.authentication.handler.support;
+
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.validation.constraints.NotNull;
+
+import org.jasig.cas.authentication.handler.PasswordEncoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.Assert;
+
+/**
+ * 密码重新加密队列，登录成功后提交用户输入密码，由后台线程以新算法加密并批量写回数据库
+ * 
+ * 更新语句第一个参数为新密码，第二个参数为用户名，第三个参数为验证时数据库中存储的密码，
+ * 仅在密码未被修改时写回，如：
+ * UPDATE user SET password = ? WHERE username = ? AND password = ?
+ * 
+ * 加密在写回线程执行，不占用请求线程；用户输入密码只保存在待执行的加密任务中，加密后队列中只保存新密码；
+ * 队列容量满时丢弃新提交的密码，待下次登录再升级
+ * 
+ * @author Yong.Teng <webmaster@buession.com>
+ */
+public class PasswordRehashQueue implements InitializingBean, DisposableBean {
+
+	/**
+	 * JdbcTemplate
+	 */
+	@NotNull
+	private JdbcTemplate jdbcTemplate;
+
+	/**
+	 * 更新语句
+	 */
+	@NotNull
+	private String sql;
+
+	/**
+	 * 新密码加密器
+	 */
+	@NotNull
+	private PasswordEncoder passwordEncoder;
+
+	/**
+	 * 每批最大更新数
+	 */
+	private int batchSize = 100;
+
+	/**
+	 * 写回间隔（毫秒）
+	 */
+	private long interval = 1000;
+
+	/**
+	 * 队列容量
+	 */
+	private int capacity = 10000;
+
+	/**
+	 * 待升级的密码（用户名 - 新密码及原密码）
+	 */
+	private final ConcurrentMap<String, Rehash> pending = new ConcurrentHashMap<String, Rehash>();
+
+	/**
+	 * 待执行的加密任务数
+	 */
+	private final AtomicInteger encoding = new AtomicInteger();
+
+	/**
+	 * 已升级次数
+	 */
+	private final AtomicLong rehashCount = new AtomicLong();
+
+	/**
+	 * 丢弃次数
+	 */
+	private final AtomicLong rejectCount = new AtomicLong();
+
+	/**
+	 * 密码已被修改而未写回的次数
+	 */
+	private final AtomicLong staleCount = new AtomicLong();
+
+	/**
+	 * 写回线程
+	 */
+	private ScheduledExecutorService scheduler;
+
+	private final static Logger logger = LoggerFactory.getLogger(PasswordRehashQueue.class);
+
+	/**
+	 * 返回 JdbcTemplate
+	 * 
+	 * @return JdbcTemplate
+	 */
+	public JdbcTemplate getJdbcTemplate() {
+		return jdbcTemplate;
+	}
+
+	/**
+	 * 设置 JdbcTemplate
+	 * 
+	 * @param jdbcTemplate
+	 *        JdbcTemplate
+	 */
+	public void setJdbcTemplate(final JdbcTemplate jdbcTemplate) {
+		this.jdbcTemplate = jdbcTemplate;
+	}
+
+	/**
+	 * 返回更新语句
+	 * 
+	 * @return 更新语句
+	 */
+	public String getSql() {
+		return sql;
+	}
+
+	/**
+	 * 设置更新语句
+	 * 
+	 * @param sql
+	 *        更新语句
+	 */
+	public void setSql(final String sql) {
+		this.sql = sql;
+	}
+
+	/**
+	 * 返回新密码加密器
+	 * 
+	 * @return 新密码加密器
+	 */
+	public PasswordEncoder getPasswordEncoder() {
+		return passwordEncoder;
+	}
+
+	/**
+	 * 设置新密码加密器
+	 * 
+	 * @param passwordEncoder
+	 *        新密码加密器
+	 */
+	public void setPasswordEncoder(final PasswordEncoder passwordEncoder) {
+		this.passwordEncoder = passwordEncoder;
+	}
+
+	/**
+	 * 返回每批最大更新数
+	 * 
+	 * @return 每批最大更新数
+	 */
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	/**
+	 * 设置每批最大更新数
+	 * 
+	 * @param batchSize
+	 *        每批最大更新数
+	 */
+	public void setBatchSize(final int batchSize) {
+		Assert.isTrue(batchSize > 0, "Batch size must be greater than 0");
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * 返回写回间隔（毫秒）
+	 * 
+	 * @return 写回间隔
+	 */
+	public long getInterval() {
+		return interval;
+	}
+
+	/**
+	 * 设置写回间隔（毫秒）
+	 * 
+	 * @param interval
+	 *        写回间隔
+	 */
+	public void setInterval(final long interval) {
+		Assert.isTrue(interval > 0, "Interval must be greater than 0");
+		this.interval = interval;
+	}
+
+	/**
+	 * 返回队列容量
+	 * 
+	 * @return 队列容量
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * 设置队列容量
+	 * 
+	 * @param capacity
+	 *        队列容量
+	 */
+	public void setCapacity(final int capacity) {
+		Assert.isTrue(capacity > 0, "Capacity must be greater than 0");
+		this.capacity = capacity;
+	}
+
+	/**
+	 * 返回已升级次数
+	 * 
+	 * @return 已升级次数
+	 */
+	public long getRehashCount() {
+		return rehashCount.get();
+	}
+
+	/**
+	 * 返回丢弃次数
+	 * 
+	 * @return 丢弃次数
+	 */
+	public long getRejectCount() {
+		return rejectCount.get();
+	}
+
+	/**
+	 * 返回密码已被修改而未写回的次数
+	 * 
+	 * @return 密码已被修改而未写回的次数
+	 */
+	public long getStaleCount() {
+		return staleCount.get();
+	}
+
+	/**
+	 * 返回待升级的密码数量，包括尚未加密的密码
+	 * 
+	 * @return 待升级的密码数量
+	 */
+	public int size() {
+		return pending.size() + encoding.get();
+	}
+
+	/**
+	 * 提交用户输入密码，由写回线程以新算法加密，须在密码验证成功后调用
+	 * 
+	 * @param username
+	 *        用户名
+	 * @param password
+	 *        用户输入密码
+	 * @param dbPassword
+	 *        验证时数据库中存储的密码，写回时仅更新该密码
+	 * @return 是否提交成功
+	 */
+	public boolean submit(final String username, final String password, final String dbPassword) {
+		if (username == null || password == null || dbPassword == null) {
+			return false;
+		}
+
+		if (size() >= capacity) {
+			rejectCount.incrementAndGet();
+			return false;
+		}
+
+		encoding.incrementAndGet();
+		try {
+			scheduler.execute(new Runnable() {
+
+				@Override
+				public void run() {
+					try {
+						pending.put(username, new Rehash(passwordEncoder.encode(password),
+								dbPassword));
+					} catch (final RuntimeException e) {
+						logger.error("Encode password of {} failure: {}", username,
+								e.getMessage(), e);
+					} finally {
+						encoding.decrementAndGet();
+					}
+				}
+
+			});
+		} catch (final RejectedExecutionException e) {
+			encoding.decrementAndGet();
+			rejectCount.incrementAndGet();
+			return false;
+		}
+
+		return true;
+	}
+
+	/**
+	 * 将已加密的新密码批量写回数据库
+	 */
+	public void flush() {
+		final List<Object[]> batch = new ArrayList<Object[]>(Math.min(batchSize, pending.size()));
+		final Iterator<Map.Entry<String, Rehash>> iterator = pending.entrySet().iterator();
+
+		while (iterator.hasNext()) {
+			final Map.Entry<String, Rehash> entry = iterator.next();
+			final Rehash rehash = entry.getValue();
+
+			// 仅移除本次写回的值，保留写回期间新提交的密码
+			if (pending.remove(entry.getKey(), rehash)) {
+				batch.add(new Object[] { rehash.password, entry.getKey(), rehash.oldPassword });
+			}
+
+			if (batch.size() >= batchSize
+					|| (iterator.hasNext() == false && batch.isEmpty() == false)) {
+				update(batch);
+				batch.clear();
+			}
+		}
+	}
+
+	private void update(final List<Object[]> batch) {
+		final int[] results;
+
+		try {
+			results = jdbcTemplate.batchUpdate(sql, batch);
+		} catch (final RuntimeException e) {
+			logger.error("Rehash password failure: {}", e.getMessage(), e);
+			return;
+		}
+
+		int updated = 0;
+		for (int i = 0; i < results.length; i++) {
+			if (results[i] > 0 || results[i] == Statement.SUCCESS_NO_INFO) {
+				updated++;
+			} else {
+				logger.info("Password of {} changed before rehash, skipped", batch.get(i)[1]);
+			}
+		}
+
+		rehashCount.addAndGet(updated);
+		staleCount.addAndGet(results.length - updated);
+
+		if (updated == 0) {
+			logger.warn("Rehash password batch of {} updated 0 rows", batch.size());
+		}
+	}
+
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		Assert.notNull(jdbcTemplate, "JdbcTemplate could not be null");
+		Assert.hasText(sql, "Sql could not be empty");
+		Assert.notNull(passwordEncoder, "Password encoder could not be null");
+
+		scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+			@Override
+			public Thread newThread(final Runnable runnable) {
+				final Thread thread = new Thread(runnable, "password-rehash");
+
+				thread.setDaemon(true);
+				thread.setPriority(Thread.MIN_PRIORITY);
+
+				return thread;
+			}
+
+		});
+		scheduler.scheduleWithFixedDelay(new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					flush();
+				} catch (final Exception e) {
+					logger.error("Rehash password failure: {}", e.getMessage(), e);
+				}
+			}
+
+		}, interval, interval, TimeUnit.MILLISECONDS);
+	}
+
+	@Override
+	public void destroy() throws Exception {
+		if (scheduler != null) {
+			scheduler.shutdown();
+			scheduler.awaitTermination(interval, TimeUnit.MILLISECONDS);
+		}
+
+		flush();
+	}
+
+	/**
+	 * 新密码及验证时数据库中存储的密码
+	 */
+	private final static class Rehash {
+
+		private final String password;
+
+		private final String oldPassword;
+
+		public Rehash(final String password, final String oldPassword) {
+			this.password = password;
+			this.oldPassword = oldPassword;
+		}
+
+	}
+
+}
\ No newline at end of file
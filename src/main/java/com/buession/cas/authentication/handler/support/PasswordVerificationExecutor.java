@@ -0,0 +1,281 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 
+ * (the "License"); you may not use this file except in compliance with the License. You may obtain 
+ * a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * =================================================================================================
+ * 
+ * This software consists of voluntary contributions made by many individuals on behalf of the
+ * Apache Software Foundation. For more information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ * 
+ * +------------------------------------------------------------------------------------------------+
+ * | License: http://cas-server-support.buession.com.cn/LICENSE 									|
+ * | Author: Yong.Teng <webmaster@buession.com> 													|
+ * | Copyright @ 2013-2014 Buession.com Inc.														|
+ * +------------------------------------------------------------------------------------------------+
+ */
+package com.buession.cas.authentication.handler.support;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.util.Assert;
+
+import com.buession.cas.authentication.handler.ServerBusyAuthenticationException;
+import com.buession.cas.utils.LatencyHistogram;
+
+/**
+ * 密码验证线程池，将耗时的密码加密运算从 Servlet 容器线程移至固定大小的线程池；
+ * 等待队列已满或等待超时时立即以服务器繁忙失败
+ * 
+ * @author Yong.Teng <webmaster@buession.com>
+ */
+public class PasswordVerificationExecutor implements InitializingBean, DisposableBean {
+
+	/**
+	 * 线程数，默认为 CPU 核数
+	 */
+	private int poolSize = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * 等待队列容量
+	 */
+	private int queueCapacity = 64;
+
+	/**
+	 * 最长等待时间（毫秒），包括排队和验证时间
+	 */
+	private long timeout = 5000;
+
+	/**
+	 * 线程池
+	 */
+	private ThreadPoolExecutor executor;
+
+	/**
+	 * 排队时间（纳秒）
+	 */
+	private final LatencyHistogram waitTime = new LatencyHistogram();
+
+	/**
+	 * 拒绝次数
+	 */
+	private final AtomicLong rejectCount = new AtomicLong();
+
+	/**
+	 * 超时次数
+	 */
+	private final AtomicLong timeoutCount = new AtomicLong();
+
+	private final static Logger logger = LoggerFactory
+			.getLogger(PasswordVerificationExecutor.class);
+
+	/**
+	 * 返回线程数
+	 * 
+	 * @return 线程数
+	 */
+	public int getPoolSize() {
+		return poolSize;
+	}
+
+	/**
+	 * 设置线程数
+	 * 
+	 * @param poolSize
+	 *        线程数
+	 */
+	public void setPoolSize(final int poolSize) {
+		Assert.isTrue(poolSize > 0, "Pool size must be greater than 0");
+		this.poolSize = poolSize;
+	}
+
+	/**
+	 * 返回等待队列容量
+	 * 
+	 * @return 等待队列容量
+	 */
+	public int getQueueCapacity() {
+		return queueCapacity;
+	}
+
+	/**
+	 * 设置等待队列容量
+	 * 
+	 * @param queueCapacity
+	 *        等待队列容量
+	 */
+	public void setQueueCapacity(final int queueCapacity) {
+		Assert.isTrue(queueCapacity > 0, "Queue capacity must be greater than 0");
+		this.queueCapacity = queueCapacity;
+	}
+
+	/**
+	 * 返回最长等待时间（毫秒）
+	 * 
+	 * @return 最长等待时间
+	 */
+	public long getTimeout() {
+		return timeout;
+	}
+
+	/**
+	 * 设置最长等待时间（毫秒）
+	 * 
+	 * @param timeout
+	 *        最长等待时间
+	 */
+	public void setTimeout(final long timeout) {
+		Assert.isTrue(timeout > 0, "Timeout must be greater than 0");
+		this.timeout = timeout;
+	}
+
+	/**
+	 * 返回当前排队数
+	 * 
+	 * @return 当前排队数
+	 */
+	public int getQueueDepth() {
+		return executor == null ? 0 : executor.getQueue().size();
+	}
+
+	/**
+	 * 返回正在验证的线程数
+	 * 
+	 * @return 正在验证的线程数
+	 */
+	public int getActiveCount() {
+		return executor == null ? 0 : executor.getActiveCount();
+	}
+
+	/**
+	 * 返回排队时间直方图（纳秒）
+	 * 
+	 * @return 排队时间直方图
+	 */
+	public LatencyHistogram getWaitTime() {
+		return waitTime;
+	}
+
+	/**
+	 * 返回拒绝次数
+	 * 
+	 * @return 拒绝次数
+	 */
+	public long getRejectCount() {
+		return rejectCount.get();
+	}
+
+	/**
+	 * 返回超时次数
+	 * 
+	 * @return 超时次数
+	 */
+	public long getTimeoutCount() {
+		return timeoutCount.get();
+	}
+
+	/**
+	 * 在线程池中验证密码
+	 * 
+	 * @param verification
+	 *        密码验证
+	 * @return 密码是否正确
+	 * @throws ServerBusyAuthenticationException
+	 *         等待队列已满或等待超时时
+	 */
+	public boolean verify(final Callable<Boolean> verification)
+			throws ServerBusyAuthenticationException {
+		final long submitted = System.nanoTime();
+		final Future<Boolean> future;
+
+		try {
+			future = executor.submit(new Callable<Boolean>() {
+
+				@Override
+				public Boolean call() throws Exception {
+					waitTime.record(System.nanoTime() - submitted);
+					return verification.call();
+				}
+
+			});
+		} catch (final RejectedExecutionException e) {
+			rejectCount.incrementAndGet();
+			logger.warn("Password verification rejected, queue depth: {}", getQueueDepth());
+			throw new ServerBusyAuthenticationException(e);
+		}
+
+		try {
+			return Boolean.TRUE.equals(future.get(timeout, TimeUnit.MILLISECONDS));
+		} catch (final TimeoutException e) {
+			future.cancel(true);
+			timeoutCount.incrementAndGet();
+			logger.warn("Password verification timeout after {} ms", timeout);
+			throw new ServerBusyAuthenticationException(e);
+		} catch (final InterruptedException e) {
+			future.cancel(true);
+			Thread.currentThread().interrupt();
+			throw new ServerBusyAuthenticationException(e);
+		} catch (final ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			} else if (e.getCause() instanceof Error) {
+				throw (Error) e.getCause();
+			}
+
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(queueCapacity), new ThreadFactory() {
+
+					private final AtomicInteger count = new AtomicInteger();
+
+					@Override
+					public Thread newThread(final Runnable runnable) {
+						final Thread thread = new Thread(runnable, "password-verification-"
+								+ count.incrementAndGet());
+
+						thread.setDaemon(true);
+
+						return thread;
+					}
+
+				}, new ThreadPoolExecutor.AbortPolicy());
+		executor.prestartAllCoreThreads();
+	}
+
+	@Override
+	public void destroy() throws Exception {
+		if (executor != null) {
+			executor.shutdownNow();
+		}
+	}
+
+}
\ No newline at end of file
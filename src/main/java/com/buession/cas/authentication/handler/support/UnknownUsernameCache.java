@@ -0,0 +1,250 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 
+ * (the "License"); you may not use this file except in compliance with the License. You may obtain 
+ * a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * =================================================================================================
+ * 
+ * This software consists of voluntary contributions made by many individuals on behalf of the
+ * Apache Software Foundation. For more information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ * 
+ * +------------------------------------------------------------------------------------------------+
+ * | License: http://cas-server-support.buession.com.cn/LICENSE 									|
+ * | Author: Yong.Teng <webmaster@buession.com> 													|
+ * | Copyright @ 2013-2014 Buession.com Inc.														|
+ * +------------------------------------------------------------------------------------------------+
+ */
+package com.buession.cas.authentication.handler.support;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.util.Assert;
+
+import com.buession.cas.utils.ExpiringCache;
+import com.buession.cas.utils.RotatingBloomFilter;
+
+/**
+ * 不存在用户名缓存，以随时间衰减的布隆过滤器记录查询不到的用户名，内存占用固定；
+ * 用户名记录后保留一至两个缓存周期。布隆过滤器误判会使存在的用户在缓存周期内无法登录，
+ * 误判率应设置得足够低；新建账号须调用 accountCreated。accountCreated 默认只对本节点生效，
+ * 集群部署时须设置 accountCreationRegistry 共享新建账号，否则其他节点在缓存周期内仍视其为不存在。
+ * 当前周期记录的用户名达到 capacity 时提前轮换，保证误判率不因大量不存在用户名而升高
+ * 
+ * @author Yong.Teng <webmaster@buession.com>
+ */
+public class UnknownUsernameCache {
+
+	/**
+	 * 每个缓存周期预期记录的用户名数量
+	 */
+	private long capacity = 1000000;
+
+	/**
+	 * 误判率
+	 */
+	private double falsePositiveProbability = 0.00001;
+
+	/**
+	 * 缓存周期（毫秒）
+	 */
+	private long lifetime = 5 * 60 * 1000L;
+
+	/**
+	 * 不存在的用户名
+	 */
+	private volatile RotatingBloomFilter unknownUsernames;
+
+	/**
+	 * 缓存周期内新建的用户名，布隆过滤器无法删除元素，以此覆盖
+	 */
+	private final ExpiringCache<String, Boolean> createdUsernames = new ExpiringCache<String, Boolean>(
+			100000, lifetime << 1);
+
+	/**
+	 * 新建账号登记，为空时 accountCreated 只对本节点生效
+	 */
+	private AccountCreationRegistry accountCreationRegistry;
+
+	/**
+	 * 提前轮换次数
+	 */
+	private final AtomicLong earlyRotationCount = new AtomicLong();
+
+	public UnknownUsernameCache() {
+		unknownUsernames = createFilter();
+	}
+
+	/**
+	 * 返回每个缓存周期预期记录的用户名数量
+	 * 
+	 * @return 每个缓存周期预期记录的用户名数量
+	 */
+	public long getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * 设置每个缓存周期预期记录的用户名数量，超出后误判率升高
+	 * 
+	 * @param capacity
+	 *        每个缓存周期预期记录的用户名数量
+	 */
+	public void setCapacity(final long capacity) {
+		this.capacity = capacity;
+		unknownUsernames = createFilter();
+	}
+
+	/**
+	 * 返回误判率
+	 * 
+	 * @return 误判率
+	 */
+	public double getFalsePositiveProbability() {
+		return falsePositiveProbability;
+	}
+
+	/**
+	 * 设置误判率
+	 * 
+	 * @param falsePositiveProbability
+	 *        误判率
+	 */
+	public void setFalsePositiveProbability(final double falsePositiveProbability) {
+		this.falsePositiveProbability = falsePositiveProbability;
+		unknownUsernames = createFilter();
+	}
+
+	/**
+	 * 返回缓存周期（毫秒）
+	 * 
+	 * @return 缓存周期
+	 */
+	public long getLifetime() {
+		return lifetime;
+	}
+
+	/**
+	 * 设置缓存周期（毫秒）
+	 * 
+	 * @param lifetime
+	 *        缓存周期
+	 */
+	public void setLifetime(final long lifetime) {
+		Assert.isTrue(lifetime > 0, "Lifetime must be greater than 0");
+		this.lifetime = lifetime;
+		unknownUsernames.setRotationInterval(lifetime);
+		createdUsernames.setLifetime(lifetime << 1);
+	}
+
+	/**
+	 * 设置新建用户名的最大记录数
+	 * 
+	 * @param maxCreated
+	 *        新建用户名的最大记录数
+	 */
+	public void setMaxCreated(final int maxCreated) {
+		createdUsernames.setMaxSize(maxCreated);
+	}
+
+	/**
+	 * 返回新建账号登记
+	 * 
+	 * @return 新建账号登记
+	 */
+	public AccountCreationRegistry getAccountCreationRegistry() {
+		return accountCreationRegistry;
+	}
+
+	/**
+	 * 设置新建账号登记，集群部署时在各节点间共享 accountCreated
+	 * 
+	 * @param accountCreationRegistry
+	 *        新建账号登记
+	 */
+	public void setAccountCreationRegistry(final AccountCreationRegistry accountCreationRegistry) {
+		this.accountCreationRegistry = accountCreationRegistry;
+	}
+
+	/**
+	 * 返回当前周期记录的用户名达到 capacity 而提前轮换的次数
+	 * 
+	 * @return 提前轮换次数
+	 */
+	public long getEarlyRotationCount() {
+		return earlyRotationCount.get();
+	}
+
+	/**
+	 * 判断用户名是否已知不存在
+	 * 
+	 * @param username
+	 *        用户名
+	 * @return 用户名已记录为不存在时返回 true，可能误判
+	 */
+	public boolean isUnknown(final String username) {
+		if (unknownUsernames.mightContain(username) == false
+				|| createdUsernames.get(username) != null) {
+			return false;
+		}
+
+		if (accountCreationRegistry != null && accountCreationRegistry.isCreated(username)) {
+			createdUsernames.put(username, Boolean.TRUE);
+			return false;
+		}
+
+		return true;
+	}
+
+	/**
+	 * 记录不存在的用户名
+	 * 
+	 * @param username
+	 *        用户名
+	 */
+	public void unknown(final String username) {
+		final RotatingBloomFilter filter = unknownUsernames;
+
+		if (filter.getInsertions() >= capacity && filter.rotateIfFull(capacity)) {
+			earlyRotationCount.incrementAndGet();
+		}
+
+		filter.put(username);
+	}
+
+	/**
+	 * 记录新建的用户名，使其不再被视为不存在；未设置 accountCreationRegistry 时只对本节点生效
+	 * 
+	 * @param username
+	 *        用户名
+	 */
+	public void accountCreated(final String username) {
+		createdUsernames.put(username, Boolean.TRUE);
+
+		if (accountCreationRegistry != null) {
+			accountCreationRegistry.accountCreated(username, lifetime << 1);
+		}
+	}
+
+	/**
+	 * 清空缓存
+	 */
+	public void clear() {
+		unknownUsernames.clear();
+		createdUsernames.clear();
+	}
+
+	private RotatingBloomFilter createFilter() {
+		return new RotatingBloomFilter(capacity, falsePositiveProbability, lifetime);
+	}
+
+}
\ No newline at end of file
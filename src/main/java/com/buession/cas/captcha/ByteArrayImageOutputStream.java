@@ -0,0 +1,149 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 
+ * (the "License"); you may not use this file except in compliance with the License. You may obtain 
+ * a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * =================================================================================================
+ * 
+ * This software consists of voluntary contributions made by many individuals on behalf of the
+ * Apache Software Foundation. For more information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ * 
+ * +------------------------------------------------------------------------------------------------+
+ * | License: http://cas-server-support.buession.com.cn/LICENSE 									|
+ * | Author: Yong.Teng <webmaster@buession.com> 													|
+ * | Copyright @ 2013-2014 Buession.com Inc.														|
+ * +------------------------------------------------------------------------------------------------+
+ */
+package com.buession.cas.captcha;
+
+import java.io.IOException;
+
+import javax.imageio.stream.ImageOutputStreamImpl;
+
+/**
+ * 直接写入字节数组的 ImageOutputStream，支持回退改写（如 PNG 块长度），
+ * 编码结果可直接取走内部数组，不经过 MemoryCacheImageOutputStream 的缓存和复制
+ * 
+ * @author Yong.Teng <webmaster@buession.com>
+ */
+final class ByteArrayImageOutputStream extends ImageOutputStreamImpl {
+
+	/**
+	 * 缓冲区
+	 */
+	private byte[] buf;
+
+	/**
+	 * 已写入长度
+	 */
+	private int count;
+
+	/**
+	 * @param initialCapacity
+	 *        初始容量
+	 */
+	public ByteArrayImageOutputStream(final int initialCapacity) {
+		buf = new byte[Math.max(initialCapacity, 256)];
+	}
+
+	/**
+	 * 返回内部数组，前 size() 字节有效
+	 * 
+	 * @return 内部数组
+	 */
+	public byte[] getBuffer() {
+		return buf;
+	}
+
+	/**
+	 * 返回已写入长度
+	 * 
+	 * @return 已写入长度
+	 */
+	public int size() {
+		return count;
+	}
+
+	@Override
+	public long length() {
+		return count;
+	}
+
+	@Override
+	public int read() throws IOException {
+		checkClosed();
+		bitOffset = 0;
+
+		if (streamPos >= count) {
+			return -1;
+		}
+
+		return buf[(int) streamPos++] & 0xff;
+	}
+
+	@Override
+	public int read(final byte[] b, final int off, final int len) throws IOException {
+		checkClosed();
+		bitOffset = 0;
+
+		if (streamPos >= count) {
+			return -1;
+		}
+
+		final int n = (int) Math.min(len, count - streamPos);
+		System.arraycopy(buf, (int) streamPos, b, off, n);
+		streamPos += n;
+
+		return n;
+	}
+
+	@Override
+	public void write(final int b) throws IOException {
+		checkClosed();
+		flushBits();
+		ensureCapacity(streamPos + 1);
+
+		buf[(int) streamPos++] = (byte) b;
+		if (streamPos > count) {
+			count = (int) streamPos;
+		}
+	}
+
+	@Override
+	public void write(final byte[] b, final int off, final int len) throws IOException {
+		checkClosed();
+		flushBits();
+		ensureCapacity(streamPos + len);
+
+		System.arraycopy(b, off, buf, (int) streamPos, len);
+		streamPos += len;
+		if (streamPos > count) {
+			count = (int) streamPos;
+		}
+	}
+
+	private void ensureCapacity(final long capacity) throws IOException {
+		if (capacity > Integer.MAX_VALUE) {
+			throw new IOException("Image too large");
+		}
+
+		if (capacity > buf.length) {
+			final byte[] newBuf = new byte[(int) Math.max(capacity, Math.min(
+					(long) buf.length << 1, Integer.MAX_VALUE))];
+
+			System.arraycopy(buf, 0, newBuf, 0, count);
+			buf = newBuf;
+		}
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 
+ * (the "License"); you may not use this file except in compliance with the License. You may obtain 
+ * a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * =================================================================================================
+ * 
+ * This software consists of voluntary contributions made by many individuals on behalf of the
+ * Apache Software Foundation. For more information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ * 
+ * +------------------------------------------------------------------------------------------------+
+ * | License: http://cas-server-support.buession.com.cn/LICENSE 									|
+ * | Author: Yong.Teng <webmaster@buession.com> 													|
+ * | Copyright @ 2013-2014 Buession.com Inc.														|
+ * +------------------------------------------------------------------------------------------------+
+ */
+package com.buession.cas.captcha;
+
+/**
+ * 已渲染的验证码图片
+ * 
+ * @author Yong.Teng <webmaster@buession.com>
+ */
+public final class CaptchaImage {
+
+	/**
+	 * 验证码文本
+	 */
+	private final String text;
+
+	/**
+	 * 编码后的图片数据
+	 */
+	private final byte[] data;
+
+	/**
+	 * 图片数据长度
+	 */
+	private final int length;
+
+	/**
+	 * MIME 类型
+	 */
+	private final String contentType;
+
+	/**
+	 * @param text
+	 *        验证码文本
+	 * @param data
+	 *        编码后的图片数据
+	 * @param contentType
+	 *        MIME 类型
+	 */
+	public CaptchaImage(final String text, final byte[] data, final String contentType) {
+		this(text, data, data.length, contentType);
+	}
+
+	/**
+	 * @param text
+	 *        验证码文本
+	 * @param data
+	 *        编码后的图片数据，前 length 字节有效
+	 * @param length
+	 *        图片数据长度
+	 * @param contentType
+	 *        MIME 类型
+	 */
+	public CaptchaImage(final String text, final byte[] data, final int length,
+			final String contentType) {
+		if (length < 0 || length > data.length) {
+			throw new IllegalArgumentException("Length must be between 0 and " + data.length);
+		}
+
+		this.text = text;
+		this.data = data;
+		this.length = length;
+		this.contentType = contentType;
+	}
+
+	/**
+	 * 返回验证码文本
+	 * 
+	 * @return 验证码文本
+	 */
+	public String getText() {
+		return text;
+	}
+
+	/**
+	 * 返回编码后的图片数据，前 getLength() 字节有效
+	 * 
+	 * @return 编码后的图片数据
+	 */
+	public byte[] getData() {
+		return data;
+	}
+
+	/**
+	 * 返回编码后的图片数据长度
+	 * 
+	 * @return 编码后的图片数据长度
+	 */
+	public int getLength() {
+		return length;
+	}
+
+	/**
+	 * 返回 MIME 类型
+	 * 
+	 * @return MIME 类型
+	 */
+	public String getContentType() {
+		return contentType;
+	}
+
+}
\ No newline at end of file
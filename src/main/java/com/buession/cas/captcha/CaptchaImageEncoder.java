@@ -0,0 +1,325 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 
+ * (the "License"); you may not use this file except in compliance with the License. You may obtain 
+ * a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * =================================================================================================
+ * 
+ * This software consists of voluntary contributions made by many individuals on behalf of the
+ * Apache Software Foundation. For more information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ * 
+ * +------------------------------------------------------------------------------------------------+
+ * | License: http://cas-server-support.buession.com.cn/LICENSE 									|
+ * | Author: Yong.Teng <webmaster@buession.com> 													|
+ * | Copyright @ 2013-2014 Buession.com Inc.														|
+ * +------------------------------------------------------------------------------------------------+
+ */
+package com.buession.cas.captcha;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.spi.ImageWriterSpi;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.util.Assert;
+
+/**
+ * 验证码图片编码器，复用池中空闲的 ImageWriter，编码结果为长度已知的字节数组；
+ * 编码直接写入按近期图片大小预分配的数组，并将该数组交给 CaptchaImage，不再复制
+ * 
+ * 销毁时释放所有空闲的 ImageWriter，此后归还的 ImageWriter 直接释放
+ * 
+ * @author Yong.Teng <webmaster@buession.com>
+ */
+public class CaptchaImageEncoder implements DisposableBean {
+
+	/**
+	 * 默认图片格式
+	 */
+	public final static String DEFAULT_FORMAT_NAME = "jpg";
+
+	/**
+	 * 图片格式（jpg、png、gif）
+	 */
+	private String formatName;
+
+	/**
+	 * MIME 类型
+	 */
+	private String contentType;
+
+	/**
+	 * JPEG 压缩质量（0 - 1）
+	 */
+	private float quality = 0.75f;
+
+	/**
+	 * 最大空闲 ImageWriter 数
+	 */
+	private int maxIdleWriters = Runtime.getRuntime().availableProcessors() * 2;
+
+	/**
+	 * 空闲 ImageWriter
+	 */
+	private final Queue<ImageWriter> idleWriters = new ConcurrentLinkedQueue<ImageWriter>();
+
+	/**
+	 * 空闲 ImageWriter 数
+	 */
+	private final AtomicInteger idleCount = new AtomicInteger();
+
+	/**
+	 * 输出缓冲区预分配大小，取最近编码的图片大小
+	 */
+	private volatile int bufferSize = 8192;
+
+	/**
+	 * 是否已销毁
+	 */
+	private volatile boolean destroyed = false;
+
+	public CaptchaImageEncoder() {
+		setFormatName(DEFAULT_FORMAT_NAME);
+	}
+
+	/**
+	 * @param formatName
+	 *        图片格式
+	 */
+	public CaptchaImageEncoder(final String formatName) {
+		setFormatName(formatName);
+	}
+
+	/**
+	 * 返回图片格式
+	 * 
+	 * @return 图片格式
+	 */
+	public String getFormatName() {
+		return formatName;
+	}
+
+	/**
+	 * 设置图片格式
+	 * 
+	 * @param formatName
+	 *        图片格式
+	 */
+	public void setFormatName(final String formatName) {
+		Assert.hasText(formatName, "Format name must be have length; it could not be null or empty");
+
+		final ImageWriterSpi provider = getImageWriter(formatName).getOriginatingProvider();
+		final String[] mimeTypes = provider == null ? null : provider.getMIMETypes();
+
+		this.formatName = formatName;
+		this.contentType = mimeTypes == null || mimeTypes.length == 0 ? "image/" + formatName
+				: mimeTypes[0];
+		disposeIdleWriters();
+	}
+
+	/**
+	 * 返回 MIME 类型
+	 * 
+	 * @return MIME 类型
+	 */
+	public String getContentType() {
+		return contentType;
+	}
+
+	/**
+	 * 返回 JPEG 压缩质量
+	 * 
+	 * @return JPEG 压缩质量
+	 */
+	public float getQuality() {
+		return quality;
+	}
+
+	/**
+	 * 设置 JPEG 压缩质量
+	 * 
+	 * @param quality
+	 *        JPEG 压缩质量（0 - 1）
+	 */
+	public void setQuality(final float quality) {
+		Assert.isTrue(quality >= 0 && quality <= 1, "Quality must be between 0 and 1");
+		this.quality = quality;
+	}
+
+	/**
+	 * 返回最大空闲 ImageWriter 数
+	 * 
+	 * @return 最大空闲 ImageWriter 数
+	 */
+	public int getMaxIdleWriters() {
+		return maxIdleWriters;
+	}
+
+	/**
+	 * 设置最大空闲 ImageWriter 数，超出的 ImageWriter 使用后直接释放
+	 * 
+	 * @param maxIdleWriters
+	 *        最大空闲 ImageWriter 数
+	 */
+	public void setMaxIdleWriters(final int maxIdleWriters) {
+		Assert.isTrue(maxIdleWriters >= 0, "Max idle writers could not be negative");
+		this.maxIdleWriters = maxIdleWriters;
+	}
+
+	/**
+	 * 返回空闲 ImageWriter 数
+	 * 
+	 * @return 空闲 ImageWriter 数
+	 */
+	public int getIdleWriters() {
+		return idleCount.get();
+	}
+
+	/**
+	 * 编码验证码图片
+	 * 
+	 * @param text
+	 *        验证码文本
+	 * @param image
+	 *        验证码图片
+	 * @return 编码后的验证码图片
+	 * @throws IOException
+	 */
+	public CaptchaImage encode(final String text, final BufferedImage image) throws IOException {
+		final ByteArrayImageOutputStream output = write(image);
+		return new CaptchaImage(text, output.getBuffer(), output.size(), contentType);
+	}
+
+	/**
+	 * 编码图片
+	 * 
+	 * @param image
+	 *        图片
+	 * @return 编码后的图片数据
+	 * @throws IOException
+	 */
+	public byte[] encode(final BufferedImage image) throws IOException {
+		final ByteArrayImageOutputStream output = write(image);
+		final byte[] data = output.getBuffer();
+
+		if (data.length == output.size()) {
+			return data;
+		}
+
+		final byte[] result = new byte[output.size()];
+		System.arraycopy(data, 0, result, 0, result.length);
+
+		return result;
+	}
+
+	@Override
+	public void destroy() {
+		destroyed = true;
+		disposeIdleWriters();
+	}
+
+	private ByteArrayImageOutputStream write(final BufferedImage image) throws IOException {
+		final String formatName = this.formatName;
+		final ImageWriter writer = borrowWriter(formatName);
+		final ByteArrayImageOutputStream output = new ByteArrayImageOutputStream(bufferSize);
+
+		try {
+			writer.setOutput(output);
+			writer.write(null, new IIOImage(image, null, null), getWriteParam(writer));
+		} finally {
+			writer.reset();
+			output.close();
+			returnWriter(formatName, writer);
+		}
+
+		// 预留少量余量，避免图片略大时扩容复制
+		bufferSize = output.size() + (output.size() >>> 3);
+
+		return output;
+	}
+
+	/**
+	 * @param writer
+	 *        ImageWriter
+	 * @return 写入参数
+	 */
+	protected ImageWriteParam getWriteParam(final ImageWriter writer) {
+		final ImageWriteParam param = writer.getDefaultWriteParam();
+
+		if (param.canWriteCompressed() && "image/jpeg".equals(contentType)) {
+			param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+			param.setCompressionQuality(quality);
+		}
+
+		return param;
+	}
+
+	private ImageWriter borrowWriter(final String formatName) {
+		final ImageWriter writer = idleWriters.poll();
+
+		if (writer == null) {
+			return getImageWriter(formatName);
+		}
+
+		idleCount.decrementAndGet();
+		return writer;
+	}
+
+	private void returnWriter(final String formatName, final ImageWriter writer) {
+		// 图片格式已变更或已销毁时不再放回
+		if (destroyed == false && formatName.equals(this.formatName)) {
+			if (idleCount.incrementAndGet() <= maxIdleWriters) {
+				idleWriters.offer(writer);
+
+				if (destroyed) {
+					disposeIdleWriters();
+				}
+
+				return;
+			}
+
+			idleCount.decrementAndGet();
+		}
+
+		writer.dispose();
+	}
+
+	private void disposeIdleWriters() {
+		ImageWriter writer;
+
+		while ((writer = idleWriters.poll()) != null) {
+			idleCount.decrementAndGet();
+			writer.dispose();
+		}
+	}
+
+	private final static ImageWriter getImageWriter(final String formatName) {
+		final Iterator<ImageWriter> iterator = ImageIO.getImageWritersByFormatName(formatName);
+
+		if (iterator.hasNext() == false) {
+			throw new IllegalArgumentException("No image writer for format: " + formatName);
+		}
+
+		return iterator.next();
+	}
+
+}
\ No newline at end of file
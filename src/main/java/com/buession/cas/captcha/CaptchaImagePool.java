@@ -0,0 +1,317 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 
+ * (the "License"); you may not use this file except in compliance with the License. You may obtain 
+ * a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * =================================================================================================
+ * 
+ * This software consists of voluntary contributions made by many individuals on behalf of the
+ * Apache Software Foundation. For more information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ * 
+ * +------------------------------------------------------------------------------------------------+
+ * | License: http://cas-server-support.buession.com.cn/LICENSE 									|
+ * | Author: Yong.Teng <webmaster@buession.com> 													|
+ * | Copyright @ 2013-2014 Buession.com Inc.														|
+ * +------------------------------------------------------------------------------------------------+
+ */
+package com.buession.cas.captcha;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.validation.constraints.NotNull;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.util.Assert;
+
+import com.google.code.kaptcha.Producer;
+
+/**
+ * 验证码图片池，由后台线程预先渲染验证码图片，请求时直接取出；池耗尽时同步渲染
+ * 
+ * @author Yong.Teng <webmaster@buession.com>
+ */
+public class CaptchaImagePool implements InitializingBean, DisposableBean {
+
+	/**
+	 * 验证码生成提供者
+	 */
+	@NotNull
+	private Producer producer;
+
+	/**
+	 * 验证码图片编码器
+	 */
+	@NotNull
+	private CaptchaImageEncoder encoder = new CaptchaImageEncoder();
+
+	/**
+	 * 池容量
+	 */
+	private int poolSize = 256;
+
+	/**
+	 * 每次补充的图片数量
+	 */
+	private int refillRate = 32;
+
+	/**
+	 * 补充间隔（毫秒）
+	 */
+	private long refillInterval = 100;
+
+	/**
+	 * 已渲染的验证码图片
+	 */
+	private BlockingQueue<CaptchaImage> images;
+
+	/**
+	 * 补充线程
+	 */
+	private ScheduledExecutorService scheduler;
+
+	/**
+	 * 命中次数
+	 */
+	private final AtomicLong hitCount = new AtomicLong();
+
+	/**
+	 * 未命中次数
+	 */
+	private final AtomicLong missCount = new AtomicLong();
+
+	private final static Logger logger = LoggerFactory.getLogger(CaptchaImagePool.class);
+
+	/**
+	 * 返回验证码生成提供者
+	 * 
+	 * @return 验证码生成提供者
+	 */
+	public Producer getProducer() {
+		return producer;
+	}
+
+	/**
+	 * 设置验证码生成提供者
+	 * 
+	 * @param producer
+	 *        验证码生成提供者
+	 */
+	public void setProducer(final Producer producer) {
+		this.producer = producer;
+	}
+
+	/**
+	 * 返回验证码图片编码器
+	 * 
+	 * @return 验证码图片编码器
+	 */
+	public CaptchaImageEncoder getEncoder() {
+		return encoder;
+	}
+
+	/**
+	 * 设置验证码图片编码器
+	 * 
+	 * @param encoder
+	 *        验证码图片编码器
+	 */
+	public void setEncoder(final CaptchaImageEncoder encoder) {
+		this.encoder = encoder;
+	}
+
+	/**
+	 * 返回池容量
+	 * 
+	 * @return 池容量
+	 */
+	public int getPoolSize() {
+		return poolSize;
+	}
+
+	/**
+	 * 设置池容量
+	 * 
+	 * @param poolSize
+	 *        池容量
+	 */
+	public void setPoolSize(final int poolSize) {
+		Assert.isTrue(poolSize > 0, "Pool size must be greater than 0");
+		this.poolSize = poolSize;
+	}
+
+	/**
+	 * 返回每次补充的图片数量
+	 * 
+	 * @return 每次补充的图片数量
+	 */
+	public int getRefillRate() {
+		return refillRate;
+	}
+
+	/**
+	 * 设置每次补充的图片数量
+	 * 
+	 * @param refillRate
+	 *        每次补充的图片数量
+	 */
+	public void setRefillRate(final int refillRate) {
+		Assert.isTrue(refillRate > 0, "Refill rate must be greater than 0");
+		this.refillRate = refillRate;
+	}
+
+	/**
+	 * 返回补充间隔（毫秒）
+	 * 
+	 * @return 补充间隔
+	 */
+	public long getRefillInterval() {
+		return refillInterval;
+	}
+
+	/**
+	 * 设置补充间隔（毫秒）
+	 * 
+	 * @param refillInterval
+	 *        补充间隔
+	 */
+	public void setRefillInterval(final long refillInterval) {
+		Assert.isTrue(refillInterval > 0, "Refill interval must be greater than 0");
+		this.refillInterval = refillInterval;
+	}
+
+	/**
+	 * 返回命中次数
+	 * 
+	 * @return 命中次数
+	 */
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	/**
+	 * 返回未命中次数（同步渲染次数）
+	 * 
+	 * @return 未命中次数
+	 */
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	/**
+	 * 返回池中可用的图片数量
+	 * 
+	 * @return 池中可用的图片数量
+	 */
+	public int size() {
+		return images == null ? 0 : images.size();
+	}
+
+	/**
+	 * 取出一张验证码图片，池耗尽时同步渲染
+	 * 
+	 * @return 验证码图片
+	 * @throws IOException
+	 */
+	public CaptchaImage take() throws IOException {
+		final CaptchaImage image = images == null ? null : images.poll();
+
+		if (image != null) {
+			hitCount.incrementAndGet();
+			return image;
+		}
+
+		missCount.incrementAndGet();
+		return render();
+	}
+
+	/**
+	 * 渲染一张验证码图片
+	 * 
+	 * @return 验证码图片
+	 * @throws IOException
+	 */
+	public CaptchaImage render() throws IOException {
+		final String text = producer.createText();
+		return encoder.encode(text, producer.createImage(text));
+	}
+
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		Assert.notNull(producer, "Captcha producer could not be null");
+		Assert.notNull(encoder, "Captcha image encoder could not be null");
+
+		images = new ArrayBlockingQueue<CaptchaImage>(poolSize);
+		scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+			@Override
+			public Thread newThread(final Runnable runnable) {
+				final Thread thread = new Thread(runnable, "captcha-image-pool");
+
+				thread.setDaemon(true);
+				thread.setPriority(Thread.MIN_PRIORITY);
+
+				return thread;
+			}
+
+		});
+		scheduler.scheduleWithFixedDelay(new Runnable() {
+
+			@Override
+			public void run() {
+				refill();
+			}
+
+		}, 0, refillInterval, TimeUnit.MILLISECONDS);
+	}
+
+	@Override
+	public void destroy() throws Exception {
+		if (scheduler != null) {
+			scheduler.shutdownNow();
+		}
+
+		if (images != null) {
+			images.clear();
+		}
+
+		if (encoder != null) {
+			encoder.destroy();
+		}
+	}
+
+	/**
+	 * 补充验证码图片
+	 */
+	protected void refill() {
+		try {
+			for (int i = 0; i < refillRate && images.remainingCapacity() > 0; i++) {
+				if (images.offer(render()) == false) {
+					break;
+				}
+			}
+		} catch (final Exception e) {
+			logger.error("Refill captcha image pool failure: {}", e.getMessage(), e);
+		}
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,480 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 
+ * (the "License"); you may not use this file except in compliance with the License. You may obtain 
+ * a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * =================================================================================================
+ * 
+ * This software consists of voluntary contributions made by many individuals on behalf of the
+ * Apache Software Foundation. For more information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ * 
+ * +------------------------------------------------------------------------------------------------+
+ * | License: http://cas-server-support.buession.com.cn/LICENSE 									|
+ * | Author: Yong.Teng <webmaster@buession.com> 													|
+ * | Copyright @ 2013-2014 Buession.com Inc.														|
+ * +------------------------------------------------------------------------------------------------+
+ */
+package com.buession.cas.jdbc;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sql.DataSource;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.dao.UncategorizedDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.Assert;
+
+/**
+ * 读写分离 JdbcTemplate，查询分发到从库，更新仍在主库执行；
+ * 从两个随机的健康从库中选择加权延迟较低者，从库连续失败达到阈值时暂时剔除，
+ * 获取连接、执行语句时发生连接失败、超时等可重试的异常时改在主库查询；
+ * 已开始读取结果集后失败时不再改在主库查询，避免 RowCallbackHandler 收到重复的行
+ * 
+ * 事务中的查询始终在主库执行；从库存在复制延迟，不能读取旧数据的查询（如用户密码）应通过
+ * {@link #getPrimary()} 或 {@link #primaryOf(JdbcTemplate)} 在主库执行
+ * 
+ * @author Yong.Teng <webmaster@buession.com>
+ */
+public class ReplicaRoutingJdbcTemplate extends JdbcTemplate {
+
+	/**
+	 * 从库数据源
+	 */
+	private List<DataSource> replicaDataSources = Collections.emptyList();
+
+	/**
+	 * 延迟指数加权平均的新样本权重（0 - 1）
+	 */
+	private double latencyWeight = 0.2;
+
+	/**
+	 * 连续失败多少次后剔除从库
+	 */
+	private int failureThreshold = 3;
+
+	/**
+	 * 剔除后重试间隔（毫秒）
+	 */
+	private long retryInterval = 30000;
+
+	/**
+	 * 从库
+	 */
+	private volatile Replica[] replicas = new Replica[0];
+
+	/**
+	 * 改在主库查询次数
+	 */
+	private final AtomicLong failoverCount = new AtomicLong();
+
+	private final Random random = new Random();
+
+	/**
+	 * 主库 JdbcTemplate
+	 */
+	private volatile JdbcTemplate primary;
+
+	public ReplicaRoutingJdbcTemplate() {
+		super();
+	}
+
+	/**
+	 * @param dataSource
+	 *        主库数据源
+	 */
+	public ReplicaRoutingJdbcTemplate(final DataSource dataSource) {
+		super(dataSource);
+	}
+
+	/**
+	 * 返回从库数据源
+	 * 
+	 * @return 从库数据源
+	 */
+	public List<DataSource> getReplicaDataSources() {
+		return replicaDataSources;
+	}
+
+	/**
+	 * 设置从库数据源
+	 * 
+	 * @param replicaDataSources
+	 *        从库数据源
+	 */
+	public void setReplicaDataSources(final List<DataSource> replicaDataSources) {
+		this.replicaDataSources = replicaDataSources == null ? Collections
+				.<DataSource> emptyList() : replicaDataSources;
+	}
+
+	/**
+	 * 返回延迟指数加权平均的新样本权重
+	 * 
+	 * @return 延迟指数加权平均的新样本权重
+	 */
+	public double getLatencyWeight() {
+		return latencyWeight;
+	}
+
+	/**
+	 * 设置延迟指数加权平均的新样本权重（0 - 1），越大越偏重最近的延迟
+	 * 
+	 * @param latencyWeight
+	 *        延迟指数加权平均的新样本权重
+	 */
+	public void setLatencyWeight(final double latencyWeight) {
+		Assert.isTrue(latencyWeight > 0 && latencyWeight <= 1,
+				"Latency weight must be between 0 and 1");
+		this.latencyWeight = latencyWeight;
+	}
+
+	/**
+	 * 返回剔除从库的连续失败次数
+	 * 
+	 * @return 剔除从库的连续失败次数
+	 */
+	public int getFailureThreshold() {
+		return failureThreshold;
+	}
+
+	/**
+	 * 设置剔除从库的连续失败次数
+	 * 
+	 * @param failureThreshold
+	 *        剔除从库的连续失败次数
+	 */
+	public void setFailureThreshold(final int failureThreshold) {
+		Assert.isTrue(failureThreshold > 0, "Failure threshold must be greater than 0");
+		this.failureThreshold = failureThreshold;
+	}
+
+	/**
+	 * 返回剔除后重试间隔（毫秒）
+	 * 
+	 * @return 剔除后重试间隔
+	 */
+	public long getRetryInterval() {
+		return retryInterval;
+	}
+
+	/**
+	 * 设置剔除后重试间隔（毫秒）
+	 * 
+	 * @param retryInterval
+	 *        剔除后重试间隔
+	 */
+	public void setRetryInterval(final long retryInterval) {
+		Assert.isTrue(retryInterval > 0, "Retry interval must be greater than 0");
+		this.retryInterval = retryInterval;
+	}
+
+	/**
+	 * 返回从库数量
+	 * 
+	 * @return 从库数量
+	 */
+	public int getReplicaCount() {
+		return replicas.length;
+	}
+
+	/**
+	 * 返回健康的从库数量
+	 * 
+	 * @return 健康的从库数量
+	 */
+	public int getHealthyReplicaCount() {
+		final long now = System.currentTimeMillis();
+		int count = 0;
+
+		for (final Replica replica : replicas) {
+			if (replica.isAvailable(now)) {
+				count++;
+			}
+		}
+
+		return count;
+	}
+
+	/**
+	 * 返回只在主库执行的 JdbcTemplate
+	 * 
+	 * @return 主库 JdbcTemplate
+	 */
+	public JdbcTemplate getPrimary() {
+		JdbcTemplate template = primary;
+
+		if (template == null) {
+			template = createTemplate(getDataSource());
+			primary = template;
+		}
+
+		return template;
+	}
+
+	/**
+	 * 返回只在主库执行的 JdbcTemplate
+	 * 
+	 * @param jdbcTemplate
+	 *        JdbcTemplate
+	 * @return 为 ReplicaRoutingJdbcTemplate 时返回其主库 JdbcTemplate，否则返回 jdbcTemplate
+	 */
+	public static JdbcTemplate primaryOf(final JdbcTemplate jdbcTemplate) {
+		if (jdbcTemplate instanceof ReplicaRoutingJdbcTemplate) {
+			return ((ReplicaRoutingJdbcTemplate) jdbcTemplate).getPrimary();
+		}
+
+		return jdbcTemplate;
+	}
+
+	/**
+	 * 返回改在主库查询次数
+	 * 
+	 * @return 改在主库查询次数
+	 */
+	public long getFailoverCount() {
+		return failoverCount.get();
+	}
+
+	@Override
+	public void afterPropertiesSet() {
+		super.afterPropertiesSet();
+
+		final Replica[] replicas = new Replica[replicaDataSources.size()];
+
+		for (int i = 0; i < replicas.length; i++) {
+			replicas[i] = new Replica(createTemplate(replicaDataSources.get(i)));
+		}
+
+		this.replicas = replicas;
+		this.primary = createTemplate(getDataSource());
+	}
+
+	@Override
+	public <T> T query(final String sql, final ResultSetExtractor<T> rse)
+			throws DataAccessException {
+		final Replica replica = select();
+
+		if (replica != null) {
+			final TrackingExtractor<T> extractor = new TrackingExtractor<T>(rse);
+			final long start = replica.begin();
+
+			try {
+				final T result = replica.template.query(sql, extractor);
+
+				replica.succeeded(start);
+				return result;
+			} catch (final DataAccessException e) {
+				if (replica.failed(start, e) == false || extractor.started) {
+					throw e;
+				}
+
+				failoverCount.incrementAndGet();
+				logger.warn("Query on replica failed, fail over to primary: " + e.getMessage());
+			}
+		}
+
+		return super.query(sql, rse);
+	}
+
+	@Override
+	public <T> T query(final PreparedStatementCreator psc, final PreparedStatementSetter pss,
+			final ResultSetExtractor<T> rse) throws DataAccessException {
+		final Replica replica = select();
+
+		if (replica != null) {
+			final TrackingExtractor<T> extractor = new TrackingExtractor<T>(rse);
+			final long start = replica.begin();
+
+			try {
+				final T result = replica.template.query(psc, pss, extractor);
+
+				replica.succeeded(start);
+				return result;
+			} catch (final DataAccessException e) {
+				if (replica.failed(start, e) == false || extractor.started) {
+					throw e;
+				}
+
+				failoverCount.incrementAndGet();
+				logger.warn("Query on replica failed, fail over to primary: " + e.getMessage());
+			}
+		}
+
+		return super.query(psc, pss, rse);
+	}
+
+	/**
+	 * 从两个随机的可用从库中选择加权延迟较低者
+	 * 
+	 * @return 从库，无可用从库或存在事务时返回 null
+	 */
+	private Replica select() {
+		final Replica[] replicas = this.replicas;
+
+		if (replicas.length == 0 || TransactionSynchronizationManager.isActualTransactionActive()) {
+			return null;
+		}
+
+		final long now = System.currentTimeMillis();
+		final List<Replica> available = new ArrayList<Replica>(replicas.length);
+
+		for (final Replica replica : replicas) {
+			if (replica.isAvailable(now)) {
+				available.add(replica);
+			}
+		}
+
+		final int size = available.size();
+		if (size == 0) {
+			return null;
+		} else if (size == 1) {
+			return available.get(0);
+		}
+
+		final int i = random.nextInt(size);
+		final int j = (i + 1 + random.nextInt(size - 1)) % size;
+		final Replica a = available.get(i);
+		final Replica b = available.get(j);
+
+		return a.score() <= b.score() ? a : b;
+	}
+
+	private JdbcTemplate createTemplate(final DataSource dataSource) {
+		final JdbcTemplate template = new JdbcTemplate(dataSource);
+
+		template.setFetchSize(getFetchSize());
+		template.setMaxRows(getMaxRows());
+		template.setQueryTimeout(getQueryTimeout());
+		template.setIgnoreWarnings(isIgnoreWarnings());
+		template.afterPropertiesSet();
+
+		return template;
+	}
+
+	/**
+	 * 是否为可在主库重试的异常
+	 */
+	private final static boolean isFailoverException(final DataAccessException e) {
+		return e instanceof DataAccessResourceFailureException
+				|| e instanceof TransientDataAccessException
+				|| e instanceof RecoverableDataAccessException
+				|| e instanceof UncategorizedDataAccessException;
+	}
+
+	/**
+	 * 记录是否已开始读取结果集
+	 */
+	private final static class TrackingExtractor<T> implements ResultSetExtractor<T> {
+
+		private final ResultSetExtractor<T> extractor;
+
+		private boolean started;
+
+		public TrackingExtractor(final ResultSetExtractor<T> extractor) {
+			this.extractor = extractor;
+		}
+
+		@Override
+		public T extractData(final ResultSet rs) throws SQLException, DataAccessException {
+			started = true;
+			return extractor.extractData(rs);
+		}
+
+	}
+
+	private final class Replica {
+
+		private final JdbcTemplate template;
+
+		/**
+		 * 延迟指数加权平均（纳秒）
+		 */
+		private volatile long latency;
+
+		private final AtomicInteger inFlight = new AtomicInteger();
+
+		private final AtomicInteger failures = new AtomicInteger();
+
+		private volatile long ejectedUntil;
+
+		public Replica(final JdbcTemplate template) {
+			this.template = template;
+		}
+
+		public boolean isAvailable(final long now) {
+			return now >= ejectedUntil;
+		}
+
+		/**
+		 * 加权延迟，按正在执行的查询数放大
+		 */
+		public double score() {
+			return (double) (latency + 1) * (inFlight.get() + 1);
+		}
+
+		public long begin() {
+			inFlight.incrementAndGet();
+			return System.nanoTime();
+		}
+
+		public void succeeded(final long start) {
+			inFlight.decrementAndGet();
+			failures.set(0);
+			record(System.nanoTime() - start);
+		}
+
+		/**
+		 * @return 是否应改在主库查询
+		 */
+		public boolean failed(final long start, final DataAccessException e) {
+			inFlight.decrementAndGet();
+
+			if (isFailoverException(e) == false) {
+				failures.set(0);
+				record(System.nanoTime() - start);
+				return false;
+			}
+
+			if (failures.incrementAndGet() >= failureThreshold) {
+				// 重试时再失败一次即重新剔除
+				ejectedUntil = System.currentTimeMillis() + retryInterval;
+				failures.set(failureThreshold - 1);
+				logger.error("Replica ejected for " + retryInterval + " ms after "
+						+ failureThreshold + " consecutive failures");
+			}
+
+			return true;
+		}
+
+		private void record(final long sample) {
+			final long current = latency;
+			latency = current == 0 ? sample : (long) (current + (sample - current) * latencyWeight);
+		}
+
+	}
+
+}
\ No newline at end of file
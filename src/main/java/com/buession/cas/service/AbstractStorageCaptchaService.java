@@ -0,0 +1,302 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 
+ * (the "License"); you may not use this file except in compliance with the License. You may obtain 
+ * a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * =================================================================================================
+ * 
+ * This software consists of voluntary contributions made by many individuals on behalf of the
+ * Apache Software Foundation. For more information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ * 
+ * +------------------------------------------------------------------------------------------------+
+ * | License: http://cas-server-support.buession.com.cn/LICENSE 									|
+ * | Author: Yong.Teng <webmaster@buession.com> 													|
+ * | Copyright @ 2013-2014 Buession.com Inc.														|
+ * +------------------------------------------------------------------------------------------------+
+ */
+package com.buession.cas.service;
+
+import java.util.concurrent.Future;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.scheduling.annotation.AsyncResult;
+import org.springframework.util.Assert;
+
+import com.buession.cas.utils.LatencyMonitor;
+import com.google.code.kaptcha.util.Config;
+
+/**
+ * 按 Key 存储验证码的验证码服务，Key 由验证码缓存名称和会话 ID 组成
+ * 
+ * @author Yong.Teng <webmaster@buession.com>
+ */
+public abstract class AbstractStorageCaptchaService extends CaptchaService {
+
+	private String cacheName;
+
+	/**
+	 * @param config
+	 *        验证码配置
+	 */
+	public AbstractStorageCaptchaService(final Config config) {
+		super(config);
+
+		cacheName = config.getSessionKey();
+		if (cacheName == null) {
+			cacheName = VALIDATE_CODE;
+		}
+	}
+
+	/**
+	 * 缓存验证码
+	 * 
+	 * @param request
+	 *        HttpServletRequest
+	 * @param value
+	 *        需缓存的验证码值
+	 */
+	public final void add(final HttpServletRequest request, final String value) {
+		final long start = LatencyMonitor.start(getLatencyMonitor());
+
+		add(getCacheName(request), value);
+		LatencyMonitor.record(getLatencyMonitor(), "captcha.add", start);
+	}
+
+	/**
+	 * 验证码验证
+	 * 
+	 * @param request
+	 *        HttpServletRequest
+	 * @param validateCode
+	 *        需要验证的验证码
+	 * @return 验证码是否正确
+	 */
+	public boolean validate(final HttpServletRequest request, final String validateCode) {
+		if (validateCode == null || validateCode.length() == 0) {
+			return false;
+		}
+
+		final long start = LatencyMonitor.start(getLatencyMonitor());
+		final boolean result = validate(getCacheName(request), validateCode);
+
+		LatencyMonitor.record(getLatencyMonitor(), "captcha.validate", start);
+
+		return result;
+	}
+
+	/**
+	 * 删除验证码缓存
+	 * 
+	 * @param request
+	 *        HttpServletRequest
+	 */
+	public void delete(final HttpServletRequest request) {
+		final long start = LatencyMonitor.start(getLatencyMonitor());
+
+		delete(getCacheName(request));
+		LatencyMonitor.record(getLatencyMonitor(), "captcha.delete", start);
+	}
+
+	/**
+	 * 异步缓存验证码
+	 * 
+	 * @param request
+	 *        HttpServletRequest
+	 * @param value
+	 *        需缓存的验证码值
+	 * @return 缓存结果
+	 */
+	public final Future<Boolean> addAsync(final HttpServletRequest request, final String value) {
+		final long start = LatencyMonitor.start(getLatencyMonitor());
+
+		return timed("captcha.add", start, addAsync(getCacheName(request), value));
+	}
+
+	/**
+	 * 异步缓存验证码，需要通过响应下发验证码数据的实现应覆盖此方法
+	 * 
+	 * @param request
+	 *        HttpServletRequest
+	 * @param response
+	 *        HttpServletResponse
+	 * @param value
+	 *        需缓存的验证码值
+	 * @return 缓存结果
+	 */
+	public Future<Boolean> addAsync(final HttpServletRequest request,
+			final HttpServletResponse response, final String value) {
+		return addAsync(request, value);
+	}
+
+	/**
+	 * 异步验证码验证
+	 * 
+	 * @param request
+	 *        HttpServletRequest
+	 * @param validateCode
+	 *        需要验证的验证码
+	 * @return 验证码是否正确
+	 */
+	public Future<Boolean> validateAsync(final HttpServletRequest request,
+			final String validateCode) {
+		if (validateCode == null || validateCode.length() == 0) {
+			return new AsyncResult<Boolean>(Boolean.FALSE);
+		}
+
+		return validateAsync(getCacheName(request), validateCode);
+	}
+
+	/**
+	 * 异步删除验证码缓存
+	 * 
+	 * @param request
+	 *        HttpServletRequest
+	 * @return 删除结果
+	 */
+	public Future<Boolean> deleteAsync(final HttpServletRequest request) {
+		return deleteAsync(getCacheName(request));
+	}
+
+	/**
+	 * 验证码验证，并使验证码失效；无论验证结果如何，验证码只能使用一次
+	 * 
+	 * @param request
+	 *        HttpServletRequest
+	 * @param validateCode
+	 *        需要验证的验证码
+	 * @return 验证码是否正确
+	 */
+	public boolean validateAndConsume(final HttpServletRequest request,
+			final String validateCode) {
+		final long start = LatencyMonitor.start(getLatencyMonitor());
+		final boolean result = validateAndConsume(getCacheName(request), validateCode);
+
+		LatencyMonitor.record(getLatencyMonitor(), "captcha.consume", start);
+
+		return result;
+	}
+
+	/**
+	 * 获取验证码缓存名称
+	 * 
+	 * @return 验证码缓存名称
+	 */
+	public final String getCacheName(final HttpServletRequest request) {
+		Assert.notNull(request, "HttpServletRequest could not be null");
+
+		return cacheName + "_" + request.getSession().getId();
+	}
+
+	/**
+	 * 比较缓存的验证码值与需要验证的验证码，忽略大小写
+	 * 
+	 * @param cacheValue
+	 *        缓存的验证码值
+	 * @param value
+	 *        需要验证的验证码
+	 * @return 验证码是否正确
+	 */
+	protected final static boolean matches(final Object cacheValue, final String value) {
+		return cacheValue != null && value != null && value.length() > 0
+				&& value.equalsIgnoreCase(cacheValue.toString());
+	}
+
+	/**
+	 * 缓存验证码
+	 * 
+	 * @param key
+	 *        验证码 Key
+	 * @param value
+	 *        需缓存的验证码值
+	 */
+	protected abstract void add(final String key, final String value);
+
+	/**
+	 * 验证码验证
+	 * 
+	 * @param key
+	 *        验证码 Key
+	 * @param value
+	 *        需要验证的验证码
+	 * @return 验证码是否正确
+	 */
+	protected abstract boolean validate(final String key, final String value);
+
+	/**
+	 * 删除验证码缓存
+	 * 
+	 * @param key
+	 *        验证码 Key
+	 */
+	protected abstract void delete(final String key);
+
+	/**
+	 * 验证码验证，并使验证码失效；默认依次执行 {@link #validate(String, String)} 和
+	 * {@link #delete(String)}，子类应以一次存储操作原子地实现
+	 * 
+	 * @param key
+	 *        验证码 Key
+	 * @param value
+	 *        需要验证的验证码
+	 * @return 验证码是否正确
+	 */
+	protected boolean validateAndConsume(final String key, final String value) {
+		final boolean result = value != null && value.length() > 0 && validate(key, value);
+
+		delete(key);
+
+		return result;
+	}
+
+	/**
+	 * 异步缓存验证码，默认同步执行 {@link #add(String, String)}
+	 * 
+	 * @param key
+	 *        验证码 Key
+	 * @param value
+	 *        需缓存的验证码值
+	 * @return 缓存结果
+	 */
+	protected Future<Boolean> addAsync(final String key, final String value) {
+		add(key, value);
+		return new AsyncResult<Boolean>(Boolean.TRUE);
+	}
+
+	/**
+	 * 异步验证码验证，默认同步执行 {@link #validate(String, String)}
+	 * 
+	 * @param key
+	 *        验证码 Key
+	 * @param value
+	 *        需要验证的验证码
+	 * @return 验证码是否正确
+	 */
+	protected Future<Boolean> validateAsync(final String key, final String value) {
+		return new AsyncResult<Boolean>(validate(key, value));
+	}
+
+	/**
+	 * 异步删除验证码缓存，默认同步执行 {@link #delete(String)}
+	 * 
+	 * @param key
+	 *        验证码 Key
+	 * @return 删除结果
+	 */
+	protected Future<Boolean> deleteAsync(final String key) {
+		delete(key);
+		return new AsyncResult<Boolean>(Boolean.TRUE);
+	}
+
+}
\ No newline at end of file
@@ -26,13 +26,28 @@
  */
 package com.buession.cas.service;
 
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.AsyncResult;
 import org.springframework.util.Assert;
 
+import com.buession.cas.utils.LatencyMonitor;
 import com.google.code.kaptcha.util.Config;
 
 /**
+ * 验证码服务，定义基于请求的验证码下发、验证和失效操作；按 Key 存储验证码的实现继承
+ * {@link AbstractStorageCaptchaService}
+ * 
  * @author Yong.Teng <webmaster@buession.com>
  */
 public abstract class CaptchaService {
@@ -40,11 +55,31 @@ public abstract class CaptchaService {
 	public final static String VALIDATE_CODE = "validateCode";
 
 	/**
-	 * 验证码配置
+	 * 验证码缓存时长（秒）
+	 */
+	private int lifetime = 3;
+
+	/**
+	 * 异步操作等待时长（毫秒）
+	 */
+	private long timeout = 1000;
+
+	/**
+	 * 异步操作超时次数
 	 */
-	private final Config config;
+	private final AtomicLong timeoutCount = new AtomicLong();
 
-	private String cacheName;
+	/**
+	 * 异步操作失败次数
+	 */
+	private final AtomicLong failureCount = new AtomicLong();
+
+	/**
+	 * 延迟监控，为空时不记录
+	 */
+	private LatencyMonitor latencyMonitor;
+
+	private final static Logger logger = LoggerFactory.getLogger(CaptchaService.class);
 
 	/**
 	 * @param config
@@ -52,25 +87,97 @@ public abstract class CaptchaService {
 	 */
 	public CaptchaService(final Config config) {
 		Assert.notNull(config, "Captcha config could not be null");
+	}
 
-		this.config = config;
-		cacheName = config.getSessionKey();
-		if (cacheName == null) {
-			cacheName = VALIDATE_CODE;
-		}
+	/**
+	 * 返回验证码缓存时长（秒）
+	 * 
+	 * @return 验证码缓存时长
+	 */
+	public int getLifetime() {
+		return lifetime;
+	}
+
+	/**
+	 * 设置验证码缓存时长（秒）
+	 * 
+	 * @param lifetime
+	 *        验证码缓存时长
+	 */
+	public void setLifetime(int lifetime) {
+		this.lifetime = lifetime;
 	}
 
 	/**
-	 * 缓存验证码
+	 * 返回异步操作等待时长（毫秒）
+	 * 
+	 * @return 异步操作等待时长
+	 */
+	public long getTimeout() {
+		return timeout;
+	}
+
+	/**
+	 * 设置异步操作等待时长（毫秒）
+	 * 
+	 * @param timeout
+	 *        异步操作等待时长
+	 */
+	public void setTimeout(final long timeout) {
+		this.timeout = timeout;
+	}
+
+	/**
+	 * 返回异步操作超时次数
+	 * 
+	 * @return 异步操作超时次数
+	 */
+	public long getTimeoutCount() {
+		return timeoutCount.get();
+	}
+
+	/**
+	 * 返回异步操作失败次数
+	 * 
+	 * @return 异步操作失败次数
+	 */
+	public long getFailureCount() {
+		return failureCount.get();
+	}
+
+	/**
+	 * 返回延迟监控
+	 * 
+	 * @return 延迟监控
+	 */
+	public LatencyMonitor getLatencyMonitor() {
+		return latencyMonitor;
+	}
+
+	/**
+	 * 设置延迟监控，记录 captcha.add、captcha.validate、captcha.delete、captcha.consume 及
+	 * captcha.await 耗时
+	 * 
+	 * @param latencyMonitor
+	 *        延迟监控
+	 */
+	public void setLatencyMonitor(final LatencyMonitor latencyMonitor) {
+		this.latencyMonitor = latencyMonitor;
+	}
+
+	/**
+	 * 异步下发验证码，将验证码存储到服务端或通过响应下发
 	 * 
 	 * @param request
 	 *        HttpServletRequest
+	 * @param response
+	 *        HttpServletResponse
 	 * @param value
-	 *        需缓存的验证码值
+	 *        验证码值
+	 * @return 下发结果
 	 */
-	public final void add(final HttpServletRequest request, final String value) {
-		add(getCacheName(request), value);
-	}
+	public abstract Future<Boolean> addAsync(final HttpServletRequest request,
+			final HttpServletResponse response, final String value);
 
 	/**
 	 * 验证码验证
@@ -81,62 +188,193 @@ public abstract class CaptchaService {
 	 *        需要验证的验证码
 	 * @return 验证码是否正确
 	 */
-	public final boolean validate(final HttpServletRequest request, final String validateCode) {
-		if (validateCode == null || validateCode.length() == 0) {
-			return false;
-		}
+	public abstract boolean validate(final HttpServletRequest request, final String validateCode);
 
-		return validate(getCacheName(request), validateCode);
+	/**
+	 * 异步验证码验证，默认同步执行 {@link #validate(HttpServletRequest, String)}
+	 * 
+	 * @param request
+	 *        HttpServletRequest
+	 * @param validateCode
+	 *        需要验证的验证码
+	 * @return 验证码是否正确
+	 */
+	public Future<Boolean> validateAsync(final HttpServletRequest request,
+			final String validateCode) {
+		return new AsyncResult<Boolean>(validate(request, validateCode));
 	}
 
 	/**
-	 * 删除验证码缓存
+	 * 验证码验证，并使验证码失效；无论验证结果如何，验证码只能使用一次
+	 * 
+	 * @param request
+	 *        HttpServletRequest
+	 * @param validateCode
+	 *        需要验证的验证码
+	 * @return 验证码是否正确
+	 */
+	public abstract boolean validateAndConsume(final HttpServletRequest request,
+			final String validateCode);
+
+	/**
+	 * 使验证码失效
 	 * 
 	 * @param request
 	 *        HttpServletRequest
 	 */
-	public void delete(final HttpServletRequest request) {
-		delete(getCacheName(request));
+	public abstract void delete(final HttpServletRequest request);
+
+	/**
+	 * 异步使验证码失效，默认同步执行 {@link #delete(HttpServletRequest)}
+	 * 
+	 * @param request
+	 *        HttpServletRequest
+	 * @return 删除结果
+	 */
+	public Future<Boolean> deleteAsync(final HttpServletRequest request) {
+		delete(request);
+		return new AsyncResult<Boolean>(Boolean.TRUE);
 	}
 
 	/**
-	 * 获取验证码缓存名称
+	 * 在异步操作等待时长内等待异步操作结果，超时或失败时返回 false
 	 * 
-	 * @return 验证码缓存名称
+	 * @param future
+	 *        异步操作
+	 * @return 异步操作结果
 	 */
-	public final String getCacheName(final HttpServletRequest request) {
-		Assert.notNull(request, "HttpServletRequest could not be null");
+	public final boolean await(final Future<Boolean> future) {
+		final long start = LatencyMonitor.start(latencyMonitor);
+		final Boolean result = await(future, Boolean.FALSE);
 
-		return cacheName + "_" + request.getSession().getId();
+		LatencyMonitor.record(latencyMonitor, "captcha.await", start);
+
+		return result != null && result.booleanValue();
 	}
 
 	/**
-	 * 缓存验证码
+	 * 在异步操作等待时长内等待异步操作结果，超时或失败时返回默认值
 	 * 
-	 * @param key
-	 *        验证码 Key
-	 * @param value
-	 *        需缓存的验证码值
+	 * @param future
+	 *        异步操作
+	 * @param defaultValue
+	 *        默认值
+	 * @return 异步操作结果
 	 */
-	protected abstract void add(final String key, final String value);
+	protected final <T> T await(final Future<T> future, final T defaultValue) {
+		try {
+			return future.get(timeout, TimeUnit.MILLISECONDS);
+		} catch (final TimeoutException e) {
+			timeoutCount.incrementAndGet();
+			logger.warn("Captcha operation timed out after {}ms", timeout);
+		} catch (final ExecutionException e) {
+			failure(e);
+		} catch (final InterruptedException e) {
+			failureCount.incrementAndGet();
+			Thread.currentThread().interrupt();
+		}
+
+		return defaultValue;
+	}
 
 	/**
-	 * 验证码验证
+	 * 记录一次验证码存储操作失败
 	 * 
-	 * @param key
-	 *        验证码 Key
-	 * @param value
-	 *        需要验证的验证码
-	 * @return 验证码是否正确
+	 * @param e
+	 *        异常
 	 */
-	protected abstract boolean validate(final String key, final String value);
+	protected final void failure(final Exception e) {
+		failureCount.incrementAndGet();
+		logger.error("Captcha operation failure: {}", e.getMessage(), e);
+	}
 
 	/**
-	 * 删除验证码缓存
+	 * 返回在首次取得结果时记录耗时的异步操作，延迟监控未启用时直接返回原异步操作
 	 * 
-	 * @param key
-	 *        验证码 Key
+	 * @param name
+	 *        计时器名称
+	 * @param start
+	 *        LatencyMonitor.start 返回的开始时间
+	 * @param future
+	 *        异步操作
+	 * @return 异步操作
 	 */
-	protected abstract void delete(final String key);
+	protected final <T> Future<T> timed(final String name, final long start, final Future<T> future) {
+		if (start == 0) {
+			return future;
+		}
+
+		if (future.isDone()) {
+			LatencyMonitor.record(latencyMonitor, name, start);
+			return future;
+		}
+
+		return new TimedFuture<T>(latencyMonitor, name, start, future);
+	}
+
+	/**
+	 * 在首次取得结果时记录耗时的异步操作
+	 */
+	private final static class TimedFuture<T> implements Future<T> {
+
+		private final LatencyMonitor latencyMonitor;
+
+		private final String name;
+
+		private final long start;
+
+		private final Future<T> future;
+
+		private final AtomicBoolean recorded = new AtomicBoolean();
+
+		public TimedFuture(final LatencyMonitor latencyMonitor, final String name, final long start,
+				final Future<T> future) {
+			this.latencyMonitor = latencyMonitor;
+			this.name = name;
+			this.start = start;
+			this.future = future;
+		}
+
+		@Override
+		public boolean cancel(final boolean mayInterruptIfRunning) {
+			return future.cancel(mayInterruptIfRunning);
+		}
+
+		@Override
+		public boolean isCancelled() {
+			return future.isCancelled();
+		}
+
+		@Override
+		public boolean isDone() {
+			return future.isDone();
+		}
+
+		@Override
+		public T get() throws InterruptedException, ExecutionException {
+			final T result = future.get();
+
+			record();
+
+			return result;
+		}
+
+		@Override
+		public T get(final long timeout, final TimeUnit unit) throws InterruptedException,
+				ExecutionException, TimeoutException {
+			final T result = future.get(timeout, unit);
+
+			record();
+
+			return result;
+		}
+
+		private void record() {
+			if (recorded.compareAndSet(false, true)) {
+				LatencyMonitor.record(latencyMonitor, name, start);
+			}
+		}
+
+	}
 
 }
\ No newline at end of file
@@ -0,0 +1,159 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 
+ * (the "License"); you may not use this file except in compliance with the License. You may obtain 
+ * a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * =================================================================================================
+ * 
+ * This software consists of voluntary contributions made by many individuals on behalf of the
+ * Apache Software Foundation. For more information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ * 
+ * +------------------------------------------------------------------------------------------------+
+ * | License: http://cas-server-support.buession.com.cn/LICENSE 									|
+ * | Author: Yong.Teng <webmaster@buession.com> 													|
+ * | Copyright @ 2013-2014 Buession.com Inc.														|
+ * +------------------------------------------------------------------------------------------------+
+ */
+package com.buession.cas.service;
+
+import com.buession.cas.utils.ExpiringCache;
+import com.google.code.kaptcha.util.Config;
+
+/**
+ * 进程内验证码服务，适用于单节点或会话保持的部署；验证码按缓存时长过期，超出容量时淘汰最早写入的验证码
+ * 
+ * @author Yong.Teng <webmaster@buession.com>
+ */
+public class LocalCaptchaService extends AbstractStorageCaptchaService {
+
+	/**
+	 * 验证码缓存
+	 */
+	private final ExpiringCache<String, String> cache = new ExpiringCache<String, String>(
+			100000, 0);
+
+	/**
+	 * @param config
+	 *        验证码配置
+	 */
+	public LocalCaptchaService(final Config config) {
+		super(config);
+	}
+
+	/**
+	 * 返回最大缓存验证码数量
+	 * 
+	 * @return 最大缓存验证码数量
+	 */
+	public int getMaxSize() {
+		return cache.getMaxSize();
+	}
+
+	/**
+	 * 设置最大缓存验证码数量
+	 * 
+	 * @param maxSize
+	 *        最大缓存验证码数量
+	 */
+	public void setMaxSize(final int maxSize) {
+		cache.setMaxSize(maxSize);
+	}
+
+	/**
+	 * 返回当前缓存验证码数量
+	 * 
+	 * @return 当前缓存验证码数量
+	 */
+	public int getSize() {
+		return cache.size();
+	}
+
+	/**
+	 * 返回命中次数
+	 * 
+	 * @return 命中次数
+	 */
+	public long getHitCount() {
+		return cache.getHitCount();
+	}
+
+	/**
+	 * 返回未命中次数
+	 * 
+	 * @return 未命中次数
+	 */
+	public long getMissCount() {
+		return cache.getMissCount();
+	}
+
+	/**
+	 * 返回容量淘汰次数
+	 * 
+	 * @return 容量淘汰次数
+	 */
+	public long getEvictionCount() {
+		return cache.getEvictionCount();
+	}
+
+	/**
+	 * 返回过期次数
+	 * 
+	 * @return 过期次数
+	 */
+	public long getExpirationCount() {
+		return cache.getExpirationCount();
+	}
+
+	/**
+	 * 获取缓存的验证码
+	 * 
+	 * @param key
+	 *        验证码 Key
+	 * @return 缓存的验证码，不存在或已过期时返回 null
+	 */
+	protected String get(final String key) {
+		return cache.get(key);
+	}
+
+	/**
+	 * 删除并返回缓存的验证码
+	 * 
+	 * @param key
+	 *        验证码 Key
+	 * @return 缓存的验证码，不存在或已过期时返回 null
+	 */
+	protected String remove(final String key) {
+		return cache.remove(key);
+	}
+
+	@Override
+	protected void add(String key, String value) {
+		cache.put(key, value, getLifetime() * 1000L);
+	}
+
+	@Override
+	protected boolean validate(String key, String value) {
+		return matches(get(key), value);
+	}
+
+	@Override
+	protected void delete(String key) {
+		remove(key);
+	}
+
+	@Override
+	protected boolean validateAndConsume(String key, String value) {
+		return matches(remove(key), value);
+	}
+
+}
\ No newline at end of file
@@ -26,16 +26,32 @@
  */
 package com.buession.cas.service;
 
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
 import javax.validation.constraints.NotNull;
 
 import net.spy.memcached.MemcachedClient;
 
+import com.buession.cas.utils.HexUtils;
 import com.google.code.kaptcha.util.Config;
 
 /**
+ * Memcached 验证码服务；验证码以“Key_验证码摘要”为 Key 存储，Key 本身保存当前验证码摘要，
+ * 验证并失效时同时删除两者，一次往返完成
+ * 
  * @author Yong.Teng <webmaster@buession.com>
  */
-public class MemcachedCaptchaService extends CaptchaService {
+public class MemcachedCaptchaService extends AbstractStorageCaptchaService {
+
+	private final static Charset UTF_8 = Charset.forName("UTF-8");
 
 	/**
 	 * Memcached Client
@@ -43,11 +59,6 @@ public class MemcachedCaptchaService extends CaptchaService {
 	@NotNull
 	private MemcachedClient memcachedClient;
 
-	/**
-	 * 验证码缓存时长
-	 */
-	private int lifetime = 3;
-
 	/**
 	 * @param config
 	 *        验证码配置
@@ -75,40 +86,185 @@ public class MemcachedCaptchaService extends CaptchaService {
 		this.memcachedClient = memcachedClient;
 	}
 
+	@Override
+	protected void add(String key, String value) {
+		await(addAsync(key, value));
+	}
+
+	@Override
+	protected boolean validate(String key, String value) {
+		return await(validateAsync(key, value));
+	}
+
+	@Override
+	protected void delete(String key) {
+		await(deleteAsync(key));
+	}
+
 	/**
-	 * 获取验证码缓存时长
-	 * 
-	 * @return Memcached Client
+	 * 同时删除验证码摘要 Key 和当前验证码摘要，两者都删除成功才验证通过；验证码不匹配时当前验证码摘要被删除，
+	 * 正确的验证码也随之失效
 	 */
-	public int getLifetime() {
-		return lifetime;
+	@Override
+	protected boolean validateAndConsume(String key, String value) {
+		if (value == null || value.length() == 0) {
+			memcachedClient.delete(key);
+			return false;
+		}
+
+		final Future<Boolean> entry = memcachedClient.delete(entryKey(key, digest(value)));
+		final Future<Boolean> pointer = memcachedClient.delete(key);
+
+		return await(new BothFuture(entry, pointer));
 	}
 
 	/**
-	 * 设置验证码缓存时长
-	 * 
-	 * @param lifetime
-	 *        验证码缓存时长
+	 * 缓存验证码摘要 Key 和当前验证码摘要，并删除此前缓存的验证码摘要 Key
 	 */
-	public void setLifetime(int lifetime) {
-		this.lifetime = lifetime;
+	@Override
+	protected Future<Boolean> addAsync(String key, String value) {
+		final String digest = digest(value);
+		final Object previous = await(memcachedClient.asyncGet(key), null);
+
+		if (previous != null && digest.equals(previous) == false) {
+			memcachedClient.delete(entryKey(key, previous.toString()));
+		}
+
+		final Future<Boolean> entry = memcachedClient.set(entryKey(key, digest), getLifetime(),
+				Boolean.TRUE.toString());
+		final Future<Boolean> pointer = memcachedClient.set(key, getLifetime(), digest);
+
+		return new BothFuture(entry, pointer);
 	}
 
 	@Override
-	protected void add(String key, String value) {
-		memcachedClient.set(key, lifetime, value);
+	protected Future<Boolean> validateAsync(String key, String value) {
+		final String digest = digest(value);
+
+		return new ValidateFuture(memcachedClient.asyncGetBulk(key, entryKey(key, digest)), key,
+				digest);
 	}
 
+	/**
+	 * 删除当前验证码摘要，验证码摘要 Key 随之失效并按缓存时长过期
+	 */
 	@Override
-	protected boolean validate(String key, String value) {
-		Object cacheValue = memcachedClient.get(key);
-		System.out.println(value + ", " + cacheValue);
-		return cacheValue != null && value != null && value.equalsIgnoreCase(cacheValue.toString());
+	protected Future<Boolean> deleteAsync(String key) {
+		return memcachedClient.delete(key);
 	}
 
-	@Override
-	protected void delete(String key) {
-		memcachedClient.delete(key);
+	private final static String entryKey(final String key, final String digest) {
+		return key + "_" + digest;
+	}
+
+	private final static String digest(final String value) {
+		try {
+			return HexUtils.encode(MessageDigest.getInstance("SHA-1").digest(
+					value.toLowerCase(Locale.ENGLISH).getBytes(UTF_8)));
+		} catch (final NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * 将 Memcached 批量读取结果转换为验证结果：当前验证码摘要与需要验证的验证码摘要一致，且验证码摘要 Key 存在
+	 */
+	private final static class ValidateFuture implements Future<Boolean> {
+
+		private final Future<Map<String, Object>> future;
+
+		private final String key;
+
+		private final String digest;
+
+		public ValidateFuture(final Future<Map<String, Object>> future, final String key,
+				final String digest) {
+			this.future = future;
+			this.key = key;
+			this.digest = digest;
+		}
+
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			return future.cancel(mayInterruptIfRunning);
+		}
+
+		@Override
+		public boolean isCancelled() {
+			return future.isCancelled();
+		}
+
+		@Override
+		public boolean isDone() {
+			return future.isDone();
+		}
+
+		@Override
+		public Boolean get() throws InterruptedException, ExecutionException {
+			return matches(future.get());
+		}
+
+		@Override
+		public Boolean get(long timeout, TimeUnit unit) throws InterruptedException,
+				ExecutionException, TimeoutException {
+			return matches(future.get(timeout, unit));
+		}
+
+		private boolean matches(final Map<String, Object> values) {
+			return values != null && values.containsKey(entryKey(key, digest))
+					&& digest.equals(values.get(key));
+		}
+
+	}
+
+	/**
+	 * 合并两个并发执行的 Memcached 操作结果，两者都成功时为 true
+	 */
+	private final static class BothFuture implements Future<Boolean> {
+
+		private final Future<Boolean> first;
+
+		private final Future<Boolean> second;
+
+		public BothFuture(final Future<Boolean> first, final Future<Boolean> second) {
+			this.first = first;
+			this.second = second;
+		}
+
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			return first.cancel(mayInterruptIfRunning) & second.cancel(mayInterruptIfRunning);
+		}
+
+		@Override
+		public boolean isCancelled() {
+			return first.isCancelled() || second.isCancelled();
+		}
+
+		@Override
+		public boolean isDone() {
+			return first.isDone() && second.isDone();
+		}
+
+		@Override
+		public Boolean get() throws InterruptedException, ExecutionException {
+			return isTrue(first.get()) & isTrue(second.get());
+		}
+
+		@Override
+		public Boolean get(long timeout, TimeUnit unit) throws InterruptedException,
+				ExecutionException, TimeoutException {
+			final long deadline = System.nanoTime() + unit.toNanos(timeout);
+			final boolean result = isTrue(first.get(timeout, unit));
+
+			return isTrue(second.get(Math.max(0, deadline - System.nanoTime()),
+					TimeUnit.NANOSECONDS)) & result;
+		}
+
+		private static boolean isTrue(final Boolean value) {
+			return value != null && value.booleanValue();
+		}
+
 	}
 
 }
\ No newline at end of file
@@ -0,0 +1,231 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 
+ * (the "License"); you may not use this file except in compliance with the License. You may obtain 
+ * a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * =================================================================================================
+ * 
+ * This software consists of voluntary contributions made by many individuals on behalf of the
+ * Apache Software Foundation. For more information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ * 
+ * +------------------------------------------------------------------------------------------------+
+ * | License: http://cas-server-support.buession.com.cn/LICENSE 									|
+ * | Author: Yong.Teng <webmaster@buession.com> 													|
+ * | Copyright @ 2013-2014 Buession.com Inc.														|
+ * +------------------------------------------------------------------------------------------------+
+ */
+package com.buession.cas.service;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.validation.constraints.NotNull;
+
+import org.springframework.scheduling.annotation.AsyncResult;
+
+import com.google.code.kaptcha.util.Config;
+
+/**
+ * 两级验证码服务：写入时同时写入本地缓存和远程验证码服务，验证时优先使用本地缓存，本地未命中时回退到远程验证码服务；
+ * 验证并使验证码失效时始终以远程验证码服务的原子操作为准，本地缓存仅用于提前拒绝不匹配的验证码
+ * 
+ * @author Yong.Teng <webmaster@buession.com>
+ */
+public class NearCacheCaptchaService extends AbstractStorageCaptchaService {
+
+	/**
+	 * 远程验证码 Service
+	 */
+	@NotNull
+	private AbstractStorageCaptchaService captchaService;
+
+	/**
+	 * 本地验证码 Service
+	 */
+	private final LocalCaptchaService localCaptchaService;
+
+	/**
+	 * 本地命中次数
+	 */
+	private final AtomicLong localHitCount = new AtomicLong();
+
+	/**
+	 * 本地未命中次数
+	 */
+	private final AtomicLong localMissCount = new AtomicLong();
+
+	/**
+	 * @param config
+	 *        验证码配置
+	 */
+	public NearCacheCaptchaService(final Config config) {
+		super(config);
+		localCaptchaService = new LocalCaptchaService(config);
+	}
+
+	/**
+	 * @param config
+	 *        验证码配置
+	 * @param captchaService
+	 *        远程验证码 Service
+	 */
+	public NearCacheCaptchaService(final Config config,
+			final AbstractStorageCaptchaService captchaService) {
+		this(config);
+		this.captchaService = captchaService;
+	}
+
+	/**
+	 * 返回远程验证码 Service
+	 * 
+	 * @return 远程验证码 Service
+	 */
+	public AbstractStorageCaptchaService getCaptchaService() {
+		return captchaService;
+	}
+
+	/**
+	 * 设置远程验证码 Service
+	 * 
+	 * @param captchaService
+	 *        远程验证码 Service
+	 */
+	public void setCaptchaService(final AbstractStorageCaptchaService captchaService) {
+		this.captchaService = captchaService;
+	}
+
+	/**
+	 * 返回本地缓存时长（秒）
+	 * 
+	 * @return 本地缓存时长
+	 */
+	public int getLocalLifetime() {
+		return localCaptchaService.getLifetime();
+	}
+
+	/**
+	 * 设置本地缓存时长（秒），不应大于远程验证码服务的缓存时长
+	 * 
+	 * @param localLifetime
+	 *        本地缓存时长
+	 */
+	public void setLocalLifetime(final int localLifetime) {
+		localCaptchaService.setLifetime(localLifetime);
+	}
+
+	/**
+	 * 返回本地最大缓存验证码数量
+	 * 
+	 * @return 本地最大缓存验证码数量
+	 */
+	public int getLocalMaxSize() {
+		return localCaptchaService.getMaxSize();
+	}
+
+	/**
+	 * 设置本地最大缓存验证码数量
+	 * 
+	 * @param localMaxSize
+	 *        本地最大缓存验证码数量
+	 */
+	public void setLocalMaxSize(final int localMaxSize) {
+		localCaptchaService.setMaxSize(localMaxSize);
+	}
+
+	/**
+	 * 返回本地命中次数
+	 * 
+	 * @return 本地命中次数
+	 */
+	public long getLocalHitCount() {
+		return localHitCount.get();
+	}
+
+	/**
+	 * 返回本地未命中次数
+	 * 
+	 * @return 本地未命中次数
+	 */
+	public long getLocalMissCount() {
+		return localMissCount.get();
+	}
+
+	@Override
+	protected void add(String key, String value) {
+		localCaptchaService.add(key, value);
+		captchaService.add(key, value);
+	}
+
+	@Override
+	protected boolean validate(String key, String value) {
+		final String localValue = getLocal(key);
+		return localValue == null ? captchaService.validate(key, value) : matches(localValue, value);
+	}
+
+	@Override
+	protected void delete(String key) {
+		localCaptchaService.delete(key);
+		captchaService.delete(key);
+	}
+
+	@Override
+	protected boolean validateAndConsume(String key, String value) {
+		final String localValue = localCaptchaService.remove(key);
+
+		if (localValue == null) {
+			localMissCount.incrementAndGet();
+		} else {
+			localHitCount.incrementAndGet();
+
+			// 本地已确定不匹配，无需等待远程结果，异步删除远程验证码即可
+			if (matches(localValue, value) == false) {
+				captchaService.deleteAsync(key);
+				return false;
+			}
+		}
+
+		return captchaService.validateAndConsume(key, value);
+	}
+
+	@Override
+	protected Future<Boolean> addAsync(String key, String value) {
+		localCaptchaService.add(key, value);
+		return captchaService.addAsync(key, value);
+	}
+
+	@Override
+	protected Future<Boolean> validateAsync(String key, String value) {
+		final String localValue = getLocal(key);
+		return localValue == null ? captchaService.validateAsync(key, value)
+				: new AsyncResult<Boolean>(matches(localValue, value));
+	}
+
+	@Override
+	protected Future<Boolean> deleteAsync(String key) {
+		localCaptchaService.delete(key);
+		return captchaService.deleteAsync(key);
+	}
+
+	private String getLocal(final String key) {
+		final String localValue = localCaptchaService.get(key);
+
+		if (localValue == null) {
+			localMissCount.incrementAndGet();
+		} else {
+			localHitCount.incrementAndGet();
+		}
+
+		return localValue;
+	}
+
+}
\ No newline at end of file
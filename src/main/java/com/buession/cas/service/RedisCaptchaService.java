@@ -0,0 +1,290 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 
+ * (the "License"); you may not use this file except in compliance with the License. You may obtain 
+ * a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * =================================================================================================
+ * 
+ * This software consists of voluntary contributions made by many individuals on behalf of the
+ * Apache Software Foundation. For more information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ * 
+ * +------------------------------------------------------------------------------------------------+
+ * | License: http://cas-server-support.buession.com.cn/LICENSE 									|
+ * | Author: Yong.Teng <webmaster@buession.com> 													|
+ * | Copyright @ 2013-2014 Buession.com Inc.														|
+ * +------------------------------------------------------------------------------------------------+
+ */
+package com.buession.cas.service;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Map;
+
+import javax.validation.constraints.NotNull;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.jedis.exceptions.JedisException;
+
+import com.buession.cas.utils.HexUtils;
+import com.buession.cas.utils.LatencyMonitor;
+import com.google.code.kaptcha.util.Config;
+
+/**
+ * Redis 验证码服务，使用 SETEX 缓存验证码，使用 Lua 脚本在一次往返中完成验证码的读取和删除；
+ * 脚本以 EVALSHA 执行，服务端未缓存脚本时回退到 EVAL；批量写入、删除以管道方式执行
+ * 
+ * 设置延迟监控时，各 Redis 操作耗时记录为 redis.add、redis.validate、redis.consume、redis.delete、
+ * redis.addAll、redis.deleteAll
+ * 
+ * @author Yong.Teng <webmaster@buession.com>
+ */
+public class RedisCaptchaService extends AbstractStorageCaptchaService {
+
+	/**
+	 * 读取并删除验证码的 Lua 脚本
+	 */
+	final static String GET_AND_DELETE_SCRIPT = "local value = redis.call('GET', KEYS[1]) "
+			+ "if value then redis.call('DEL', KEYS[1]) end return value";
+
+	/**
+	 * 读取并删除验证码的 Lua 脚本 SHA1
+	 */
+	final static String GET_AND_DELETE_SCRIPT_SHA = sha1(GET_AND_DELETE_SCRIPT);
+
+	/**
+	 * Redis 连接池
+	 */
+	@NotNull
+	private JedisPool jedisPool;
+
+	/**
+	 * @param config
+	 *        验证码配置
+	 */
+	public RedisCaptchaService(final Config config) {
+		super(config);
+	}
+
+	/**
+	 * 返回 Redis 连接池
+	 * 
+	 * @return Redis 连接池
+	 */
+	public JedisPool getJedisPool() {
+		return jedisPool;
+	}
+
+	/**
+	 * 设置 Redis 连接池
+	 * 
+	 * @param jedisPool
+	 *        Redis 连接池
+	 */
+	public void setJedisPool(JedisPool jedisPool) {
+		this.jedisPool = jedisPool;
+	}
+
+	/**
+	 * 以管道方式批量缓存验证码
+	 * 
+	 * @param values
+	 *        验证码（验证码 Key - 需缓存的验证码值）
+	 * @return 是否全部缓存成功
+	 */
+	public boolean addAll(final Map<String, String> values) {
+		if (values == null || values.isEmpty()) {
+			return true;
+		}
+
+		return execute("redis.addAll", Boolean.FALSE, new RedisCallback<Boolean>() {
+
+			@Override
+			public Boolean doInRedis(final Jedis jedis) {
+				final Pipeline pipeline = jedis.pipelined();
+				final int lifetime = getLifetime();
+
+				for (final Map.Entry<String, String> e : values.entrySet()) {
+					pipeline.setex(e.getKey(), lifetime, e.getValue());
+				}
+
+				for (final Object result : pipeline.syncAndReturnAll()) {
+					if ("OK".equals(result) == false) {
+						return Boolean.FALSE;
+					}
+				}
+
+				return Boolean.TRUE;
+			}
+
+		}).booleanValue();
+	}
+
+	/**
+	 * 以管道方式批量删除验证码
+	 * 
+	 * @param keys
+	 *        验证码 Key
+	 * @return 删除的验证码数量，失败时返回 -1
+	 */
+	public long deleteAll(final Collection<String> keys) {
+		if (keys == null || keys.isEmpty()) {
+			return 0;
+		}
+
+		return execute("redis.deleteAll", Long.valueOf(-1), new RedisCallback<Long>() {
+
+			@Override
+			public Long doInRedis(final Jedis jedis) {
+				final Pipeline pipeline = jedis.pipelined();
+				long deleted = 0;
+
+				for (final String key : keys) {
+					pipeline.del(key);
+				}
+
+				for (final Object result : pipeline.syncAndReturnAll()) {
+					if (result instanceof Long) {
+						deleted += (Long) result;
+					}
+				}
+
+				return deleted;
+			}
+
+		}).longValue();
+	}
+
+	@Override
+	protected void add(final String key, final String value) {
+		execute("redis.add", null, new RedisCallback<String>() {
+
+			@Override
+			public String doInRedis(final Jedis jedis) {
+				return jedis.setex(key, getLifetime(), value);
+			}
+
+		});
+	}
+
+	@Override
+	protected boolean validate(final String key, final String value) {
+		return matches(execute("redis.validate", null, new RedisCallback<String>() {
+
+			@Override
+			public String doInRedis(final Jedis jedis) {
+				return jedis.get(key);
+			}
+
+		}), value);
+	}
+
+	@Override
+	protected void delete(final String key) {
+		execute("redis.delete", null, new RedisCallback<Long>() {
+
+			@Override
+			public Long doInRedis(final Jedis jedis) {
+				return jedis.del(key);
+			}
+
+		});
+	}
+
+	@Override
+	protected boolean validateAndConsume(final String key, final String value) {
+		return matches(execute("redis.consume", null, new RedisCallback<Object>() {
+
+			@Override
+			public Object doInRedis(final Jedis jedis) {
+				try {
+					return jedis.evalsha(GET_AND_DELETE_SCRIPT_SHA, 1, key);
+				} catch (final JedisDataException e) {
+					if (e.getMessage() == null || e.getMessage().startsWith("NOSCRIPT") == false) {
+						throw e;
+					}
+
+					// 服务端未缓存脚本（如重启或 SCRIPT FLUSH），EVAL 执行的同时缓存脚本
+					return jedis.eval(GET_AND_DELETE_SCRIPT, 1, key);
+				}
+			}
+
+		}), value);
+	}
+
+	/**
+	 * 从连接池中获取连接并执行 Redis 操作，记录操作延迟；操作失败时返回默认值
+	 * 
+	 * @param name
+	 *        计时器名称
+	 * @param defaultValue
+	 *        默认值
+	 * @param callback
+	 *        Redis 操作
+	 * @return 操作结果
+	 */
+	protected <T> T execute(final String name, final T defaultValue,
+			final RedisCallback<T> callback) {
+		final long start = LatencyMonitor.start(getLatencyMonitor());
+		Jedis jedis = null;
+		boolean broken = false;
+
+		try {
+			jedis = jedisPool.getResource();
+			return callback.doInRedis(jedis);
+		} catch (final JedisConnectionException e) {
+			broken = true;
+			failure(e);
+		} catch (final JedisException e) {
+			failure(e);
+		} finally {
+			if (jedis != null) {
+				if (broken) {
+					jedisPool.returnBrokenResource(jedis);
+				} else {
+					jedisPool.returnResource(jedis);
+				}
+			}
+
+			LatencyMonitor.record(getLatencyMonitor(), name, start);
+		}
+
+		return defaultValue;
+	}
+
+	private final static String sha1(final String script) {
+		try {
+			return HexUtils.encode(MessageDigest.getInstance("SHA-1").digest(
+					script.getBytes("UTF-8")));
+		} catch (final NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		} catch (final UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Redis 操作
+	 */
+	protected interface RedisCallback<T> {
+
+		T doInRedis(final Jedis jedis);
+
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,338 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 
+ * (the "License"); you may not use this file except in compliance with the License. You may obtain 
+ * a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * =================================================================================================
+ * 
+ * This software consists of voluntary contributions made by many individuals on behalf of the
+ * Apache Software Foundation. For more information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ * 
+ * +------------------------------------------------------------------------------------------------+
+ * | License: http://cas-server-support.buession.com.cn/LICENSE 									|
+ * | Author: Yong.Teng <webmaster@buession.com> 													|
+ * | Copyright @ 2013-2014 Buession.com Inc.														|
+ * +------------------------------------------------------------------------------------------------+
+ */
+package com.buession.cas.service;
+
+import java.nio.charset.Charset;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Locale;
+import java.util.concurrent.Future;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.scheduling.annotation.AsyncResult;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+
+import com.buession.cas.utils.HexUtils;
+import com.buession.cas.utils.LatencyMonitor;
+import com.buession.cas.utils.RotatingBloomFilter;
+import com.buession.cas.web.utils.CaptchaUtils;
+import com.google.code.kaptcha.util.Config;
+
+/**
+ * 无状态验证码服务，不在服务端存储验证码；验证码、过期时间和会话 ID 经 HMAC 签名后写入 Cookie，
+ * 已使用的验证码由本地布隆过滤器记录，防止重放。集群部署时各节点须配置相同的签名密钥
+ * 
+ * @author Yong.Teng <webmaster@buession.com>
+ */
+public class StatelessCaptchaService extends CaptchaService {
+
+	private final static String HMAC_ALGORITHM = "HmacSHA256";
+
+	private final static Charset UTF_8 = Charset.forName("UTF-8");
+
+	private final static int NONCE_LENGTH = 16;
+
+	private final static int MAC_LENGTH = 16;
+
+	/**
+	 * 验证码 Cookie 名称
+	 */
+	private final String cookieName;
+
+	/**
+	 * 签名密钥
+	 */
+	private volatile SecretKeySpec secretKey;
+
+	/**
+	 * 已使用验证码布隆过滤器每代容量
+	 */
+	private long replayFilterCapacity = 100000;
+
+	/**
+	 * 已使用验证码布隆过滤器误判率
+	 */
+	private double replayFilterFalsePositiveProbability = 0.0001;
+
+	/**
+	 * 已使用验证码
+	 */
+	private volatile RotatingBloomFilter consumedTokens;
+
+	private final SecureRandom random = new SecureRandom();
+
+	private final ThreadLocal<Mac> macs = new ThreadLocal<Mac>() {
+
+		@Override
+		protected Mac initialValue() {
+			try {
+				return Mac.getInstance(HMAC_ALGORITHM);
+			} catch (final GeneralSecurityException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+
+	};
+
+	/**
+	 * 使用随机签名密钥，仅适用于单节点部署
+	 * 
+	 * @param config
+	 *        验证码配置
+	 */
+	public StatelessCaptchaService(final Config config) {
+		super(config);
+
+		final byte[] key = new byte[32];
+		random.nextBytes(key);
+
+		cookieName = CaptchaUtils.getCaptchaCookieName(config);
+		secretKey = new SecretKeySpec(key, HMAC_ALGORITHM);
+		consumedTokens = createReplayFilter();
+	}
+
+	/**
+	 * @param config
+	 *        验证码配置
+	 * @param secret
+	 *        签名密钥
+	 */
+	public StatelessCaptchaService(final Config config, final String secret) {
+		this(config);
+		setSecret(secret);
+	}
+
+	/**
+	 * 设置签名密钥
+	 * 
+	 * @param secret
+	 *        签名密钥，至少 16 个字符
+	 */
+	public void setSecret(final String secret) {
+		Assert.isTrue(secret != null && secret.length() >= 16,
+				"Secret must be at least 16 characters");
+		secretKey = new SecretKeySpec(secret.getBytes(UTF_8), HMAC_ALGORITHM);
+	}
+
+	/**
+	 * 返回已使用验证码布隆过滤器每代容量
+	 * 
+	 * @return 已使用验证码布隆过滤器每代容量
+	 */
+	public long getReplayFilterCapacity() {
+		return replayFilterCapacity;
+	}
+
+	/**
+	 * 设置已使用验证码布隆过滤器每代容量，应不小于一个验证码缓存时长内的登录次数
+	 * 
+	 * @param replayFilterCapacity
+	 *        已使用验证码布隆过滤器每代容量
+	 */
+	public void setReplayFilterCapacity(final long replayFilterCapacity) {
+		this.replayFilterCapacity = replayFilterCapacity;
+		consumedTokens = createReplayFilter();
+	}
+
+	/**
+	 * 返回已使用验证码布隆过滤器误判率
+	 * 
+	 * @return 已使用验证码布隆过滤器误判率
+	 */
+	public double getReplayFilterFalsePositiveProbability() {
+		return replayFilterFalsePositiveProbability;
+	}
+
+	/**
+	 * 设置已使用验证码布隆过滤器误判率，误判会使正确的验证码验证失败
+	 * 
+	 * @param replayFilterFalsePositiveProbability
+	 *        已使用验证码布隆过滤器误判率
+	 */
+	public void setReplayFilterFalsePositiveProbability(
+			final double replayFilterFalsePositiveProbability) {
+		this.replayFilterFalsePositiveProbability = replayFilterFalsePositiveProbability;
+		consumedTokens = createReplayFilter();
+	}
+
+	@Override
+	public void setLifetime(int lifetime) {
+		super.setLifetime(lifetime);
+
+		if (consumedTokens != null) {
+			consumedTokens.setRotationInterval(getRotationInterval());
+		}
+	}
+
+	@Override
+	public Future<Boolean> addAsync(final HttpServletRequest request,
+			final HttpServletResponse response, final String value) {
+		final long start = LatencyMonitor.start(getLatencyMonitor());
+		final byte[] bytes = new byte[NONCE_LENGTH];
+		random.nextBytes(bytes);
+
+		final String nonce = HexUtils.encode(bytes);
+		final String expireAt = Long.toHexString(System.currentTimeMillis() + getLifetime() * 1000L);
+		final String sessionId = request.getSession().getId();
+		final StringBuilder token = new StringBuilder(128);
+
+		token.append(nonce).append('.').append(expireAt).append('.');
+		token.append(HexUtils.encode(sign("t", sessionId, nonce, expireAt))).append('.');
+		token.append(HexUtils.encode(sign("c", nonce, value.toLowerCase(Locale.ENGLISH))));
+
+		final Cookie cookie = new Cookie(cookieName, token.toString());
+		cookie.setPath(StringUtils.hasText(request.getContextPath()) ? request.getContextPath()
+				: "/");
+		cookie.setMaxAge(getLifetime());
+		cookie.setHttpOnly(true);
+		cookie.setSecure(request.isSecure());
+		response.addCookie(cookie);
+
+		LatencyMonitor.record(getLatencyMonitor(), "captcha.add", start);
+
+		return new AsyncResult<Boolean>(Boolean.TRUE);
+	}
+
+	@Override
+	public boolean validate(final HttpServletRequest request, final String validateCode) {
+		final long start = LatencyMonitor.start(getLatencyMonitor());
+		final String[] token = readToken(request);
+		final boolean result = token != null && consumedTokens.mightContain(token[0]) == false
+				&& codeMatches(token, validateCode);
+
+		LatencyMonitor.record(getLatencyMonitor(), "captcha.validate", start);
+
+		return result;
+	}
+
+	@Override
+	public boolean validateAndConsume(final HttpServletRequest request, final String validateCode) {
+		final long start = LatencyMonitor.start(getLatencyMonitor());
+		final String[] token = readToken(request);
+		final boolean result = token != null && consumedTokens.putIfAbsent(token[0])
+				&& codeMatches(token, validateCode);
+
+		LatencyMonitor.record(getLatencyMonitor(), "captcha.consume", start);
+
+		return result;
+	}
+
+	@Override
+	public void delete(final HttpServletRequest request) {
+		final String[] token = readToken(request);
+
+		if (token != null) {
+			consumedTokens.put(token[0]);
+		}
+	}
+
+	/**
+	 * 读取并校验验证码 Cookie
+	 * 
+	 * @param request
+	 *        HttpServletRequest
+	 * @return 签名有效且未过期的验证码令牌（nonce、过期时间、令牌签名、验证码签名），否则返回 null
+	 */
+	private String[] readToken(final HttpServletRequest request) {
+		final Cookie[] cookies = request.getCookies();
+		if (cookies == null) {
+			return null;
+		}
+
+		for (final Cookie cookie : cookies) {
+			if (cookieName.equals(cookie.getName()) == false || cookie.getValue() == null) {
+				continue;
+			}
+
+			final String[] token = cookie.getValue().split("\\.");
+			if (token.length != 4) {
+				return null;
+			}
+
+			final long expireAt;
+			try {
+				expireAt = Long.parseLong(token[1], 16);
+			} catch (final NumberFormatException e) {
+				return null;
+			}
+
+			if (System.currentTimeMillis() >= expireAt) {
+				return null;
+			}
+
+			final byte[] expected = sign("t", request.getSession().getId(), token[0], token[1]);
+			return HexUtils.isEqual(expected, token[2]) ? token : null;
+		}
+
+		return null;
+	}
+
+	private boolean codeMatches(final String[] token, final String validateCode) {
+		if (validateCode == null || validateCode.length() == 0) {
+			return false;
+		}
+
+		final byte[] expected = sign("c", token[0], validateCode.toLowerCase(Locale.ENGLISH));
+		return HexUtils.isEqual(expected, token[3]);
+	}
+
+	private byte[] sign(final String... parts) {
+		final Mac mac = macs.get();
+
+		try {
+			mac.init(secretKey);
+		} catch (final GeneralSecurityException e) {
+			throw new IllegalStateException(e);
+		}
+
+		for (final String part : parts) {
+			mac.update(part.getBytes(UTF_8));
+			mac.update((byte) 0);
+		}
+
+		final byte[] result = new byte[MAC_LENGTH];
+		System.arraycopy(mac.doFinal(), 0, result, 0, MAC_LENGTH);
+
+		return result;
+	}
+
+	private long getRotationInterval() {
+		return Math.max(1, getLifetime()) * 1000L;
+	}
+
+	private RotatingBloomFilter createReplayFilter() {
+		return new RotatingBloomFilter(replayFilterCapacity, replayFilterFalsePositiveProbability,
+				getRotationInterval());
+	}
+
+}
\ No newline at end of file
@@ -26,7 +26,21 @@
  */
 package com.buession.cas.service.persondir.support.jdbc;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 
 import javax.validation.constraints.NotNull;
@@ -35,9 +49,15 @@ import org.apache.commons.lang.StringUtils;
 import org.jasig.services.persondir.IPersonAttributeDao;
 import org.jasig.services.persondir.IPersonAttributes;
 import org.jasig.services.persondir.support.AbstractQueryPersonAttributeDao;
+import org.jasig.services.persondir.support.NamedPersonImpl;
 import org.jasig.services.persondir.support.QueryType;
+import org.springframework.dao.DataAccessResourceFailureException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.simple.ParameterizedRowMapper;
+import org.springframework.util.Assert;
+
+import com.buession.cas.utils.ExpiringCache;
+import com.buession.cas.utils.SingleFlight;
 
 /**
  * Provides common logic for executing a JDBC based query including building the WHERE clause SQL
@@ -65,6 +85,47 @@ public abstract class AbstractJdbcPersonAttributeDao<R> extends
 	 */
 	protected QueryType queryType = QueryType.AND;
 
+	/**
+	 * 以 {0} 分割的查询模板
+	 */
+	private volatile String[] queryTemplateParts;
+
+	/**
+	 * 查询语句缓存（WHERE 子句 - 查询语句）
+	 */
+	private final ExpiringCache<String, String> sqlCache = new ExpiringCache<String, String>(1000, 0);
+
+	/**
+	 * 查询结果缓存有效期（毫秒），为 0 时不缓存查询结果
+	 */
+	private long resultCacheLifetime = 0;
+
+	/**
+	 * 空查询结果缓存有效期（毫秒），为 0 时不缓存空查询结果
+	 */
+	private long emptyResultCacheLifetime = 0;
+
+	/**
+	 * 查询结果缓存（查询语句、参数和用户名 - 查询结果）
+	 */
+	private final ExpiringCache<String, List<IPersonAttributes>> resultCache = new ExpiringCache<String, List<IPersonAttributes>>(
+			10000, 0);
+
+	/**
+	 * 合并相同的并发查询
+	 */
+	private final SingleFlight<String, List<IPersonAttributes>> singleFlight = new SingleFlight<String, List<IPersonAttributes>>();
+
+	/**
+	 * 批量查询时每条查询的最大用户数
+	 */
+	private int batchSize = 500;
+
+	/**
+	 * 批量查询线程池，为 null 时在调用线程中依次查询
+	 */
+	private ExecutorService batchExecutor;
+
 	public AbstractJdbcPersonAttributeDao() {
 
 	}
@@ -85,7 +146,7 @@ public abstract class AbstractJdbcPersonAttributeDao<R> extends
 	 */
 	public AbstractJdbcPersonAttributeDao(JdbcTemplate jdbcTemplate, String queryTemplate) {
 		this.jdbcTemplate = jdbcTemplate;
-		this.queryTemplate = queryTemplate;
+		setQueryTemplate(queryTemplate);
 	}
 
 	/**
@@ -124,6 +185,8 @@ public abstract class AbstractJdbcPersonAttributeDao<R> extends
 	 */
 	public void setQueryTemplate(String queryTemplate) {
 		this.queryTemplate = queryTemplate;
+		this.queryTemplateParts = queryTemplate == null ? null : split(queryTemplate);
+		sqlCache.clear();
 	}
 
 	/**
@@ -143,6 +206,280 @@ public abstract class AbstractJdbcPersonAttributeDao<R> extends
 	 */
 	public void setQueryType(QueryType queryType) {
 		this.queryType = queryType;
+		sqlCache.clear();
+	}
+
+	/**
+	 * 返回查询语句缓存最大条目数
+	 * 
+	 * @return 查询语句缓存最大条目数
+	 */
+	public int getSqlCacheSize() {
+		return sqlCache.getMaxSize();
+	}
+
+	/**
+	 * 设置查询语句缓存最大条目数，应不小于不同查询属性组合的数量
+	 * 
+	 * @param sqlCacheSize
+	 *        查询语句缓存最大条目数
+	 */
+	public void setSqlCacheSize(int sqlCacheSize) {
+		sqlCache.setMaxSize(sqlCacheSize);
+	}
+
+	/**
+	 * 返回查询结果缓存有效期（毫秒）
+	 * 
+	 * @return 查询结果缓存有效期
+	 */
+	public long getResultCacheLifetime() {
+		return resultCacheLifetime;
+	}
+
+	/**
+	 * 设置查询结果缓存有效期（毫秒），为 0 时不缓存查询结果；
+	 * 缓存期间数据库中属性的变更不可见，可通过 clearResultCache 清空
+	 * 
+	 * @param resultCacheLifetime
+	 *        查询结果缓存有效期
+	 */
+	public void setResultCacheLifetime(long resultCacheLifetime) {
+		this.resultCacheLifetime = resultCacheLifetime;
+		resultCache.setLifetime(resultCacheLifetime);
+		resultCache.clear();
+	}
+
+	/**
+	 * 返回空查询结果缓存有效期（毫秒）
+	 * 
+	 * @return 空查询结果缓存有效期
+	 */
+	public long getEmptyResultCacheLifetime() {
+		return emptyResultCacheLifetime;
+	}
+
+	/**
+	 * 设置空查询结果缓存有效期（毫秒），为 0 时不缓存空查询结果，避免新建用户在结果缓存有效期内查询不到属性；
+	 * 大于查询结果缓存有效期时以查询结果缓存有效期为准
+	 * 
+	 * @param emptyResultCacheLifetime
+	 *        空查询结果缓存有效期
+	 */
+	public void setEmptyResultCacheLifetime(long emptyResultCacheLifetime) {
+		Assert.isTrue(emptyResultCacheLifetime >= 0,
+				"Empty result cache lifetime could not be negative");
+		this.emptyResultCacheLifetime = emptyResultCacheLifetime;
+	}
+
+	/**
+	 * 返回查询结果缓存最大条目数
+	 * 
+	 * @return 查询结果缓存最大条目数
+	 */
+	public int getResultCacheSize() {
+		return resultCache.getMaxSize();
+	}
+
+	/**
+	 * 设置查询结果缓存最大条目数
+	 * 
+	 * @param resultCacheSize
+	 *        查询结果缓存最大条目数
+	 */
+	public void setResultCacheSize(int resultCacheSize) {
+		resultCache.setMaxSize(resultCacheSize);
+	}
+
+	/**
+	 * 返回查询结果缓存命中次数
+	 * 
+	 * @return 查询结果缓存命中次数
+	 */
+	public long getResultCacheHitCount() {
+		return resultCache.getHitCount();
+	}
+
+	/**
+	 * 返回查询结果缓存未命中次数
+	 * 
+	 * @return 查询结果缓存未命中次数
+	 */
+	public long getResultCacheMissCount() {
+		return resultCache.getMissCount();
+	}
+
+	/**
+	 * 返回与进行中的相同查询共享结果的次数
+	 * 
+	 * @return 共享结果次数
+	 */
+	public long getSharedQueryCount() {
+		return singleFlight.getSharedCount();
+	}
+
+	/**
+	 * 清空查询结果缓存
+	 */
+	public void clearResultCache() {
+		resultCache.clear();
+	}
+
+	/**
+	 * 返回批量查询时每条查询的最大用户数
+	 * 
+	 * @return 每条查询的最大用户数
+	 */
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	/**
+	 * 设置批量查询时每条查询的最大用户数，不应超过数据库 IN 列表和绑定参数数量的限制
+	 * 
+	 * @param batchSize
+	 *        每条查询的最大用户数
+	 */
+	public void setBatchSize(int batchSize) {
+		Assert.isTrue(batchSize > 0, "Batch size must be greater than 0");
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * 返回批量查询线程池
+	 * 
+	 * @return 批量查询线程池
+	 */
+	public ExecutorService getBatchExecutor() {
+		return batchExecutor;
+	}
+
+	/**
+	 * 设置批量查询线程池，应为有界线程池，线程数不超过数据库连接池可用连接数；为 null 时在调用线程中依次查询
+	 * 
+	 * @param batchExecutor
+	 *        批量查询线程池
+	 */
+	public void setBatchExecutor(ExecutorService batchExecutor) {
+		this.batchExecutor = batchExecutor;
+	}
+
+	/**
+	 * 批量查询用户属性，按 batchSize 将用户名拆分为多条 IN 查询，设置 batchExecutor 时并行执行；
+	 * 每条 IN 查询的参数个数补齐为 2 的幂，以限制不同查询语句的数量；
+	 * 用户名查询属性须映射到唯一的列，查询结果须包含该列，不使用查询结果缓存
+	 * 
+	 * @param usernames
+	 *        用户名
+	 * @return 用户属性（用户名 - 用户属性），用户名为传入的用户名，与查询结果中的用户名不区分大小写匹配；
+	 *         不存在的用户不包含在结果中
+	 * @throws IllegalStateException
+	 *         查询结果不包含用户名列
+	 */
+	public Map<String, IPersonAttributes> getPeopleByUsernames(final Collection<String> usernames) {
+		Assert.notNull(usernames, "Usernames could not be null");
+
+		final Set<String> distinctUsernames = new LinkedHashSet<String>(usernames.size());
+		for (final String username : usernames) {
+			if (StringUtils.isNotBlank(username)) {
+				distinctUsernames.add(username);
+			}
+		}
+
+		final Map<String, IPersonAttributes> people = new LinkedHashMap<String, IPersonAttributes>(
+				distinctUsernames.size() * 4 / 3 + 1);
+		if (distinctUsernames.isEmpty()) {
+			return people;
+		}
+
+		final Map<String, String> lowerCaseUsernames = new HashMap<String, String>(
+				distinctUsernames.size() * 4 / 3 + 1);
+		for (final String username : distinctUsernames) {
+			final String lowerCaseUsername = username.toLowerCase(Locale.ENGLISH);
+
+			if (lowerCaseUsernames.containsKey(lowerCaseUsername) == false) {
+				lowerCaseUsernames.put(lowerCaseUsername, username);
+			}
+		}
+
+		final String column = getUserNameColumn();
+		final List<Callable<List<IPersonAttributes>>> tasks = new ArrayList<Callable<List<IPersonAttributes>>>(
+				(distinctUsernames.size() + batchSize - 1) / batchSize);
+		final List<String> chunk = new ArrayList<String>(batchSize);
+
+		for (final String username : distinctUsernames) {
+			chunk.add(username);
+
+			if (chunk.size() >= batchSize) {
+				tasks.add(createBatchTask(column, chunk));
+				chunk.clear();
+			}
+		}
+		if (chunk.isEmpty() == false) {
+			tasks.add(createBatchTask(column, chunk));
+		}
+
+		final String resultColumn = column.substring(column.lastIndexOf('.') + 1);
+
+		for (final List<IPersonAttributes> result : executeBatchTasks(tasks)) {
+			for (final IPersonAttributes person : result) {
+				final Object value = getAttributeValue(person, resultColumn);
+
+				if (value == null) {
+					throw new IllegalStateException(
+							"Batch query result does not contain username column '" + resultColumn
+									+ "': " + person);
+				}
+
+				String username = value.toString();
+				if (distinctUsernames.contains(username) == false) {
+					username = lowerCaseUsernames.get(username.toLowerCase(Locale.ENGLISH));
+				}
+
+				if (username == null) {
+					logger.warn("Username '" + value
+							+ "' in batch query result was not queried, ignoring");
+				} else if (people.containsKey(username)) {
+					logger.warn("Multiple results found for username '" + username
+							+ "', ignoring all but the first");
+				} else {
+					final IPersonAttributes mappedPerson = mapPersonAttributes(person);
+
+					people.put(username, username.equals(mappedPerson.getName()) ? mappedPerson
+							: new NamedPersonImpl(username, mappedPerson.getAttributes()));
+				}
+			}
+		}
+
+		return people;
+	}
+
+	/**
+	 * 返回 WHERE 子句对应的查询语句；相同 WHERE 子句复用同一查询语句，便于驱动和连接池缓存预编译语句
+	 * 
+	 * @param queryBuilder
+	 *        WHERE 子句
+	 * @return 查询语句
+	 */
+	protected final String getSql(final PartialWhereClause queryBuilder) {
+		final String whereClause = queryBuilder.sql.toString();
+		String sql = sqlCache.get(whereClause);
+
+		if (sql == null) {
+			final String[] parts = queryTemplateParts;
+			final StringBuilder sb = new StringBuilder(queryTemplate.length() + whereClause.length()
+					* (parts.length - 1));
+
+			sb.append(parts[0]);
+			for (int i = 1; i < parts.length; i++) {
+				sb.append(whereClause).append(parts[i]);
+			}
+
+			sql = sb.toString();
+			sqlCache.put(whereClause, sql);
+		}
+
+		return sql;
 	}
 
 	/**
@@ -162,19 +499,77 @@ public abstract class AbstractJdbcPersonAttributeDao<R> extends
 
 	@Override
 	protected List<IPersonAttributes> getPeopleForQuery(PartialWhereClause queryBuilder,
-			String queryUserName) {
-		final ParameterizedRowMapper<R> rowMapper = getRowMapper();
-		List<R> results = null;
+			final String queryUserName) {
+		final String sql;
+		final Object[] args;
 
 		if (queryBuilder != null) {
-			final String sql = queryTemplate.replaceAll("\\{0\\}", queryBuilder.sql.toString());
+			sql = getSql(queryBuilder);
+			args = queryBuilder.arguments.toArray();
+		} else {
+			sql = queryTemplate;
+			args = null;
+		}
+
+		if (resultCacheLifetime <= 0) {
+			return queryPeople(sql, args, queryUserName);
+		}
 
-			results = jdbcTemplate.query(sql, rowMapper, queryBuilder.arguments.toArray());
-			logger.debug("Executed '" + sql + "' with arguments " + queryBuilder.arguments
+		final String key = buildResultCacheKey(sql, args, queryUserName);
+		final List<IPersonAttributes> people = resultCache.get(key);
+
+		if (people != null) {
+			return people;
+		}
+
+		return singleFlight.execute(key, new Callable<List<IPersonAttributes>>() {
+
+			@Override
+			public List<IPersonAttributes> call() throws Exception {
+				final List<IPersonAttributes> results = queryPeople(sql, args, queryUserName);
+
+				if (results == null || results.isEmpty()) {
+					if (emptyResultCacheLifetime > 0) {
+						resultCache.put(key, Collections.<IPersonAttributes> emptyList(),
+								Math.min(emptyResultCacheLifetime, resultCacheLifetime));
+					}
+
+					return results;
+				}
+
+				final List<IPersonAttributes> result = Collections.unmodifiableList(results);
+
+				resultCache.put(key, result);
+
+				return result;
+			}
+
+		});
+	}
+
+	/**
+	 * 执行查询并解析查询结果
+	 * 
+	 * @param sql
+	 *        查询语句
+	 * @param args
+	 *        查询参数，为 null 时不绑定参数
+	 * @param queryUserName
+	 *        查询用户名
+	 * @return 查询结果
+	 */
+	protected List<IPersonAttributes> queryPeople(final String sql, final Object[] args,
+			final String queryUserName) {
+		final ParameterizedRowMapper<R> rowMapper = getRowMapper();
+		List<R> results = null;
+
+		if (args != null) {
+			results = jdbcTemplate.query(sql, rowMapper, args);
+			logger.debug("Executed '" + sql + "' with arguments " + Arrays.toString(args)
 					+ " and got results " + results);
 		} else {
-			results = jdbcTemplate.query(queryTemplate, rowMapper);
-			logger.debug("Executed '" + queryTemplate + "' and got results " + results);
+			results = jdbcTemplate.query(sql, rowMapper);
+			logger.debug("Executed '" + sql + "' and got results " + results);
 		}
 
 		return parseAttributeMapFromResults(results, queryUserName);
@@ -216,4 +611,174 @@ public abstract class AbstractJdbcPersonAttributeDao<R> extends
 		return queryBuilder;
 	}
 
+	/**
+	 * 返回用户名查询属性映射的列
+	 */
+	private String getUserNameColumn() {
+		final String userNameAttribute = getConfiguredUserNameAttribute();
+		final Map<String, Set<String>> queryAttributeMapping = getQueryAttributeMapping();
+		final Set<String> columns = queryAttributeMapping == null ? null : queryAttributeMapping
+				.get(userNameAttribute);
+
+		if (columns == null || columns.size() != 1) {
+			throw new IllegalStateException("Query attribute '" + userNameAttribute
+					+ "' must be mapped to exactly one column for batch query");
+		}
+
+		final String column = columns.iterator().next();
+		Assert.hasText(column, "Username column could not be empty");
+
+		return column;
+	}
+
+	/**
+	 * 返回用户属性中的属性值，属性名不区分大小写
+	 */
+	private final static Object getAttributeValue(final IPersonAttributes person, final String name) {
+		final Map<String, List<Object>> attributes = person.getAttributes();
+		List<Object> values = attributes.get(name);
+
+		if (values == null) {
+			for (final Map.Entry<String, List<Object>> e : attributes.entrySet()) {
+				if (name.equalsIgnoreCase(e.getKey())) {
+					values = e.getValue();
+					break;
+				}
+			}
+		}
+
+		return values == null || values.isEmpty() ? null : values.get(0);
+	}
+
+	/**
+	 * 创建一条 IN 查询，参数个数补齐为 2 的幂，不足部分以最后一个用户名填充
+	 */
+	private Callable<List<IPersonAttributes>> createBatchTask(final String column,
+			final List<String> usernames) {
+		final PartialWhereClause queryBuilder = new PartialWhereClause();
+
+		final int size = usernames.size();
+		final int paddedSize = size == 1 ? 1 : Math.min(Integer.highestOneBit(size - 1) << 1,
+				Math.max(size, batchSize));
+
+		queryBuilder.sql.append(column).append(" IN (?");
+		for (int i = 1; i < paddedSize; i++) {
+			queryBuilder.sql.append(",?");
+		}
+		queryBuilder.sql.append(')');
+
+		queryBuilder.arguments.addAll(usernames);
+		while (queryBuilder.arguments.size() < paddedSize) {
+			queryBuilder.arguments.add(usernames.get(size - 1));
+		}
+
+		final String sql = getSql(queryBuilder);
+		final Object[] args = queryBuilder.arguments.toArray();
+
+		return new Callable<List<IPersonAttributes>>() {
+
+			@Override
+			public List<IPersonAttributes> call() throws Exception {
+				return queryPeople(sql, args, null);
+			}
+
+		};
+	}
+
+	/**
+	 * 执行批量查询，任一查询失败时取消其余查询并抛出其异常
+	 */
+	private List<List<IPersonAttributes>> executeBatchTasks(
+			final List<Callable<List<IPersonAttributes>>> tasks) {
+		final List<List<IPersonAttributes>> results = new ArrayList<List<IPersonAttributes>>(
+				tasks.size());
+
+		if (batchExecutor == null || tasks.size() == 1) {
+			for (final Callable<List<IPersonAttributes>> task : tasks) {
+				try {
+					results.add(task.call());
+				} catch (final RuntimeException e) {
+					throw e;
+				} catch (final Exception e) {
+					throw new IllegalStateException(e);
+				}
+			}
+
+			return results;
+		}
+
+		final List<Future<List<IPersonAttributes>>> futures = new ArrayList<Future<List<IPersonAttributes>>>(
+				tasks.size());
+
+		try {
+			for (final Callable<List<IPersonAttributes>> task : tasks) {
+				futures.add(batchExecutor.submit(task));
+			}
+
+			for (final Future<List<IPersonAttributes>> future : futures) {
+				results.add(future.get());
+			}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new DataAccessResourceFailureException(
+					"Interrupted while waiting for batch person attribute query", e);
+		} catch (final ExecutionException e) {
+			final Throwable cause = e.getCause();
+
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+
+			throw new IllegalStateException(cause);
+		} finally {
+			if (results.size() < futures.size() || futures.size() < tasks.size()) {
+				for (final Future<List<IPersonAttributes>> future : futures) {
+					future.cancel(true);
+				}
+			}
+		}
+
+		return results;
+	}
+
+	/**
+	 * 生成查询结果缓存 Key，各部分以空字符分隔
+	 */
+	private final static String buildResultCacheKey(final String sql, final Object[] args,
+			final String queryUserName) {
+		final StringBuilder sb = new StringBuilder(sql.length() + 64);
+
+		sb.append(sql).append('\u0000').append(queryUserName);
+		if (args != null) {
+			for (final Object arg : args) {
+				sb.append('\u0000').append(arg);
+			}
+		}
+
+		return sb.toString();
+	}
+
+	/**
+	 * 以 {0} 分割查询模板
+	 * 
+	 * @param queryTemplate
+	 *        查询模板
+	 * @return 分割后的查询模板
+	 */
+	private final static String[] split(final String queryTemplate) {
+		final List<String> parts = new ArrayList<String>(2);
+		int start = 0;
+		int index;
+
+		while ((index = queryTemplate.indexOf("{0}", start)) > -1) {
+			parts.add(queryTemplate.substring(start, index));
+			start = index + 3;
+		}
+		parts.add(queryTemplate.substring(start));
+
+		return parts.toArray(new String[parts.size()]);
+	}
+
 }
\ No newline at end of file
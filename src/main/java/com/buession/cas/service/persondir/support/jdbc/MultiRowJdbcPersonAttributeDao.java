@@ -26,7 +26,11 @@
  */
 package com.buession.cas.service.persondir.support.jdbc;
 
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -39,7 +43,10 @@ import org.jasig.services.persondir.support.MultivaluedPersonAttributeUtils;
 import org.jasig.services.persondir.support.NamedPersonImpl;
 import org.jasig.services.persondir.support.jdbc.ColumnMapParameterizedRowMapper;
 import org.springframework.jdbc.BadSqlGrammarException;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.simple.ParameterizedRowMapper;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.util.LinkedCaseInsensitiveMap;
 
 /**
  * An {@link org.jasig.services.persondir.IPersonAttributeDao} implementation that maps attribute
@@ -58,6 +65,11 @@ public class MultiRowJdbcPersonAttributeDao extends
 
 	private Map<String, Set<String>> nameValueColumnMappings = null;
 
+	/**
+	 * 是否以流式方式处理查询结果
+	 */
+	private boolean streaming = false;
+
 	/**
 	 * Return the nameValueColumnMappings
 	 * 
@@ -76,6 +88,47 @@ public class MultiRowJdbcPersonAttributeDao extends
 		this.nameValueColumnMappings = nameValueColumnMappings;
 	}
 
+	/**
+	 * 返回是否以流式方式处理查询结果
+	 * 
+	 * @return 是否以流式方式处理查询结果
+	 */
+	public boolean isStreaming() {
+		return streaming;
+	}
+
+	/**
+	 * 设置是否以流式方式处理查询结果；开启后逐行从 ResultSet 读取名称、值列并直接合并到用户属性中，
+	 * 不再将每行转换为 Map 并保存整个结果集，适用于每个用户属性行数较多的场景
+	 * 
+	 * @param streaming
+	 *        是否以流式方式处理查询结果
+	 */
+	public void setStreaming(boolean streaming) {
+		this.streaming = streaming;
+	}
+
+	@Override
+	protected List<IPersonAttributes> queryPeople(final String sql, final Object[] args,
+			final String queryUserName) {
+		if (streaming == false) {
+			return super.queryPeople(sql, args, queryUserName);
+		}
+
+		final PivotingRowCallbackHandler handler = new PivotingRowCallbackHandler(queryUserName);
+
+		if (args != null) {
+			jdbcTemplate.query(sql, args, handler);
+			logger.debug("Executed '" + sql + "' with arguments " + Arrays.toString(args)
+					+ " and got " + handler.rowCount + " rows");
+		} else {
+			jdbcTemplate.query(sql, handler);
+			logger.debug("Executed '" + sql + "' and got " + handler.rowCount + " rows");
+		}
+
+		return toPeople(handler.peopleAttributes);
+	}
+
 	@Override
 	@SuppressWarnings("unchecked")
 	protected List<IPersonAttributes> parseAttributeMapFromResults(
@@ -146,11 +199,28 @@ public class MultiRowJdbcPersonAttributeDao extends
 			}
 		}
 
-		// Convert the builder structure into a List of IPersons
+		return toPeople(peopleAttributesBuilder);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see
+	 * com.buession.cas.service.persondir.support.jdbc.AbstractJdbcPersonAttributeDao#getRowMapper()
+	 */
+	@Override
+	protected ParameterizedRowMapper<Map<String, Object>> getRowMapper() {
+		return MAPPER;
+	}
+
+	/**
+	 * Convert the builder structure into a List of IPersons
+	 */
+	private final static List<IPersonAttributes> toPeople(
+			final Map<String, Map<String, List<Object>>> peopleAttributes) {
 		final List<IPersonAttributes> people = new ArrayList<IPersonAttributes>(
-				peopleAttributesBuilder.size());
+				peopleAttributes.size());
 
-		for (final Map.Entry<String, Map<String, List<Object>>> mappedAttributesEntry : peopleAttributesBuilder
+		for (final Map.Entry<String, Map<String, List<Object>>> mappedAttributesEntry : peopleAttributes
 				.entrySet()) {
 			final String userName = mappedAttributesEntry.getKey();
 			final Map<String, List<Object>> attributes = mappedAttributesEntry.getValue();
@@ -161,14 +231,159 @@ public class MultiRowJdbcPersonAttributeDao extends
 		return people;
 	}
 
-	/*
-	 * (non-Javadoc)
-	 * @see
-	 * com.buession.cas.service.persondir.support.jdbc.AbstractJdbcPersonAttributeDao#getRowMapper()
+	/**
+	 * 逐行将名称、值列合并到用户属性中，列索引在处理第一行时解析一次
 	 */
-	@Override
-	protected ParameterizedRowMapper<Map<String, Object>> getRowMapper() {
-		return MAPPER;
+	private final class PivotingRowCallbackHandler implements RowCallbackHandler {
+
+		private final String queryUserName;
+
+		private final Map<String, Map<String, List<Object>>> peopleAttributes = new LinkedHashMap<String, Map<String, List<Object>>>();
+
+		private int rowCount = 0;
+
+		/**
+		 * 用户名列索引，不存在时为 0
+		 */
+		private int userNameIndex;
+
+		/**
+		 * 属性名称列索引
+		 */
+		private int[] keyIndexes;
+
+		/**
+		 * 属性值列索引
+		 */
+		private int[][] valueIndexes;
+
+		/**
+		 * 当前行需读取的列索引，同一列只读取一次
+		 */
+		private int[] readIndexes;
+
+		/**
+		 * 当前行的列值，按列索引存放，每行复用
+		 */
+		private Object[] row;
+
+		public PivotingRowCallbackHandler(final String queryUserName) {
+			this.queryUserName = queryUserName;
+		}
+
+		@Override
+		public void processRow(final ResultSet rs) throws SQLException {
+			if (row == null) {
+				resolveColumns(rs.getMetaData());
+			}
+
+			for (final int index : readIndexes) {
+				row[index] = JdbcUtils.getResultSetValue(rs, index);
+			}
+
+			final String userName;  // Choose a username from the best available option
+
+			if (isUserNameAttributeConfigured() && userNameIndex > 0) {
+				userName = row[userNameIndex].toString();
+			} else if (queryUserName != null) {
+				userName = queryUserName;
+			} else if (userNameIndex > 0) {
+				userName = row[userNameIndex].toString();
+			} else {
+				throw new BadSqlGrammarException("No userName column named '"
+						+ getConfiguredUserNameAttribute()
+						+ "' exists in result set and no userName provided in query Map",
+						getQueryTemplate(), null);
+			}
+
+			Map<String, List<Object>> attributes = peopleAttributes.get(userName);
+			if (attributes == null) {
+				attributes = new LinkedHashMap<String, List<Object>>();
+				peopleAttributes.put(userName, attributes);
+			}
+
+			for (int i = 0; i < keyIndexes.length; i++) {
+				final String attrName = String.valueOf(row[keyIndexes[i]]);
+				final int[] indexes = valueIndexes[i];
+				final List<Object> attrValues = new ArrayList<Object>(indexes.length);
+
+				for (final int index : indexes) {
+					attrValues.add(row[index]);
+				}
+
+				MultivaluedPersonAttributeUtils.addResult(attributes, attrName, attrValues);
+			}
+
+			rowCount++;
+		}
+
+		private void resolveColumns(final ResultSetMetaData metaData) throws SQLException {
+			final int columnCount = metaData.getColumnCount();
+			final Map<String, Integer> columns = new LinkedCaseInsensitiveMap<Integer>(columnCount);
+
+			for (int i = 1; i <= columnCount; i++) {
+				columns.put(JdbcUtils.lookupColumnName(metaData, i), i);
+			}
+
+			final boolean[] read = new boolean[columnCount + 1];
+			final Integer userNameColumn = columns.get(getConfiguredUserNameAttribute());
+
+			userNameIndex = userNameColumn == null ? 0 : userNameColumn;
+			read[userNameIndex] = userNameIndex > 0;
+
+			keyIndexes = new int[nameValueColumnMappings.size()];
+			valueIndexes = new int[nameValueColumnMappings.size()][];
+
+			int i = 0;
+			for (final Map.Entry<String, Set<String>> columnMapping : nameValueColumnMappings
+					.entrySet()) {
+				final String keyColumn = columnMapping.getKey();
+				final Integer keyIndex = columns.get(keyColumn);
+
+				if (keyIndex == null) {
+					throw new BadSqlGrammarException("No attribute key column named '" + keyColumn
+							+ "' exists in result set", getQueryTemplate(), null);
+				}
+
+				final Set<String> valueColumns = columnMapping.getValue();
+				final int[] indexes = new int[valueColumns.size()];
+
+				int j = 0;
+				for (final String valueColumn : valueColumns) {
+					final Integer valueIndex = columns.get(valueColumn);
+
+					if (valueIndex == null) {
+						throw new BadSqlGrammarException("No attribute value column named '"
+								+ valueColumn + "' exists in result set", getQueryTemplate(), null);
+					}
+
+					indexes[j++] = valueIndex;
+					read[valueIndex] = true;
+				}
+
+				keyIndexes[i] = keyIndex;
+				valueIndexes[i] = indexes;
+				read[keyIndex] = true;
+				i++;
+			}
+
+			int readCount = 0;
+			for (final boolean r : read) {
+				if (r) {
+					readCount++;
+				}
+			}
+
+			readIndexes = new int[readCount];
+			for (int k = 1, n = 0; k <= columnCount; k++) {
+				if (read[k]) {
+					readIndexes[n++] = k;
+				}
+			}
+
+			row = new Object[columnCount + 1];
+		}
+
 	}
 
 	private static final class LinkedHashMapFactory<K, V> implements Factory {
@@ -35,8 +35,6 @@ import java.util.Set;
 
 import org.apache.commons.lang.Validate;
 import org.jasig.services.persondir.IPersonAttributes;
-import org.jasig.services.persondir.support.CaseInsensitiveAttributeNamedPersonImpl;
-import org.jasig.services.persondir.support.CaseInsensitiveNamedPersonImpl;
 import org.jasig.services.persondir.support.MultivaluedPersonAttributeUtils;
 import org.jasig.services.persondir.support.NamedPersonImpl;
 import org.springframework.dao.support.DataAccessUtils;
@@ -109,17 +107,7 @@ public abstract class OAuthSingleRowJdbcPersonAttributeDao extends SingleRowJdbc
 		for (final Map<String, Object> queryResult : queryResults) {
 			final Map<String, List<Object>> multivaluedQueryResult = MultivaluedPersonAttributeUtils
 					.toMultivaluedMap(queryResult);
-			final IPersonAttributes person;
-
-			if (id != null) {
-				person = new CaseInsensitiveNamedPersonImpl(id, multivaluedQueryResult);
-			} else {
-				// Create the IPersonAttributes doing a best-guess at a userName attribute
-				final String userNameAttribute = getConfiguredUserNameAttribute();
-
-				person = new CaseInsensitiveAttributeNamedPersonImpl(userNameAttribute,
-						multivaluedQueryResult);
-			}
+			final IPersonAttributes person = createPerson(id, multivaluedQueryResult);
 
 			peopleAttributes.add(person);
 		}
@@ -26,7 +26,13 @@
  */
 package com.buession.cas.service.persondir.support.jdbc;
 
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -35,7 +41,11 @@ import org.jasig.services.persondir.support.CaseInsensitiveAttributeNamedPersonI
 import org.jasig.services.persondir.support.CaseInsensitiveNamedPersonImpl;
 import org.jasig.services.persondir.support.MultivaluedPersonAttributeUtils;
 import org.jasig.services.persondir.support.jdbc.ColumnMapParameterizedRowMapper;
+import org.springframework.jdbc.core.ResultSetExtractor;
 import org.springframework.jdbc.core.simple.ParameterizedRowMapper;
+import org.springframework.jdbc.support.JdbcUtils;
+
+import com.buession.cas.utils.ExpiringCache;
 
 /**
  * An {@link org.jasig.services.persondir.IPersonAttributeDao} implementation that maps from
@@ -51,6 +61,92 @@ public class SingleRowJdbcPersonAttributeDao extends
 	private final static ParameterizedRowMapper<Map<String, Object>> MAPPER = new ColumnMapParameterizedRowMapper(
 			true);
 
+	/**
+	 * 是否直接从 ResultSet 构建用户属性，为 null 时仅在子类未重写 getRowMapper 和
+	 * parseAttributeMapFromResults 时开启
+	 */
+	private Boolean directMapping;
+
+	/**
+	 * 子类是否重写了 getRowMapper 或 parseAttributeMapFromResults
+	 */
+	private final boolean mappingOverridden = isOverridden("getRowMapper")
+			|| isOverridden("parseAttributeMapFromResults", List.class, String.class);
+
+	/**
+	 * 列名缓存（查询语句 - 列名，下标与列索引一致）
+	 */
+	private final ExpiringCache<String, String[]> columnNamesCache = new ExpiringCache<String, String[]>(
+			1000, 0);
+
+	/**
+	 * 返回是否直接从 ResultSet 构建用户属性
+	 * 
+	 * @return 是否直接从 ResultSet 构建用户属性
+	 */
+	public boolean isDirectMapping() {
+		return directMapping == null ? mappingOverridden == false : directMapping.booleanValue();
+	}
+
+	/**
+	 * 设置是否直接从 ResultSet 构建用户属性；开启时按查询语句缓存列名，逐行一次构建多值属性，
+	 * 不经过 getRowMapper 和 parseAttributeMapFromResults；未设置时仅在子类未重写这两个方法时开启
+	 * 
+	 * @param directMapping
+	 *        是否直接从 ResultSet 构建用户属性
+	 */
+	public void setDirectMapping(boolean directMapping) {
+		this.directMapping = Boolean.valueOf(directMapping);
+	}
+
+	/**
+	 * 返回列名缓存最大条目数
+	 * 
+	 * @return 列名缓存最大条目数
+	 */
+	public int getColumnNamesCacheSize() {
+		return columnNamesCache.getMaxSize();
+	}
+
+	/**
+	 * 设置列名缓存最大条目数，应不小于不同查询语句的数量
+	 * 
+	 * @param columnNamesCacheSize
+	 *        列名缓存最大条目数
+	 */
+	public void setColumnNamesCacheSize(int columnNamesCacheSize) {
+		columnNamesCache.setMaxSize(columnNamesCacheSize);
+	}
+
+	/**
+	 * 清空列名缓存；缓存命中时只校验列数，列数不变的表结构变更（如重命名或替换 SELECT * 中的列）后须调用
+	 */
+	public void clearColumnNamesCache() {
+		columnNamesCache.clear();
+	}
+
+	@Override
+	protected List<IPersonAttributes> queryPeople(final String sql, final Object[] args,
+			final String queryUserName) {
+		if (isDirectMapping() == false) {
+			return super.queryPeople(sql, args, queryUserName);
+		}
+
+		final PersonResultSetExtractor extractor = new PersonResultSetExtractor(sql, queryUserName);
+		final List<IPersonAttributes> people;
+
+		if (args != null) {
+			people = jdbcTemplate.query(sql, args, extractor);
+			logger.debug("Executed '" + sql + "' with arguments " + Arrays.toString(args)
+					+ " and got results " + people);
+		} else {
+			people = jdbcTemplate.query(sql, extractor);
+			logger.debug("Executed '" + sql + "' and got results " + people);
+		}
+
+		return people;
+	}
+
 	@Override
 	protected List<IPersonAttributes> parseAttributeMapFromResults(
 			List<Map<String, Object>> queryResults, String username) {
@@ -60,17 +156,7 @@ public class SingleRowJdbcPersonAttributeDao extends
 		for (final Map<String, Object> queryResult : queryResults) {
 			final Map<String, List<Object>> multivaluedQueryResult = MultivaluedPersonAttributeUtils
 					.toMultivaluedMap(queryResult);
-			final IPersonAttributes person;
-
-			if (username != null) {
-				person = new CaseInsensitiveNamedPersonImpl(username, multivaluedQueryResult);
-			} else {
-				// Create the IPersonAttributes doing a best-guess at a userName attribute
-				final String userNameAttribute = getConfiguredUserNameAttribute();
-
-				person = new CaseInsensitiveAttributeNamedPersonImpl(userNameAttribute,
-						multivaluedQueryResult);
-			}
+			final IPersonAttributes person = createPerson(username, multivaluedQueryResult);
 
 			peopleAttributes.add(person);
 		}
@@ -83,4 +169,107 @@ public class SingleRowJdbcPersonAttributeDao extends
 		return MAPPER;
 	}
 
+	/**
+	 * 创建用户属性
+	 * 
+	 * @param username
+	 *        用户名，为 null 时从属性中取用户名
+	 * @param attributes
+	 *        多值属性
+	 * @return 用户属性
+	 */
+	protected IPersonAttributes createPerson(final String username,
+			final Map<String, List<Object>> attributes) {
+		if (username != null) {
+			return new CaseInsensitiveNamedPersonImpl(username, attributes);
+		} else {
+			// Create the IPersonAttributes doing a best-guess at a userName attribute
+			final String userNameAttribute = getConfiguredUserNameAttribute();
+
+			return new CaseInsensitiveAttributeNamedPersonImpl(userNameAttribute, attributes);
+		}
+	}
+
+	/**
+	 * 返回查询语句对应的列名；命中缓存时只校验列数，列数不一致时重新读取列名，列数不变的表结构变更（如重命名列）须调用
+	 * {@link #clearColumnNamesCache()}
+	 */
+	private String[] getColumnNames(final String sql, final ResultSetMetaData metaData)
+			throws SQLException {
+		final int columnCount = metaData.getColumnCount();
+		final String[] cached = columnNamesCache.get(sql);
+
+		if (cached != null && cached.length == columnCount + 1) {
+			return cached;
+		}
+
+		final String[] columnNames = new String[columnCount + 1];
+		for (int i = 1; i <= columnCount; i++) {
+			columnNames[i] = JdbcUtils.lookupColumnName(metaData, i);
+		}
+
+		columnNamesCache.put(sql, columnNames);
+
+		return columnNames;
+	}
+
+	/**
+	 * 返回当前类是否重写了 SingleRowJdbcPersonAttributeDao 的方法
+	 */
+	private boolean isOverridden(final String name, final Class<?>... parameterTypes) {
+		for (Class<?> type = getClass(); type != SingleRowJdbcPersonAttributeDao.class; type = type
+				.getSuperclass()) {
+			try {
+				type.getDeclaredMethod(name, parameterTypes);
+				return true;
+			} catch (final NoSuchMethodException e) {
+				// continue with the superclass
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * 逐行构建用户属性，每列只读取一次，空值列不作为属性，属性值为不可变单值 List
+	 */
+	private final class PersonResultSetExtractor implements
+			ResultSetExtractor<List<IPersonAttributes>> {
+
+		private final String sql;
+
+		private final String username;
+
+		public PersonResultSetExtractor(final String sql, final String username) {
+			this.sql = sql;
+			this.username = username;
+		}
+
+		@Override
+		public List<IPersonAttributes> extractData(final ResultSet rs) throws SQLException {
+			final String[] columnNames = getColumnNames(sql, rs.getMetaData());
+			final int columnCount = columnNames.length - 1;
+			final int capacity = columnCount * 4 / 3 + 1;
+			final List<IPersonAttributes> people = new ArrayList<IPersonAttributes>(1);
+
+			while (rs.next()) {
+				final Map<String, List<Object>> attributes = new LinkedHashMap<String, List<Object>>(
+						capacity);
+
+				for (int i = 1; i <= columnCount; i++) {
+					final Object value = JdbcUtils.getResultSetValue(rs, i);
+
+					if (value != null) {
+						attributes.put(columnNames[i], Collections.singletonList(value));
+					}
+				}
+
+				people.add(createPerson(username, attributes));
+			}
+
+			return people;
+		}
+
+	}
+
 }
\ No newline at end of file
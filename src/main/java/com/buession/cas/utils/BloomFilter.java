@@ -0,0 +1,171 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 
+ * (the "License"); you may not use this file except in compliance with the License. You may obtain 
+ * a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * =================================================================================================
+ * 
+ * This software consists of voluntary contributions made by many individuals on behalf of the
+ * Apache Software Foundation. For more information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ * 
+ * +------------------------------------------------------------------------------------------------+
+ * | License: http://cas-server-support.buession.com.cn/LICENSE 									|
+ * | Author: Yong.Teng <webmaster@buession.com> 													|
+ * | Copyright @ 2013-2014 Buession.com Inc.														|
+ * +------------------------------------------------------------------------------------------------+
+ */
+package com.buession.cas.utils;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.springframework.util.Assert;
+
+/**
+ * 无锁布隆过滤器，根据预期元素数量和误判率计算位数组长度和哈希函数个数
+ * 
+ * @author Yong.Teng <webmaster@buession.com>
+ */
+public class BloomFilter {
+
+	/**
+	 * 位数组
+	 */
+	private final AtomicLongArray bits;
+
+	/**
+	 * 位数
+	 */
+	private final long numBits;
+
+	/**
+	 * 哈希函数个数
+	 */
+	private final int numHashFunctions;
+
+	/**
+	 * @param expectedInsertions
+	 *        预期元素数量
+	 * @param falsePositiveProbability
+	 *        误判率
+	 */
+	public BloomFilter(final long expectedInsertions, final double falsePositiveProbability) {
+		Assert.isTrue(expectedInsertions > 0, "Expected insertions must be greater than 0");
+		Assert.isTrue(falsePositiveProbability > 0 && falsePositiveProbability < 1,
+				"False positive probability must be between 0 and 1");
+
+		final long m = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveProbability)
+				/ (Math.log(2) * Math.log(2)));
+		final int words = (int) Math.min(Integer.MAX_VALUE, (m + 63) >>> 6);
+
+		this.bits = new AtomicLongArray(words);
+		this.numBits = (long) words << 6;
+		this.numHashFunctions = Math.max(1,
+				(int) Math.round((double) numBits / expectedInsertions * Math.log(2)));
+	}
+
+	/**
+	 * 返回位数
+	 * 
+	 * @return 位数
+	 */
+	public long getNumBits() {
+		return numBits;
+	}
+
+	/**
+	 * 返回哈希函数个数
+	 * 
+	 * @return 哈希函数个数
+	 */
+	public int getNumHashFunctions() {
+		return numHashFunctions;
+	}
+
+	/**
+	 * 添加元素
+	 * 
+	 * @param value
+	 *        元素
+	 */
+	public void put(final CharSequence value) {
+		final long hash1 = hash(value);
+		final long hash2 = mix(hash1) | 1;
+
+		for (int i = 0; i < numHashFunctions; i++) {
+			final long index = ((hash1 + i * hash2) & Long.MAX_VALUE) % numBits;
+			final int word = (int) (index >>> 6);
+			final long mask = 1L << index;
+
+			long current;
+			while (((current = bits.get(word)) & mask) == 0) {
+				if (bits.compareAndSet(word, current, current | mask)) {
+					break;
+				}
+			}
+		}
+	}
+
+	/**
+	 * 判断元素是否可能存在
+	 * 
+	 * @param value
+	 *        元素
+	 * @return 元素不存在时一定返回 false；存在时返回 true，也可能误判返回 true
+	 */
+	public boolean mightContain(final CharSequence value) {
+		final long hash1 = hash(value);
+		final long hash2 = mix(hash1) | 1;
+
+		for (int i = 0; i < numHashFunctions; i++) {
+			final long index = ((hash1 + i * hash2) & Long.MAX_VALUE) % numBits;
+
+			if ((bits.get((int) (index >>> 6)) & (1L << index)) == 0) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * FNV-1a 64 位哈希
+	 */
+	private final static long hash(final CharSequence value) {
+		long hash = 0xcbf29ce484222325L;
+
+		for (int i = 0, length = value.length(); i < length; i++) {
+			final char c = value.charAt(i);
+
+			hash ^= c & 0xff;
+			hash *= 0x100000001b3L;
+			hash ^= c >>> 8;
+			hash *= 0x100000001b3L;
+		}
+
+		return mix(hash);
+	}
+
+	/**
+	 * MurmurHash3 fmix64
+	 */
+	private final static long mix(long hash) {
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+
+		return hash;
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,452 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 
+ * (the "License"); you may not use this file except in compliance with the License. You may obtain 
+ * a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * =================================================================================================
+ * 
+ * This software consists of voluntary contributions made by many individuals on behalf of the
+ * Apache Software Foundation. For more information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ * 
+ * +------------------------------------------------------------------------------------------------+
+ * | License: http://cas-server-support.buession.com.cn/LICENSE 									|
+ * | Author: Yong.Teng <webmaster@buession.com> 													|
+ * | Copyright @ 2013-2014 Buession.com Inc.														|
+ * +------------------------------------------------------------------------------------------------+
+ */
+package com.buession.cas.utils;
+
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.util.Assert;
+
+/**
+ * 有容量上限、按条目过期的并发缓存；读操作无锁，超出容量时按写入顺序淘汰；
+ * 清理由写入线程之一执行，其余线程不等待，条目数可能短暂超出容量
+ * 
+ * @author Yong.Teng <webmaster@buession.com>
+ */
+public class ExpiringCache<K, V> {
+
+	/**
+	 * 每次增量清理检查的条目数
+	 */
+	private final static int SWEEP_BATCH_SIZE = 64;
+
+	/**
+	 * 缓存条目
+	 */
+	private final ConcurrentMap<K, Entry<K, V>> entries = new ConcurrentHashMap<K, Entry<K, V>>();
+
+	/**
+	 * 条目写入顺序
+	 */
+	private final Queue<Entry<K, V>> order = new ConcurrentLinkedQueue<Entry<K, V>>();
+
+	/**
+	 * 写入顺序队列长度
+	 */
+	private final AtomicInteger orderSize = new AtomicInteger();
+
+	/**
+	 * 当前条目数，避免 ConcurrentHashMap.size() 锁定所有分段
+	 */
+	private final AtomicInteger count = new AtomicInteger();
+
+	/**
+	 * 是否正在清理
+	 */
+	private final AtomicBoolean cleaning = new AtomicBoolean();
+
+	/**
+	 * 增量清理写入顺序队列中失效条目的迭代器，仅由清理线程访问
+	 */
+	private Iterator<Entry<K, V>> sweeper;
+
+	/**
+	 * 最大条目数
+	 */
+	private volatile int maxSize = 10000;
+
+	/**
+	 * 默认有效期（毫秒），小于等于 0 时永不过期
+	 */
+	private volatile long lifetime;
+
+	/**
+	 * 命中次数
+	 */
+	private final AtomicLong hitCount = new AtomicLong();
+
+	/**
+	 * 未命中次数
+	 */
+	private final AtomicLong missCount = new AtomicLong();
+
+	/**
+	 * 容量淘汰次数
+	 */
+	private final AtomicLong evictionCount = new AtomicLong();
+
+	/**
+	 * 过期次数
+	 */
+	private final AtomicLong expirationCount = new AtomicLong();
+
+	public ExpiringCache() {
+	}
+
+	/**
+	 * @param maxSize
+	 *        最大条目数
+	 * @param lifetime
+	 *        默认有效期（毫秒）
+	 */
+	public ExpiringCache(final int maxSize, final long lifetime) {
+		setMaxSize(maxSize);
+		setLifetime(lifetime);
+	}
+
+	/**
+	 * 返回最大条目数
+	 * 
+	 * @return 最大条目数
+	 */
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * 设置最大条目数
+	 * 
+	 * @param maxSize
+	 *        最大条目数
+	 */
+	public void setMaxSize(final int maxSize) {
+		Assert.isTrue(maxSize > 0, "Max size must be greater than 0");
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * 返回默认有效期（毫秒）
+	 * 
+	 * @return 默认有效期
+	 */
+	public long getLifetime() {
+		return lifetime;
+	}
+
+	/**
+	 * 设置默认有效期（毫秒），小于等于 0 时永不过期
+	 * 
+	 * @param lifetime
+	 *        默认有效期
+	 */
+	public void setLifetime(final long lifetime) {
+		this.lifetime = lifetime;
+	}
+
+	/**
+	 * 返回命中次数
+	 * 
+	 * @return 命中次数
+	 */
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	/**
+	 * 返回未命中次数
+	 * 
+	 * @return 未命中次数
+	 */
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	/**
+	 * 返回容量淘汰次数
+	 * 
+	 * @return 容量淘汰次数
+	 */
+	public long getEvictionCount() {
+		return evictionCount.get();
+	}
+
+	/**
+	 * 返回过期次数
+	 * 
+	 * @return 过期次数
+	 */
+	public long getExpirationCount() {
+		return expirationCount.get();
+	}
+
+	/**
+	 * 返回当前条目数
+	 * 
+	 * @return 当前条目数
+	 */
+	public int size() {
+		return count.get();
+	}
+
+	/**
+	 * 获取缓存值
+	 * 
+	 * @param key
+	 *        Key
+	 * @return 缓存值，不存在或已过期时返回 null
+	 */
+	public V get(final K key) {
+		final Entry<K, V> entry = entries.get(key);
+
+		if (entry == null) {
+			missCount.incrementAndGet();
+			return null;
+		}
+
+		if (entry.isExpired(System.currentTimeMillis())) {
+			if (entries.remove(key, entry)) {
+				count.decrementAndGet();
+				expirationCount.incrementAndGet();
+			}
+
+			missCount.incrementAndGet();
+			return null;
+		}
+
+		hitCount.incrementAndGet();
+		return entry.value;
+	}
+
+	/**
+	 * 以默认有效期写入缓存
+	 * 
+	 * @param key
+	 *        Key
+	 * @param value
+	 *        缓存值
+	 */
+	public void put(final K key, final V value) {
+		put(key, value, lifetime);
+	}
+
+	/**
+	 * 写入缓存
+	 * 
+	 * @param key
+	 *        Key
+	 * @param value
+	 *        缓存值
+	 * @param lifetime
+	 *        有效期（毫秒），小于等于 0 时永不过期
+	 */
+	public void put(final K key, final V value, final long lifetime) {
+		Assert.notNull(key, "Key could not be null");
+		Assert.notNull(value, "Value could not be null");
+
+		final Entry<K, V> entry = new Entry<K, V>(key, value, lifetime > 0 ? System
+				.currentTimeMillis() + lifetime : Long.MAX_VALUE);
+
+		if (entries.put(key, entry) == null) {
+			count.incrementAndGet();
+		}
+		order.offer(entry);
+		orderSize.incrementAndGet();
+
+		cleanUp();
+	}
+
+	/**
+	 * 以默认有效期写入缓存，Key 已存在且未过期时不写入
+	 * 
+	 * @param key
+	 *        Key
+	 * @param value
+	 *        缓存值
+	 * @return 已存在的缓存值，写入成功时返回 null
+	 */
+	public V putIfAbsent(final K key, final V value) {
+		Assert.notNull(key, "Key could not be null");
+		Assert.notNull(value, "Value could not be null");
+
+		final long now = System.currentTimeMillis();
+		final Entry<K, V> entry = new Entry<K, V>(key, value, lifetime > 0 ? now + lifetime
+				: Long.MAX_VALUE);
+
+		for (;;) {
+			final Entry<K, V> existing = entries.putIfAbsent(key, entry);
+
+			if (existing == null) {
+				count.incrementAndGet();
+				break;
+			}
+
+			if (existing.isExpired(now) == false) {
+				return existing.value;
+			}
+
+			if (entries.replace(key, existing, entry)) {
+				expirationCount.incrementAndGet();
+				break;
+			}
+		}
+
+		order.offer(entry);
+		orderSize.incrementAndGet();
+
+		cleanUp();
+
+		return null;
+	}
+
+	/**
+	 * 删除缓存
+	 * 
+	 * @param key
+	 *        Key
+	 * @return 被删除的缓存值，不存在或已过期时返回 null
+	 */
+	public V remove(final K key) {
+		final Entry<K, V> entry = entries.remove(key);
+
+		if (entry == null) {
+			missCount.incrementAndGet();
+			return null;
+		}
+
+		count.decrementAndGet();
+
+		if (entry.isExpired(System.currentTimeMillis())) {
+			expirationCount.incrementAndGet();
+			missCount.incrementAndGet();
+			return null;
+		}
+
+		hitCount.incrementAndGet();
+		return entry.value;
+	}
+
+	/**
+	 * 清空缓存
+	 */
+	public void clear() {
+		for (final K key : entries.keySet()) {
+			if (entries.remove(key) != null) {
+				count.decrementAndGet();
+			}
+		}
+
+		order.clear();
+		orderSize.set(0);
+	}
+
+	/**
+	 * 清理过期条目，并按写入顺序淘汰超出容量的条目；已有线程在清理时直接返回
+	 */
+	public void cleanUp() {
+		if (cleaning.compareAndSet(false, true) == false) {
+			return;
+		}
+
+		try {
+			final long now = System.currentTimeMillis();
+			Entry<K, V> head;
+
+			while ((head = order.peek()) != null) {
+				if (entries.get(head.key) != head) {
+					poll();
+				} else if (head.isExpired(now)) {
+					if (entries.remove(head.key, head)) {
+						count.decrementAndGet();
+						expirationCount.incrementAndGet();
+					}
+
+					poll();
+				} else {
+					break;
+				}
+			}
+
+			while (count.get() > maxSize && (head = order.peek()) != null) {
+				if (entries.remove(head.key, head)) {
+					count.decrementAndGet();
+					evictionCount.incrementAndGet();
+				}
+
+				poll();
+			}
+
+			// 队列中被覆盖或删除的条目过多时，每次从上次位置继续清理一小段
+			if (orderSize.get() > (maxSize << 1)) {
+				sweep(SWEEP_BATCH_SIZE);
+			}
+		} finally {
+			cleaning.set(false);
+		}
+	}
+
+	private void poll() {
+		if (order.poll() != null) {
+			orderSize.decrementAndGet();
+		}
+	}
+
+	private void sweep(final int batchSize) {
+		for (int i = 0; i < batchSize; i++) {
+			if (sweeper == null || sweeper.hasNext() == false) {
+				sweeper = order.iterator();
+
+				if (sweeper.hasNext() == false) {
+					return;
+				}
+			}
+
+			final Entry<K, V> entry = sweeper.next();
+
+			if (entries.get(entry.key) != entry) {
+				sweeper.remove();
+				orderSize.decrementAndGet();
+			}
+		}
+	}
+
+	private final static class Entry<K, V> {
+
+		private final K key;
+
+		private final V value;
+
+		private final long expireAt;
+
+		public Entry(final K key, final V value, final long expireAt) {
+			this.key = key;
+			this.value = value;
+			this.expireAt = expireAt;
+		}
+
+		public boolean isExpired(final long now) {
+			return now >= expireAt;
+		}
+
+	}
+
+}
\ No newline at end of file
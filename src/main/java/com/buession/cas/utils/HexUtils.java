@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 
+ * (the "License"); you may not use this file except in compliance with the License. You may obtain 
+ * a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * =================================================================================================
+ * 
+ * This software consists of voluntary contributions made by many individuals on behalf of the
+ * Apache Software Foundation. For more information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ * 
+ * +------------------------------------------------------------------------------------------------+
+ * | License: http://cas-server-support.buession.com.cn/LICENSE 									|
+ * | Author: Yong.Teng <webmaster@buession.com> 													|
+ * | Copyright @ 2013-2014 Buession.com Inc.														|
+ * +------------------------------------------------------------------------------------------------+
+ */
+package com.buession.cas.utils;
+
+/**
+ * 十六进制编码工具
+ * 
+ * @author Yong.Teng <webmaster@buession.com>
+ */
+public class HexUtils {
+
+	private final static char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+	private final static byte[] EMPTY = new byte[0];
+
+	private HexUtils() {
+	}
+
+	/**
+	 * 将字节数组编码为小写十六进制字符串
+	 * 
+	 * @param bytes
+	 *        字节数组
+	 * @return 十六进制字符串
+	 */
+	public final static String encode(final byte[] bytes) {
+		final char[] chars = new char[bytes.length << 1];
+
+		for (int i = 0; i < bytes.length; i++) {
+			chars[i << 1] = HEX_DIGITS[(bytes[i] >>> 4) & 0x0f];
+			chars[(i << 1) + 1] = HEX_DIGITS[bytes[i] & 0x0f];
+		}
+
+		return new String(chars);
+	}
+
+	/**
+	 * 将十六进制字符串（忽略大小写）解码为字节数组
+	 * 
+	 * @param hex
+	 *        十六进制字符串
+	 * @return 字节数组，长度为奇数或包含非十六进制字符时返回空数组
+	 */
+	public final static byte[] decode(final String hex) {
+		if ((hex.length() & 1) != 0) {
+			return EMPTY;
+		}
+
+		final byte[] bytes = new byte[hex.length() >> 1];
+
+		for (int i = 0; i < bytes.length; i++) {
+			final int high = Character.digit(hex.charAt(i << 1), 16);
+			final int low = Character.digit(hex.charAt((i << 1) + 1), 16);
+
+			if (high < 0 || low < 0) {
+				return EMPTY;
+			}
+
+			bytes[i] = (byte) ((high << 4) | low);
+		}
+
+		return bytes;
+	}
+
+	/**
+	 * 以恒定时间比较字节数组与十六进制字符串（忽略大小写），不创建中间数组
+	 * 
+	 * @param bytes
+	 *        字节数组
+	 * @param hex
+	 *        十六进制字符串
+	 * @return 是否相等，hex 为 null 或长度不匹配时返回 false
+	 */
+	public final static boolean isEqual(final byte[] bytes, final String hex) {
+		if (hex == null || hex.length() != bytes.length << 1) {
+			return false;
+		}
+
+		int result = 0;
+		for (int i = 0; i < bytes.length; i++) {
+			final int high = Character.digit(hex.charAt(i << 1), 16);
+			final int low = Character.digit(hex.charAt((i << 1) + 1), 16);
+
+			result |= (high | low) & 0x100;
+			result |= ((high << 4) | low) ^ (bytes[i] & 0xff);
+		}
+
+		return result == 0;
+	}
+
+}
\ No newline at end of file
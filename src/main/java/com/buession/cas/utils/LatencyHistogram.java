@@ -0,0 +1,188 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 
+ * (the "License"); you may not use this file except in compliance with the License. You may obtain 
+ * a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * =================================================================================================
+ * 
+ * This software consists of voluntary contributions made by many individuals on behalf of the
+ * Apache Software Foundation. For more information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ * 
+ * +------------------------------------------------------------------------------------------------+
+ * | License: http://cas-server-support.buession.com.cn/LICENSE 									|
+ * | Author: Yong.Teng <webmaster@buession.com> 													|
+ * | Copyright @ 2013-2014 Buession.com Inc.														|
+ * +------------------------------------------------------------------------------------------------+
+ */
+package com.buession.cas.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 无锁延迟直方图，按 2 的幂分段，每段再等分为 8 个子桶，记录值的相对误差不超过 12.5%
+ * 
+ * @author Yong.Teng <webmaster@buession.com>
+ */
+public class LatencyHistogram {
+
+	private final static int SUB_BUCKET_BITS = 3;
+
+	private final static int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+	private final static int BUCKET_COUNT = (64 - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+	/**
+	 * 各桶计数
+	 */
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+
+	/**
+	 * 记录次数
+	 */
+	private final AtomicLong count = new AtomicLong();
+
+	/**
+	 * 记录值总和
+	 */
+	private final AtomicLong total = new AtomicLong();
+
+	/**
+	 * 最大记录值
+	 */
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * 记录一次延迟
+	 * 
+	 * @param value
+	 *        延迟（纳秒）
+	 */
+	public void record(final long value) {
+		final long v = value < 0 ? 0 : value;
+
+		counts.incrementAndGet(indexOf(v));
+		count.incrementAndGet();
+		total.addAndGet(v);
+
+		long current;
+		while (v > (current = max.get())) {
+			if (max.compareAndSet(current, v)) {
+				break;
+			}
+		}
+	}
+
+	/**
+	 * 返回记录次数
+	 * 
+	 * @return 记录次数
+	 */
+	public long getCount() {
+		return count.get();
+	}
+
+	/**
+	 * 返回记录值总和（纳秒）
+	 * 
+	 * @return 记录值总和
+	 */
+	public long getTotal() {
+		return total.get();
+	}
+
+	/**
+	 * 返回平均值（纳秒）
+	 * 
+	 * @return 平均值
+	 */
+	public long getMean() {
+		final long n = count.get();
+		return n == 0 ? 0 : total.get() / n;
+	}
+
+	/**
+	 * 返回最大值（纳秒）
+	 * 
+	 * @return 最大值
+	 */
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * 返回百分位值（纳秒），取所在桶的上界
+	 * 
+	 * @param percentile
+	 *        百分位（0 - 100）
+	 * @return 百分位值
+	 */
+	public long getPercentile(final double percentile) {
+		long n = 0;
+
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			n += counts.get(i);
+		}
+
+		if (n == 0) {
+			return 0;
+		}
+
+		final long rank = Math.max(1, (long) Math.ceil(Math.min(percentile, 100.0) / 100.0 * n));
+		long seen = 0;
+
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			seen += counts.get(i);
+
+			if (seen >= rank) {
+				return Math.min(upperBoundOf(i), max.get());
+			}
+		}
+
+		return max.get();
+	}
+
+	/**
+	 * 清空记录
+	 */
+	public void reset() {
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			counts.set(i, 0);
+		}
+
+		count.set(0);
+		total.set(0);
+		max.set(0);
+	}
+
+	private final static int indexOf(final long value) {
+		if (value < SUB_BUCKET_COUNT) {
+			return (int) value;
+		}
+
+		final int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+		return ((shift + 1) << SUB_BUCKET_BITS) + (int) ((value >>> shift) & (SUB_BUCKET_COUNT - 1));
+	}
+
+	private final static long upperBoundOf(final int index) {
+		if (index < SUB_BUCKET_COUNT) {
+			return index;
+		}
+
+		final int shift = (index >>> SUB_BUCKET_BITS) - 1;
+		final long base = SUB_BUCKET_COUNT + (index & (SUB_BUCKET_COUNT - 1));
+
+		return ((base + 1) << shift) - 1;
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,264 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 
+ * (the "License"); you may not use this file except in compliance with the License. You may obtain 
+ * a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * =================================================================================================
+ * 
+ * This software consists of voluntary contributions made by many individuals on behalf of the
+ * Apache Software Foundation. For more information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ * 
+ * +------------------------------------------------------------------------------------------------+
+ * | License: http://cas-server-support.buession.com.cn/LICENSE 									|
+ * | Author: Yong.Teng <webmaster@buession.com> 													|
+ * | Copyright @ 2013-2014 Buession.com Inc.														|
+ * +------------------------------------------------------------------------------------------------+
+ */
+package com.buession.cas.utils;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 延迟监控，按名称记录各阶段耗时直方图和计数器；未启用时 start 返回 0，不记录任何数据。
+ * 实现标准 MBean 接口，可通过 Spring MBeanExporter 注册到 JMX
+ * 
+ * 用法（latencyMonitor 可为 null）：
+ * final long start = LatencyMonitor.start(latencyMonitor);
+ * ...
+ * LatencyMonitor.record(latencyMonitor, name, start);
+ * 
+ * @author Yong.Teng <webmaster@buession.com>
+ */
+public class LatencyMonitor implements LatencyMonitorMBean {
+
+	/**
+	 * 是否启用
+	 */
+	private volatile boolean enabled = true;
+
+	/**
+	 * 计时器
+	 */
+	private final ConcurrentMap<String, LatencyHistogram> timers = new ConcurrentHashMap<String, LatencyHistogram>();
+
+	/**
+	 * 计数器
+	 */
+	private final ConcurrentMap<String, AtomicLong> counters = new ConcurrentHashMap<String, AtomicLong>();
+
+	@Override
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	@Override
+	public void setEnabled(final boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	/**
+	 * 开始计时
+	 * 
+	 * @return 开始时间（纳秒），未启用时返回 0
+	 */
+	public long start() {
+		if (enabled == false) {
+			return 0;
+		}
+
+		final long now = System.nanoTime();
+		return now == 0 ? 1 : now;
+	}
+
+	/**
+	 * 结束计时并记录耗时
+	 * 
+	 * @param name
+	 *        计时器名称
+	 * @param start
+	 *        start 返回的开始时间，为 0 时不记录
+	 */
+	public void record(final String name, final long start) {
+		if (start != 0) {
+			getTimer(name).record(System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * 计数器加 1
+	 * 
+	 * @param name
+	 *        计数器名称
+	 */
+	public void increment(final String name) {
+		if (enabled == false) {
+			return;
+		}
+
+		AtomicLong counter = counters.get(name);
+
+		if (counter == null) {
+			final AtomicLong created = new AtomicLong();
+
+			counter = counters.putIfAbsent(name, created);
+			if (counter == null) {
+				counter = created;
+			}
+		}
+
+		counter.incrementAndGet();
+	}
+
+	/**
+	 * 返回计时器，不存在时创建
+	 * 
+	 * @param name
+	 *        计时器名称
+	 * @return 计时器
+	 */
+	public LatencyHistogram getTimer(final String name) {
+		LatencyHistogram timer = timers.get(name);
+
+		if (timer == null) {
+			final LatencyHistogram created = new LatencyHistogram();
+
+			timer = timers.putIfAbsent(name, created);
+			if (timer == null) {
+				timer = created;
+			}
+		}
+
+		return timer;
+	}
+
+	/**
+	 * 返回所有计时器
+	 * 
+	 * @return 计时器
+	 */
+	public Map<String, LatencyHistogram> getTimers() {
+		return timers;
+	}
+
+	/**
+	 * 返回所有计数器
+	 * 
+	 * @return 计数器
+	 */
+	public Map<String, AtomicLong> getCounters() {
+		return counters;
+	}
+
+	@Override
+	public String[] getTimerNames() {
+		return sortedNames(timers.keySet());
+	}
+
+	@Override
+	public String[] getCounterNames() {
+		return sortedNames(counters.keySet());
+	}
+
+	@Override
+	public long getCount(final String name) {
+		final LatencyHistogram timer = timers.get(name);
+		return timer == null ? 0 : timer.getCount();
+	}
+
+	@Override
+	public long getMean(final String name) {
+		final LatencyHistogram timer = timers.get(name);
+		return timer == null ? 0 : timer.getMean() / 1000;
+	}
+
+	@Override
+	public long getMax(final String name) {
+		final LatencyHistogram timer = timers.get(name);
+		return timer == null ? 0 : timer.getMax() / 1000;
+	}
+
+	@Override
+	public long getPercentile(final String name, final double percentile) {
+		final LatencyHistogram timer = timers.get(name);
+		return timer == null ? 0 : timer.getPercentile(percentile) / 1000;
+	}
+
+	@Override
+	public long getCounter(final String name) {
+		final AtomicLong counter = counters.get(name);
+		return counter == null ? 0 : counter.get();
+	}
+
+	@Override
+	public void reset() {
+		for (final LatencyHistogram timer : timers.values()) {
+			timer.reset();
+		}
+
+		for (final AtomicLong counter : counters.values()) {
+			counter.set(0);
+		}
+	}
+
+	/**
+	 * 开始计时，延迟监控为 null 或未启用时返回 0
+	 * 
+	 * @param monitor
+	 *        延迟监控，可为 null
+	 * @return 开始时间（纳秒）
+	 */
+	public final static long start(final LatencyMonitor monitor) {
+		return monitor == null ? 0 : monitor.start();
+	}
+
+	/**
+	 * 结束计时并记录耗时，延迟监控为 null 或 start 为 0 时不记录
+	 * 
+	 * @param monitor
+	 *        延迟监控，可为 null
+	 * @param name
+	 *        计时器名称
+	 * @param start
+	 *        start 返回的开始时间
+	 */
+	public final static void record(final LatencyMonitor monitor, final String name, final long start) {
+		if (monitor != null) {
+			monitor.record(name, start);
+		}
+	}
+
+	/**
+	 * 计数器加 1，延迟监控为 null 时忽略
+	 * 
+	 * @param monitor
+	 *        延迟监控，可为 null
+	 * @param name
+	 *        计数器名称
+	 */
+	public final static void increment(final LatencyMonitor monitor, final String name) {
+		if (monitor != null) {
+			monitor.increment(name);
+		}
+	}
+
+	private final static String[] sortedNames(final Set<String> names) {
+		final Set<String> sorted = new TreeSet<String>(names);
+		return sorted.toArray(new String[sorted.size()]);
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 
+ * (the "License"); you may not use this file except in compliance with the License. You may obtain 
+ * a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * =================================================================================================
+ * 
+ * This software consists of voluntary contributions made by many individuals on behalf of the
+ * Apache Software Foundation. For more information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ * 
+ * +------------------------------------------------------------------------------------------------+
+ * | License: http://cas-server-support.buession.com.cn/LICENSE 									|
+ * | Author: Yong.Teng <webmaster@buession.com> 													|
+ * | Copyright @ 2013-2014 Buession.com Inc.														|
+ * +------------------------------------------------------------------------------------------------+
+ */
+package com.buession.cas.utils;
+
+/**
+ * 延迟监控 JMX 管理接口
+ * 
+ * @author Yong.Teng <webmaster@buession.com>
+ */
+public interface LatencyMonitorMBean {
+
+	/**
+	 * 返回是否启用
+	 * 
+	 * @return 是否启用
+	 */
+	boolean isEnabled();
+
+	/**
+	 * 设置是否启用
+	 * 
+	 * @param enabled
+	 *        是否启用
+	 */
+	void setEnabled(boolean enabled);
+
+	/**
+	 * 返回所有计时器名称
+	 * 
+	 * @return 计时器名称
+	 */
+	String[] getTimerNames();
+
+	/**
+	 * 返回所有计数器名称
+	 * 
+	 * @return 计数器名称
+	 */
+	String[] getCounterNames();
+
+	/**
+	 * 返回计时次数
+	 * 
+	 * @param name
+	 *        计时器名称
+	 * @return 计时次数
+	 */
+	long getCount(String name);
+
+	/**
+	 * 返回平均耗时（微秒）
+	 * 
+	 * @param name
+	 *        计时器名称
+	 * @return 平均耗时
+	 */
+	long getMean(String name);
+
+	/**
+	 * 返回最大耗时（微秒）
+	 * 
+	 * @param name
+	 *        计时器名称
+	 * @return 最大耗时
+	 */
+	long getMax(String name);
+
+	/**
+	 * 返回耗时百分位值（微秒）
+	 * 
+	 * @param name
+	 *        计时器名称
+	 * @param percentile
+	 *        百分位（0 - 100）
+	 * @return 耗时百分位值
+	 */
+	long getPercentile(String name, double percentile);
+
+	/**
+	 * 返回计数器值
+	 * 
+	 * @param name
+	 *        计数器名称
+	 * @return 计数器值
+	 */
+	long getCounter(String name);
+
+	/**
+	 * 清空所有计时器和计数器
+	 */
+	void reset();
+
+}
\ No newline at end of file
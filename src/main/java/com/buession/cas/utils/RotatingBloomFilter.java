@@ -0,0 +1,261 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 
+ * (the "License"); you may not use this file except in compliance with the License. You may obtain 
+ * a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * =================================================================================================
+ * 
+ * This software consists of voluntary contributions made by many individuals on behalf of the
+ * Apache Software Foundation. For more information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ * 
+ * +------------------------------------------------------------------------------------------------+
+ * | License: http://cas-server-support.buession.com.cn/LICENSE 									|
+ * | Author: Yong.Teng <webmaster@buession.com> 													|
+ * | Copyright @ 2013-2014 Buession.com Inc.														|
+ * +------------------------------------------------------------------------------------------------+
+ */
+package com.buession.cas.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.util.Assert;
+
+/**
+ * 随时间衰减的布隆过滤器，由当前和上一代两个布隆过滤器组成，每个轮换周期丢弃上一代；
+ * 元素添加后至少保留一个轮换周期，至多保留两个轮换周期
+ * 
+ * @author Yong.Teng <webmaster@buession.com>
+ */
+public class RotatingBloomFilter {
+
+	/**
+	 * putIfAbsent 分段锁数量，须为 2 的幂
+	 */
+	private final static int LOCK_STRIPES = 64;
+
+	/**
+	 * 每代预期元素数量
+	 */
+	private final long expectedInsertions;
+
+	/**
+	 * 误判率
+	 */
+	private final double falsePositiveProbability;
+
+	/**
+	 * 轮换周期（毫秒）
+	 */
+	private volatile long rotationInterval;
+
+	/**
+	 * 下次轮换时间
+	 */
+	private final AtomicLong nextRotation;
+
+	/**
+	 * 当前代
+	 */
+	private volatile BloomFilter current;
+
+	/**
+	 * 上一代
+	 */
+	private volatile BloomFilter previous;
+
+	/**
+	 * 当前代添加次数（近似值）
+	 */
+	private final AtomicLong insertions = new AtomicLong();
+
+	/**
+	 * putIfAbsent 分段锁，相同元素总是落在同一分段
+	 */
+	private final Object[] locks = new Object[LOCK_STRIPES];
+
+	/**
+	 * @param expectedInsertions
+	 *        每代预期元素数量
+	 * @param falsePositiveProbability
+	 *        误判率
+	 * @param rotationInterval
+	 *        轮换周期（毫秒）
+	 */
+	public RotatingBloomFilter(final long expectedInsertions,
+			final double falsePositiveProbability, final long rotationInterval) {
+		Assert.isTrue(rotationInterval > 0, "Rotation interval must be greater than 0");
+
+		this.expectedInsertions = expectedInsertions;
+		this.falsePositiveProbability = falsePositiveProbability;
+		this.rotationInterval = rotationInterval;
+		this.current = new BloomFilter(expectedInsertions, falsePositiveProbability);
+		this.previous = new BloomFilter(expectedInsertions, falsePositiveProbability);
+		this.nextRotation = new AtomicLong(System.currentTimeMillis() + rotationInterval);
+
+		for (int i = 0; i < LOCK_STRIPES; i++) {
+			locks[i] = new Object();
+		}
+	}
+
+	/**
+	 * 返回每代预期元素数量
+	 * 
+	 * @return 每代预期元素数量
+	 */
+	public long getExpectedInsertions() {
+		return expectedInsertions;
+	}
+
+	/**
+	 * 返回误判率
+	 * 
+	 * @return 误判率
+	 */
+	public double getFalsePositiveProbability() {
+		return falsePositiveProbability;
+	}
+
+	/**
+	 * 返回轮换周期（毫秒）
+	 * 
+	 * @return 轮换周期
+	 */
+	public long getRotationInterval() {
+		return rotationInterval;
+	}
+
+	/**
+	 * 设置轮换周期（毫秒）
+	 * 
+	 * @param rotationInterval
+	 *        轮换周期
+	 */
+	public void setRotationInterval(final long rotationInterval) {
+		Assert.isTrue(rotationInterval > 0, "Rotation interval must be greater than 0");
+		this.rotationInterval = rotationInterval;
+	}
+
+	/**
+	 * 添加元素
+	 * 
+	 * @param value
+	 *        元素
+	 */
+	public void put(final CharSequence value) {
+		rotateIfNecessary();
+		current.put(value);
+		insertions.incrementAndGet();
+	}
+
+	/**
+	 * 元素不存在时添加元素
+	 * 
+	 * @param value
+	 *        元素
+	 * @return 元素可能已存在时返回 false，否则添加元素并返回 true；同一元素并发添加时只有一次返回 true
+	 */
+	public boolean putIfAbsent(final CharSequence value) {
+		synchronized (locks[stripe(value)]) {
+			if (mightContain(value)) {
+				return false;
+			}
+
+			current.put(value);
+			insertions.incrementAndGet();
+
+			return true;
+		}
+	}
+
+	/**
+	 * 判断元素是否可能存在
+	 * 
+	 * @param value
+	 *        元素
+	 * @return 元素不存在时一定返回 false
+	 */
+	public boolean mightContain(final CharSequence value) {
+		rotateIfNecessary();
+		return current.mightContain(value) || previous.mightContain(value);
+	}
+
+	/**
+	 * 返回当前代添加次数（近似值，重复添加的元素重复计数）
+	 * 
+	 * @return 当前代添加次数
+	 */
+	public long getInsertions() {
+		return insertions.get();
+	}
+
+	/**
+	 * 当前代添加次数达到上限时立即轮换，丢弃上一代，上一代元素将早于轮换周期过期；
+	 * 用于避免元素过多使误判率升高
+	 * 
+	 * @param maxInsertions
+	 *        当前代添加次数上限
+	 * @return 是否已轮换
+	 */
+	public synchronized boolean rotateIfFull(final long maxInsertions) {
+		if (insertions.get() < maxInsertions) {
+			return false;
+		}
+
+		previous = current;
+		current = new BloomFilter(expectedInsertions, falsePositiveProbability);
+		insertions.set(0);
+		nextRotation.set(System.currentTimeMillis() + rotationInterval);
+
+		return true;
+	}
+
+	/**
+	 * 清空所有元素
+	 */
+	public synchronized void clear() {
+		previous = new BloomFilter(expectedInsertions, falsePositiveProbability);
+		current = new BloomFilter(expectedInsertions, falsePositiveProbability);
+		insertions.set(0);
+		nextRotation.set(System.currentTimeMillis() + rotationInterval);
+	}
+
+	private void rotateIfNecessary() {
+		final long now = System.currentTimeMillis();
+		final long next = nextRotation.get();
+
+		if (now < next || nextRotation.compareAndSet(next, now + rotationInterval) == false) {
+			return;
+		}
+
+		synchronized (this) {
+			// 超过两个周期未轮换时，两代元素均已过期
+			previous = now - next >= rotationInterval ? new BloomFilter(expectedInsertions,
+					falsePositiveProbability) : current;
+			current = new BloomFilter(expectedInsertions, falsePositiveProbability);
+			insertions.set(0);
+		}
+	}
+
+	private final static int stripe(final CharSequence value) {
+		int hash = 0;
+
+		for (int i = 0, length = value.length(); i < length; i++) {
+			hash = 31 * hash + value.charAt(i);
+		}
+
+		hash ^= hash >>> 16;
+
+		return hash & (LOCK_STRIPES - 1);
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 
+ * (the "License"); you may not use this file except in compliance with the License. You may obtain 
+ * a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * =================================================================================================
+ * 
+ * This software consists of voluntary contributions made by many individuals on behalf of the
+ * Apache Software Foundation. For more information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ * 
+ * +------------------------------------------------------------------------------------------------+
+ * | License: http://cas-server-support.buession.com.cn/LICENSE 									|
+ * | Author: Yong.Teng <webmaster@buession.com> 													|
+ * | Copyright @ 2013-2014 Buession.com Inc.														|
+ * +------------------------------------------------------------------------------------------------+
+ */
+package com.buession.cas.utils;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 合并相同 Key 的并发加载，同一时刻每个 Key 只执行一次加载，其余调用者等待并共享结果
+ * 
+ * @author Yong.Teng <webmaster@buession.com>
+ */
+public class SingleFlight<K, V> {
+
+	/**
+	 * 进行中的加载
+	 */
+	private final ConcurrentMap<K, FutureTask<V>> inFlight = new ConcurrentHashMap<K, FutureTask<V>>();
+
+	/**
+	 * 共享结果次数
+	 */
+	private final AtomicLong sharedCount = new AtomicLong();
+
+	/**
+	 * 返回共享结果次数
+	 * 
+	 * @return 共享结果次数
+	 */
+	public long getSharedCount() {
+		return sharedCount.get();
+	}
+
+	/**
+	 * 执行加载，相同 Key 已有加载进行中时等待其结果
+	 * 
+	 * @param key
+	 *        Key
+	 * @param loader
+	 *        加载
+	 * @return 加载结果
+	 * @throws RuntimeException
+	 *         加载抛出的运行时异常，受检异常包装为 IllegalStateException
+	 */
+	public V execute(final K key, final Callable<V> loader) {
+		final FutureTask<V> task = new FutureTask<V>(loader);
+		FutureTask<V> existing = inFlight.putIfAbsent(key, task);
+
+		if (existing == null) {
+			existing = task;
+
+			try {
+				task.run();
+			} finally {
+				inFlight.remove(key, task);
+			}
+		} else {
+			sharedCount.incrementAndGet();
+		}
+
+		try {
+			return existing.get();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for in-flight load", e);
+		} catch (final ExecutionException e) {
+			final Throwable cause = e.getCause();
+
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+
+			throw new IllegalStateException(cause);
+		}
+	}
+
+}
\ No newline at end of file
@@ -26,21 +26,24 @@
  */
 package com.buession.cas.web.controller;
 
-import java.awt.image.BufferedImage;
 import java.io.IOException;
+import java.util.concurrent.Future;
 
 import javax.annotation.Resource;
-import javax.imageio.ImageIO;
 import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.validation.constraints.NotNull;
 
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.servlet.ModelAndView;
 import org.springframework.web.servlet.mvc.AbstractController;
 
+import com.buession.cas.captcha.CaptchaImage;
+import com.buession.cas.captcha.CaptchaImageEncoder;
+import com.buession.cas.captcha.CaptchaImagePool;
 import com.buession.cas.service.CaptchaService;
 import com.google.code.kaptcha.Producer;
 
@@ -50,7 +53,7 @@ import com.google.code.kaptcha.Producer;
  * @author Yong.Teng <webmaster@buession.com>
  */
 @Controller("/captcha")
-public class CaptchaController extends AbstractController {
+public class CaptchaController extends AbstractController implements DisposableBean {
 
 	/**
 	 * 验证码生成提供者
@@ -66,6 +69,17 @@ public class CaptchaController extends AbstractController {
 	@Resource
 	private CaptchaService captchaService;
 
+	/**
+	 * 验证码图片池，为空时每次请求同步渲染
+	 */
+	private CaptchaImagePool captchaImagePool;
+
+	/**
+	 * 验证码图片编码器，未使用验证码图片池时有效
+	 */
+	@NotNull
+	private CaptchaImageEncoder encoder = new CaptchaImageEncoder();
+
 	public CaptchaController() {
 		setCacheSeconds(0);
 	}
@@ -108,6 +122,44 @@ public class CaptchaController extends AbstractController {
 		this.captchaService = captchaService;
 	}
 
+	/**
+	 * 返回验证码图片池
+	 * 
+	 * @return 验证码图片池
+	 */
+	public CaptchaImagePool getCaptchaImagePool() {
+		return captchaImagePool;
+	}
+
+	/**
+	 * 设置验证码图片池
+	 * 
+	 * @param captchaImagePool
+	 *        验证码图片池
+	 */
+	public void setCaptchaImagePool(CaptchaImagePool captchaImagePool) {
+		this.captchaImagePool = captchaImagePool;
+	}
+
+	/**
+	 * 返回验证码图片编码器
+	 * 
+	 * @return 验证码图片编码器
+	 */
+	public CaptchaImageEncoder getEncoder() {
+		return encoder;
+	}
+
+	/**
+	 * 设置验证码图片编码器
+	 * 
+	 * @param encoder
+	 *        验证码图片编码器
+	 */
+	public void setEncoder(CaptchaImageEncoder encoder) {
+		this.encoder = encoder;
+	}
+
 	/**
 	 * @param request
 	 *        HttpServletRequest
@@ -125,20 +177,34 @@ public class CaptchaController extends AbstractController {
 		return null;
 	}
 
+	@Override
+	public void destroy() throws Exception {
+		if (encoder != null) {
+			encoder.destroy();
+		}
+	}
+
 	@Override
 	protected ModelAndView handleRequestInternal(HttpServletRequest request,
 			HttpServletResponse response) throws IOException {
-		response.setContentType("image/jpg");
+		final CaptchaImage image;
+		if (captchaImagePool == null) {
+			String text = producer.createText();
+			image = encoder.encode(text, producer.createImage(text));
+		} else {
+			image = captchaImagePool.take();
+		}
+
+		final Future<Boolean> stored = captchaService.addAsync(request, response, image.getText());
+
+		response.setContentType(image.getContentType());
+		response.setContentLength(image.getLength());
 		response.setHeader("Pragma", "no-cache");
 		response.setHeader("Cache-Control", "no-store, no-cache, must-revalidate");
 		response.setDateHeader("Expires", 0);
 
-		String text = producer.createText();
-		captchaService.add(request, text);
-
-		BufferedImage im = producer.createImage(text);
 		ServletOutputStream out = response.getOutputStream();
-		ImageIO.write(im, "jpg", out);
+		out.write(image.getData(), 0, image.getLength());
 
 		try {
 			out.flush();
@@ -146,6 +212,10 @@ public class CaptchaController extends AbstractController {
 			out.close();
 		}
 
+		if (captchaService.await(stored) == false) {
+			logger.warn("Captcha could not be stored for session " + request.getSession().getId());
+		}
+
 		return null;
 	}
 
@@ -0,0 +1,163 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 
+ * (the "License"); you may not use this file except in compliance with the License. You may obtain 
+ * a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * =================================================================================================
+ * 
+ * This software consists of voluntary contributions made by many individuals on behalf of the
+ * Apache Software Foundation. For more information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ * 
+ * +------------------------------------------------------------------------------------------------+
+ * | License: http://cas-server-support.buession.com.cn/LICENSE 									|
+ * | Author: Yong.Teng <webmaster@buession.com> 													|
+ * | Copyright @ 2013-2014 Buession.com Inc.														|
+ * +------------------------------------------------------------------------------------------------+
+ */
+package com.buession.cas.web.controller;
+
+import java.io.PrintWriter;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.validation.constraints.NotNull;
+
+import org.springframework.web.servlet.ModelAndView;
+import org.springframework.web.servlet.mvc.AbstractController;
+
+import com.buession.cas.utils.LatencyHistogram;
+import com.buession.cas.utils.LatencyMonitor;
+
+/**
+ * 监控数据控制器，以 Prometheus 文本格式输出延迟监控的计时器和计数器
+ * 
+ * @author Yong.Teng <webmaster@buession.com>
+ */
+public class MetricsController extends AbstractController {
+
+	private final static double[] QUANTILES = { 0.5, 0.9, 0.99, 0.999 };
+
+	/**
+	 * 延迟监控
+	 */
+	@NotNull
+	private LatencyMonitor latencyMonitor;
+
+	/**
+	 * 指标名称前缀
+	 */
+	private String prefix = "cas_";
+
+	public MetricsController() {
+		setCacheSeconds(0);
+	}
+
+	/**
+	 * 返回延迟监控
+	 * 
+	 * @return 延迟监控
+	 */
+	public LatencyMonitor getLatencyMonitor() {
+		return latencyMonitor;
+	}
+
+	/**
+	 * 设置延迟监控
+	 * 
+	 * @param latencyMonitor
+	 *        延迟监控
+	 */
+	public void setLatencyMonitor(LatencyMonitor latencyMonitor) {
+		this.latencyMonitor = latencyMonitor;
+	}
+
+	/**
+	 * 返回指标名称前缀
+	 * 
+	 * @return 指标名称前缀
+	 */
+	public String getPrefix() {
+		return prefix;
+	}
+
+	/**
+	 * 设置指标名称前缀
+	 * 
+	 * @param prefix
+	 *        指标名称前缀
+	 */
+	public void setPrefix(String prefix) {
+		this.prefix = prefix == null ? "" : prefix;
+	}
+
+	@Override
+	protected ModelAndView handleRequestInternal(HttpServletRequest request,
+			HttpServletResponse response) throws Exception {
+		final StringBuilder sb = new StringBuilder(4096);
+
+		for (final Map.Entry<String, LatencyHistogram> e : new TreeMap<String, LatencyHistogram>(
+				latencyMonitor.getTimers()).entrySet()) {
+			final String name = metricName(e.getKey()) + "_seconds";
+			final LatencyHistogram histogram = e.getValue();
+
+			sb.append("# TYPE ").append(name).append(" summary\n");
+			for (final double quantile : QUANTILES) {
+				sb.append(name).append("{quantile=\"").append(quantile).append("\"} ");
+				sb.append(seconds(histogram.getPercentile(quantile * 100))).append('\n');
+			}
+			sb.append(name).append("_count ").append(histogram.getCount()).append('\n');
+			sb.append(name).append("_sum ").append(seconds(histogram.getTotal())).append('\n');
+
+			sb.append("# TYPE ").append(name).append("_max gauge\n");
+			sb.append(name).append("_max ").append(seconds(histogram.getMax())).append('\n');
+		}
+
+		for (final Map.Entry<String, AtomicLong> e : new TreeMap<String, AtomicLong>(
+				latencyMonitor.getCounters()).entrySet()) {
+			final String name = metricName(e.getKey()) + "_total";
+
+			sb.append("# TYPE ").append(name).append(" counter\n");
+			sb.append(name).append(' ').append(e.getValue().get()).append('\n');
+		}
+
+		response.setContentType("text/plain; version=0.0.4; charset=UTF-8");
+
+		final PrintWriter writer = response.getWriter();
+
+		writer.write(sb.toString());
+		writer.close();
+
+		return null;
+	}
+
+	private String metricName(final String key) {
+		final StringBuilder sb = new StringBuilder(prefix.length() + key.length());
+
+		sb.append(prefix);
+		for (int i = 0; i < key.length(); i++) {
+			final char c = key.charAt(i);
+			sb.append((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') ? c
+					: '_');
+		}
+
+		return sb.toString();
+	}
+
+	private final static double seconds(final long nanos) {
+		return nanos / 1000000000.0;
+	}
+
+}
\ No newline at end of file
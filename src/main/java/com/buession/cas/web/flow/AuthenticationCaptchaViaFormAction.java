@@ -26,15 +26,20 @@
  */
 package com.buession.cas.web.flow;
 
+import java.util.Locale;
+
 import javax.annotation.Resource;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
 import javax.validation.constraints.NotNull;
 
 import org.jasig.cas.CentralAuthenticationService;
 import org.jasig.cas.authentication.handler.AuthenticationException;
+import org.jasig.cas.authentication.handler.PrincipalNameTransformer;
 import org.jasig.cas.authentication.principal.Credentials;
 import org.jasig.cas.authentication.principal.Service;
+import org.jasig.cas.authentication.principal.UsernamePasswordCredentials;
 import org.jasig.cas.ticket.TicketException;
 import org.jasig.cas.web.bind.CredentialsBinder;
 import org.jasig.cas.web.support.WebUtils;
@@ -46,8 +51,13 @@ import org.springframework.webflow.action.AbstractAction;
 import org.springframework.webflow.execution.Event;
 import org.springframework.webflow.execution.RequestContext;
 
+import com.buession.cas.authentication.handler.ServerBusyAuthenticationException;
 import com.buession.cas.authentication.principal.RememberMeUsernamePasswordCaptchaCredentials;
 import com.buession.cas.service.CaptchaService;
+import com.buession.cas.utils.LatencyMonitor;
+import com.buession.cas.web.support.CaptchaPolicy;
+import com.buession.cas.web.support.ClientIpResolver;
+import com.buession.cas.web.support.LoginThrottle;
 
 /**
  * Action to authenticate credentials with and retrieve a TicketGrantingTicket for
@@ -58,6 +68,11 @@ import com.buession.cas.service.CaptchaService;
  */
 public class AuthenticationCaptchaViaFormAction extends AbstractAction {
 
+	/**
+	 * 是否要求验证码的 Flow Scope 属性名
+	 */
+	public final static String CAPTCHA_REQUIRED = "captchaRequired";
+
 	/**
 	 * 凭证绑定器
 	 */
@@ -83,6 +98,31 @@ public class AuthenticationCaptchaViaFormAction extends AbstractAction {
 	@Resource
 	private CaptchaService captchaService;
 
+	/**
+	 * 登录失败限流，为空时不限制
+	 */
+	private LoginThrottle loginThrottle;
+
+	/**
+	 * 验证码策略，为空时始终要求验证码
+	 */
+	private CaptchaPolicy captchaPolicy;
+
+	/**
+	 * 客户端 IP 解析，为空时使用连接地址
+	 */
+	private ClientIpResolver clientIpResolver;
+
+	/**
+	 * 用户名转换器，应与认证处理器一致；为空时转换为小写
+	 */
+	private PrincipalNameTransformer principalNameTransformer;
+
+	/**
+	 * 延迟监控，为空时不记录
+	 */
+	private LatencyMonitor latencyMonitor;
+
 	/**
 	 * 返回凭证绑定器
 	 * 
@@ -143,6 +183,115 @@ public class AuthenticationCaptchaViaFormAction extends AbstractAction {
 		this.warnCookieGenerator = warnCookieGenerator;
 	}
 
+	/**
+	 * 返回登录失败限流
+	 * 
+	 * @return 登录失败限流
+	 */
+	public LoginThrottle getLoginThrottle() {
+		return loginThrottle;
+	}
+
+	/**
+	 * 设置登录失败限流
+	 * 
+	 * @param loginThrottle
+	 *        登录失败限流
+	 */
+	public void setLoginThrottle(LoginThrottle loginThrottle) {
+		this.loginThrottle = loginThrottle;
+	}
+
+	/**
+	 * 返回验证码策略
+	 * 
+	 * @return 验证码策略
+	 */
+	public CaptchaPolicy getCaptchaPolicy() {
+		return captchaPolicy;
+	}
+
+	/**
+	 * 设置验证码策略
+	 * 
+	 * @param captchaPolicy
+	 *        验证码策略
+	 */
+	public void setCaptchaPolicy(CaptchaPolicy captchaPolicy) {
+		this.captchaPolicy = captchaPolicy;
+	}
+
+	/**
+	 * 返回客户端 IP 解析
+	 * 
+	 * @return 客户端 IP 解析
+	 */
+	public ClientIpResolver getClientIpResolver() {
+		return clientIpResolver;
+	}
+
+	/**
+	 * 设置客户端 IP 解析，部署在反向代理之后时设置，否则所有请求的 IP 均为代理地址
+	 * 
+	 * @param clientIpResolver
+	 *        客户端 IP 解析
+	 */
+	public void setClientIpResolver(ClientIpResolver clientIpResolver) {
+		this.clientIpResolver = clientIpResolver;
+	}
+
+	/**
+	 * 返回用户名转换器
+	 * 
+	 * @return 用户名转换器
+	 */
+	public PrincipalNameTransformer getPrincipalNameTransformer() {
+		return principalNameTransformer;
+	}
+
+	/**
+	 * 设置用户名转换器，登录失败计数按转换后的用户名统计，应与认证处理器一致；为空时转换为小写
+	 * 
+	 * @param principalNameTransformer
+	 *        用户名转换器
+	 */
+	public void setPrincipalNameTransformer(PrincipalNameTransformer principalNameTransformer) {
+		this.principalNameTransformer = principalNameTransformer;
+	}
+
+	/**
+	 * 返回延迟监控
+	 * 
+	 * @return 延迟监控
+	 */
+	public LatencyMonitor getLatencyMonitor() {
+		return latencyMonitor;
+	}
+
+	/**
+	 * 设置延迟监控，记录 login.submit、login.captcha 及 login.tgt 耗时和 login.success、
+	 * login.failure、login.busy、login.throttled 次数
+	 * 
+	 * @param latencyMonitor
+	 *        延迟监控
+	 */
+	public void setLatencyMonitor(LatencyMonitor latencyMonitor) {
+		this.latencyMonitor = latencyMonitor;
+	}
+
+	/**
+	 * 判断当前 IP 和会话是否要求验证码，并写入 Flow Scope 属性 captchaRequired，
+	 * 登录页面据此决定是否显示验证码
+	 * 
+	 * @param context
+	 *        请求上下文
+	 */
+	public final void exposeCaptchaRequired(final RequestContext context) {
+		final HttpServletRequest request = WebUtils.getHttpServletRequest(context);
+		putCaptchaRequired(context,
+				isCaptchaRequired(null, getClientIp(request), getSessionId(request)));
+	}
+
 	/**
 	 * 用户凭证绑定
 	 * 
@@ -174,6 +323,17 @@ public class AuthenticationCaptchaViaFormAction extends AbstractAction {
 	 */
 	public final String submit(final RequestContext context, final Credentials credentials,
 			final MessageContext messageContext) throws Exception {
+		final long start = LatencyMonitor.start(latencyMonitor);
+
+		try {
+			return doSubmit(context, credentials, messageContext);
+		} finally {
+			LatencyMonitor.record(latencyMonitor, "login.submit", start);
+		}
+	}
+
+	private String doSubmit(final RequestContext context, final Credentials credentials,
+			final MessageContext messageContext) throws Exception {
 		HttpServletRequest request = WebUtils.getHttpServletRequest(context);
 
 		// Validate login ticket
@@ -187,10 +347,32 @@ public class AuthenticationCaptchaViaFormAction extends AbstractAction {
 			return error().toString();
 		}
 
-		if (captchaValidate(request, credentials, messageContext) == false) {
+		final String username = getUsername(credentials);
+		final String ip = getClientIp(request);
+		final String sessionId = getSessionId(request);
+
+		if (loginThrottle != null && loginThrottle.isThrottled(username, ip)) {
+			logger.warn("Login throttled, username: " + username + ", ip: " + ip);
+			LatencyMonitor.increment(latencyMonitor, "login.throttled");
+			final String code = "THROTTLED";
+			messageContext.addMessage(new MessageBuilder().error().code(code).defaultText(code)
+					.build());
 			return error().toString();
 		}
 
+		// 登录页面未显示验证码但该用户名已达到阈值时，验证失败后重新显示验证码
+		if (isCaptchaRequired(username, ip, sessionId)) {
+			final long captchaStart = LatencyMonitor.start(latencyMonitor);
+			final boolean captchaValid = captchaValidate(request, credentials, messageContext);
+
+			LatencyMonitor.record(latencyMonitor, "login.captcha", captchaStart);
+
+			if (captchaValid == false) {
+				putCaptchaRequired(context, true);
+				return error().toString();
+			}
+		}
+
 		final String ticketGrantingTicketId = WebUtils.getTicketGrantingTicketId(context);
 		final Service service = WebUtils.getService(context);
 
@@ -205,6 +387,7 @@ public class AuthenticationCaptchaViaFormAction extends AbstractAction {
 				return "warn";
 			} catch (final TicketException e) {
 				if (isCauseAuthenticationException(e)) {
+					loginFailed(context, e, username, ip, sessionId);
 					populateErrorsInstance(e, messageContext);
 					return getAuthenticationExceptionEventId(e);
 				}
@@ -217,17 +400,34 @@ public class AuthenticationCaptchaViaFormAction extends AbstractAction {
 			}
 		}
 
+		final long tgtStart = LatencyMonitor.start(latencyMonitor);
+
 		try {
 			WebUtils.putTicketGrantingTicketInRequestScope(context,
 					centralAuthenticationService.createTicketGrantingTicket(credentials));
+			LatencyMonitor.record(latencyMonitor, "login.tgt", tgtStart);
 			putWarnCookieIfRequestParameterPresent(context);
+			LatencyMonitor.increment(latencyMonitor, "login.success");
+
+			if (loginThrottle != null) {
+				loginThrottle.loginSucceeded(username, ip);
+			}
+
+			if (captchaPolicy != null) {
+				captchaPolicy.loginSucceeded(username, sessionId);
+			}
 
 			return success().toString();
 		} catch (final TicketException e) {
+			LatencyMonitor.record(latencyMonitor, "login.tgt", tgtStart);
 			populateErrorsInstance(e, messageContext);
 
-			return isCauseAuthenticationException(e) ? getAuthenticationExceptionEventId(e)
-					: error().toString();
+			if (isCauseAuthenticationException(e)) {
+				loginFailed(context, e, username, ip, sessionId);
+				return getAuthenticationExceptionEventId(e);
+			}
+
+			return error().toString();
 		}
 	}
 
@@ -251,7 +451,7 @@ public class AuthenticationCaptchaViaFormAction extends AbstractAction {
 			final Credentials credentials, final MessageContext messageContext) {
 		final RememberMeUsernamePasswordCaptchaCredentials _credentials = (RememberMeUsernamePasswordCaptchaCredentials) credentials;
 		String validateCode = _credentials.getValidateCode();
-		boolean result = captchaService.validate(request, validateCode);
+		boolean result = captchaService.validateAndConsume(request, validateCode);
 
 		if (result == false) {
 			logger.warn("Invalid captcha " + validateCode);
@@ -260,11 +460,101 @@ public class AuthenticationCaptchaViaFormAction extends AbstractAction {
 					.defaultText(code).build());
 		}
 
-		captchaService.delete(request);
-
 		return result;
 	}
 
+	/**
+	 * @param credentials
+	 *        用户凭证
+	 * @return 转换后的用户名，用于登录失败计数
+	 */
+	private String getUsername(final Credentials credentials) {
+		final String username = credentials instanceof UsernamePasswordCredentials ? ((UsernamePasswordCredentials) credentials)
+				.getUsername() : null;
+
+		if (username == null) {
+			return null;
+		}
+
+		return principalNameTransformer != null ? principalNameTransformer.transform(username)
+				: username.trim().toLowerCase(Locale.ENGLISH);
+	}
+
+	/**
+	 * @param request
+	 *        HttpServletRequest
+	 * @return 客户端 IP
+	 */
+	private String getClientIp(final HttpServletRequest request) {
+		return clientIpResolver != null ? clientIpResolver.resolve(request) : request
+				.getRemoteAddr();
+	}
+
+	/**
+	 * @param request
+	 *        HttpServletRequest
+	 * @return 会话 ID，无会话时返回 null
+	 */
+	private static String getSessionId(final HttpServletRequest request) {
+		final HttpSession session = request.getSession(false);
+		return session == null ? null : session.getId();
+	}
+
+	/**
+	 * @param username
+	 *        用户名
+	 * @param ip
+	 *        客户端 IP
+	 * @param sessionId
+	 *        会话 ID
+	 * @return 是否要求验证码
+	 */
+	private boolean isCaptchaRequired(final String username, final String ip,
+			final String sessionId) {
+		return captchaPolicy == null || captchaPolicy.isRequired(username, ip, sessionId);
+	}
+
+	/**
+	 * @param context
+	 *        请求上下文
+	 * @param captchaRequired
+	 *        是否要求验证码
+	 */
+	private static void putCaptchaRequired(final RequestContext context,
+			final boolean captchaRequired) {
+		context.getFlowScope().put(CAPTCHA_REQUIRED, Boolean.valueOf(captchaRequired));
+	}
+
+	/**
+	 * 记录登录失败；服务端繁忙导致的失败不计入登录失败限流和验证码策略
+	 * 
+	 * @param context
+	 *        请求上下文
+	 * @param e
+	 *        TicketException
+	 * @param username
+	 *        用户名
+	 * @param ip
+	 *        客户端 IP
+	 * @param sessionId
+	 *        会话 ID
+	 */
+	private void loginFailed(final RequestContext context, final TicketException e,
+			final String username, final String ip, final String sessionId) {
+		final boolean serverBusy = e.getCause() instanceof ServerBusyAuthenticationException;
+
+		LatencyMonitor.increment(latencyMonitor, serverBusy ? "login.busy" : "login.failure");
+
+		if (loginThrottle != null && serverBusy == false) {
+			loginThrottle.loginFailed(username, ip);
+		}
+
+		if (captchaPolicy != null && serverBusy == false) {
+			captchaPolicy.loginFailed(username, ip, sessionId);
+			putCaptchaRequired(context, captchaPolicy.isRequired(username, ip, sessionId));
+		}
+	}
+
 	/**
 	 * @param e
 	 *        TicketException
@@ -0,0 +1,166 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 
+ * (the "License"); you may not use this file except in compliance with the License. You may obtain 
+ * a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * =================================================================================================
+ * 
+ * This software consists of voluntary contributions made by many individuals on behalf of the
+ * Apache Software Foundation. For more information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ * 
+ * +------------------------------------------------------------------------------------------------+
+ * | License: http://cas-server-support.buession.com.cn/LICENSE 									|
+ * | Author: Yong.Teng <webmaster@buession.com> 													|
+ * | Copyright @ 2013-2014 Buession.com Inc.														|
+ * +------------------------------------------------------------------------------------------------+
+ */
+package com.buession.cas.web.support;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * 验证码策略，按用户名、IP 和会话分别统计时间窗口内的登录失败次数，任一达到阈值时才要求验证码；
+ * 阈值小于等于 0 时始终要求验证码
+ * 
+ * @author Yong.Teng <webmaster@buession.com>
+ */
+public class CaptchaPolicy {
+
+	private final static String USERNAME_PREFIX = "captcha:u:";
+
+	private final static String IP_PREFIX = "captcha:i:";
+
+	private final static String SESSION_PREFIX = "captcha:s:";
+
+	/**
+	 * 登录失败计数器
+	 */
+	@NotNull
+	private FailureCounter failureCounter = new LocalFailureCounter();
+
+	/**
+	 * 要求验证码的失败次数阈值，小于等于 0 时始终要求验证码
+	 */
+	private int threshold;
+
+	/**
+	 * 返回登录失败计数器
+	 * 
+	 * @return 登录失败计数器
+	 */
+	public FailureCounter getFailureCounter() {
+		return failureCounter;
+	}
+
+	/**
+	 * 设置登录失败计数器，默认为进程内计数器
+	 * 
+	 * @param failureCounter
+	 *        登录失败计数器
+	 */
+	public void setFailureCounter(final FailureCounter failureCounter) {
+		this.failureCounter = failureCounter;
+	}
+
+	/**
+	 * 返回要求验证码的失败次数阈值
+	 * 
+	 * @return 要求验证码的失败次数阈值
+	 */
+	public int getThreshold() {
+		return threshold;
+	}
+
+	/**
+	 * 设置要求验证码的失败次数阈值，小于等于 0 时始终要求验证码
+	 * 
+	 * @param threshold
+	 *        要求验证码的失败次数阈值
+	 */
+	public void setThreshold(final int threshold) {
+		this.threshold = threshold;
+	}
+
+	/**
+	 * 判断是否要求验证码
+	 * 
+	 * @param username
+	 *        用户名，可为空
+	 * @param ip
+	 *        客户端 IP，可为空
+	 * @param sessionId
+	 *        会话 ID，可为空
+	 * @return 是否要求验证码
+	 */
+	public boolean isRequired(final String username, final String ip, final String sessionId) {
+		if (threshold <= 0) {
+			return true;
+		}
+
+		return exceeds(USERNAME_PREFIX, username) || exceeds(IP_PREFIX, ip)
+				|| exceeds(SESSION_PREFIX, sessionId);
+	}
+
+	/**
+	 * 记录登录失败
+	 * 
+	 * @param username
+	 *        用户名
+	 * @param ip
+	 *        客户端 IP
+	 * @param sessionId
+	 *        会话 ID
+	 */
+	public void loginFailed(final String username, final String ip, final String sessionId) {
+		if (threshold <= 0) {
+			return;
+		}
+
+		increment(USERNAME_PREFIX, username);
+		increment(IP_PREFIX, ip);
+		increment(SESSION_PREFIX, sessionId);
+	}
+
+	/**
+	 * 记录登录成功，清零该用户名和会话的失败次数
+	 * 
+	 * @param username
+	 *        用户名
+	 * @param sessionId
+	 *        会话 ID
+	 */
+	public void loginSucceeded(final String username, final String sessionId) {
+		if (threshold <= 0) {
+			return;
+		}
+
+		if (username != null) {
+			failureCounter.reset(USERNAME_PREFIX + username);
+		}
+
+		if (sessionId != null) {
+			failureCounter.reset(SESSION_PREFIX + sessionId);
+		}
+	}
+
+	private boolean exceeds(final String prefix, final String key) {
+		return key != null && failureCounter.get(prefix + key) >= threshold;
+	}
+
+	private void increment(final String prefix, final String key) {
+		if (key != null) {
+			failureCounter.increment(prefix + key);
+		}
+	}
+
+}
\ No newline at end of file
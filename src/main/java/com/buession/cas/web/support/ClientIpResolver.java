@@ -0,0 +1,131 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 
+ * (the "License"); you may not use this file except in compliance with the License. You may obtain 
+ * a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * =================================================================================================
+ * 
+ * This software consists of voluntary contributions made by many individuals on behalf of the
+ * Apache Software Foundation. For more information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ * 
+ * +------------------------------------------------------------------------------------------------+
+ * | License: http://cas-server-support.buession.com.cn/LICENSE 									|
+ * | Author: Yong.Teng <webmaster@buession.com> 													|
+ * | Copyright @ 2013-2014 Buession.com Inc.														|
+ * +------------------------------------------------------------------------------------------------+
+ */
+package com.buession.cas.web.support;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * 客户端 IP 解析；请求来自可信代理时，从代理请求头（如 X-Forwarded-For）中自右向左取第一个不是可信代理的地址，
+ * 否则使用连接地址，避免客户端伪造请求头绕过按 IP 的限制
+ * 
+ * @author Yong.Teng <webmaster@buession.com>
+ */
+public class ClientIpResolver {
+
+	/**
+	 * 代理请求头名称，为空时始终使用连接地址
+	 */
+	private String header = "X-Forwarded-For";
+
+	/**
+	 * 可信代理地址
+	 */
+	private Set<String> trustedProxies = Collections.emptySet();
+
+	/**
+	 * 返回代理请求头名称
+	 * 
+	 * @return 代理请求头名称
+	 */
+	public String getHeader() {
+		return header;
+	}
+
+	/**
+	 * 设置代理请求头名称，为空时始终使用连接地址
+	 * 
+	 * @param header
+	 *        代理请求头名称
+	 */
+	public void setHeader(final String header) {
+		this.header = header;
+	}
+
+	/**
+	 * 返回可信代理地址
+	 * 
+	 * @return 可信代理地址
+	 */
+	public Set<String> getTrustedProxies() {
+		return trustedProxies;
+	}
+
+	/**
+	 * 设置可信代理地址，仅连接地址为可信代理时读取代理请求头
+	 * 
+	 * @param trustedProxies
+	 *        可信代理地址
+	 */
+	public void setTrustedProxies(final Set<String> trustedProxies) {
+		this.trustedProxies = trustedProxies == null ? Collections.<String> emptySet()
+				: new HashSet<String>(trustedProxies);
+	}
+
+	/**
+	 * 解析客户端 IP
+	 * 
+	 * @param request
+	 *        HttpServletRequest
+	 * @return 客户端 IP
+	 */
+	public String resolve(final HttpServletRequest request) {
+		final String remoteAddr = request.getRemoteAddr();
+
+		if (header == null || trustedProxies.contains(remoteAddr) == false) {
+			return remoteAddr;
+		}
+
+		final String value = request.getHeader(header);
+		if (value == null) {
+			return remoteAddr;
+		}
+
+		final String[] addresses = value.split(",");
+		String address = remoteAddr;
+
+		for (int i = addresses.length - 1; i >= 0; i--) {
+			final String candidate = addresses[i].trim();
+
+			if (candidate.length() == 0) {
+				continue;
+			}
+
+			address = candidate;
+
+			if (trustedProxies.contains(candidate) == false) {
+				break;
+			}
+		}
+
+		return address;
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,62 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 
+ * (the "License"); you may not use this file except in compliance with the License. You may obtain 
+ * a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * =================================================================================================
+ * 
+ * This software consists of voluntary contributions made by many individuals on behalf of the
+ * Apache Software Foundation. For more information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ * 
+ * +------------------------------------------------------------------------------------------------+
+ * | License: http://cas-server-support.buession.com.cn/LICENSE 									|
+ * | Author: Yong.Teng <webmaster@buession.com> 													|
+ * | Copyright @ 2013-2014 Buession.com Inc.														|
+ * +------------------------------------------------------------------------------------------------+
+ */
+package com.buession.cas.web.support;
+
+/**
+ * 滑动时间窗口内的登录失败计数器
+ * 
+ * @author Yong.Teng <webmaster@buession.com>
+ */
+public interface FailureCounter {
+
+	/**
+	 * 失败次数加 1
+	 * 
+	 * @param key
+	 *        计数 Key（用户名、IP 等）
+	 * @return 加 1 后时间窗口内的失败次数
+	 */
+	long increment(String key);
+
+	/**
+	 * 返回时间窗口内的失败次数
+	 * 
+	 * @param key
+	 *        计数 Key
+	 * @return 时间窗口内的失败次数
+	 */
+	long get(String key);
+
+	/**
+	 * 清零失败次数
+	 * 
+	 * @param key
+	 *        计数 Key
+	 */
+	void reset(String key);
+
+}
\ No newline at end of file
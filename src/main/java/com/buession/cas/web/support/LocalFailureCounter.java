@@ -0,0 +1,209 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 
+ * (the "License"); you may not use this file except in compliance with the License. You may obtain 
+ * a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * =================================================================================================
+ * 
+ * This software consists of voluntary contributions made by many individuals on behalf of the
+ * Apache Software Foundation. For more information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ * 
+ * +------------------------------------------------------------------------------------------------+
+ * | License: http://cas-server-support.buession.com.cn/LICENSE 									|
+ * | Author: Yong.Teng <webmaster@buession.com> 													|
+ * | Copyright @ 2013-2014 Buession.com Inc.														|
+ * +------------------------------------------------------------------------------------------------+
+ */
+package com.buession.cas.web.support;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.springframework.util.Assert;
+
+import com.buession.cas.utils.ExpiringCache;
+
+/**
+ * 进程内登录失败计数器；每个 Key 将时间窗口等分为若干桶，桶序号和计数合并存储于一个 long 中，
+ * 以 CAS 无锁更新，每个 Key 占用固定内存
+ * 
+ * @author Yong.Teng <webmaster@buession.com>
+ */
+public class LocalFailureCounter implements FailureCounter {
+
+	private final static int COUNT_BITS = 24;
+
+	private final static long COUNT_MASK = (1L << COUNT_BITS) - 1;
+
+	/**
+	 * 最小桶时长（毫秒）；桶序号左移 COUNT_BITS 位后须不溢出，16 毫秒可用至 2527 年
+	 */
+	private final static long MIN_BUCKET_WIDTH = 16;
+
+	/**
+	 * 时间窗口（毫秒）
+	 */
+	private final long window;
+
+	/**
+	 * 桶数
+	 */
+	private final int buckets;
+
+	/**
+	 * 每个桶的时长（毫秒）
+	 */
+	private final long bucketWidth;
+
+	/**
+	 * 各 Key 的计数
+	 */
+	private final ExpiringCache<String, Counter> counters;
+
+	public LocalFailureCounter() {
+		this(15 * 60 * 1000L, 15, 100000);
+	}
+
+	/**
+	 * @param window
+	 *        时间窗口（毫秒）
+	 * @param buckets
+	 *        桶数
+	 * @param maxSize
+	 *        最大 Key 数
+	 */
+	public LocalFailureCounter(final long window, final int buckets, final int maxSize) {
+		Assert.isTrue(buckets > 0, "Buckets must be greater than 0");
+		Assert.isTrue(window / buckets >= MIN_BUCKET_WIDTH,
+				"Window divided by buckets must be at least " + MIN_BUCKET_WIDTH + " ms");
+
+		this.window = window;
+		this.buckets = buckets;
+		this.bucketWidth = window / buckets;
+		this.counters = new ExpiringCache<String, Counter>(maxSize, window);
+	}
+
+	/**
+	 * 返回时间窗口（毫秒）
+	 * 
+	 * @return 时间窗口
+	 */
+	public long getWindow() {
+		return window;
+	}
+
+	/**
+	 * 返回桶数
+	 * 
+	 * @return 桶数
+	 */
+	public int getBuckets() {
+		return buckets;
+	}
+
+	/**
+	 * 返回当前 Key 数
+	 * 
+	 * @return 当前 Key 数
+	 */
+	public int size() {
+		return counters.size();
+	}
+
+	@Override
+	public long increment(final String key) {
+		final long now = System.currentTimeMillis();
+		Counter counter = counters.get(key);
+
+		if (counter == null) {
+			final Counter created = new Counter(buckets);
+
+			created.refreshed = now;
+			counter = counters.putIfAbsent(key, created);
+
+			if (counter == null) {
+				counter = created;
+			}
+		} else if (now - counter.refreshed > (window >> 1)) {
+			// 活跃的 Key 定期重新写入，避免在时间窗口内因过期被清除
+			counter.refreshed = now;
+			counters.put(key, counter);
+		}
+
+		return counter.increment(now / bucketWidth);
+	}
+
+	@Override
+	public long get(final String key) {
+		final Counter counter = counters.get(key);
+		return counter == null ? 0 : counter.sum(System.currentTimeMillis() / bucketWidth);
+	}
+
+	@Override
+	public void reset(final String key) {
+		counters.remove(key);
+	}
+
+	private final static class Counter {
+
+		/**
+		 * 各桶的桶序号（高位）和计数（低 24 位）
+		 */
+		private final AtomicLongArray slots;
+
+		private volatile long refreshed;
+
+		public Counter(final int buckets) {
+			slots = new AtomicLongArray(buckets);
+		}
+
+		public long increment(final long slot) {
+			final int index = (int) (slot % slots.length());
+
+			for (;;) {
+				final long current = slots.get(index);
+				final long next;
+
+				if ((current >>> COUNT_BITS) != slot) {
+					next = (slot << COUNT_BITS) | 1;
+				} else if ((current & COUNT_MASK) == COUNT_MASK) {
+					break;
+				} else {
+					next = current + 1;
+				}
+
+				if (slots.compareAndSet(index, current, next)) {
+					break;
+				}
+			}
+
+			return sum(slot);
+		}
+
+		public long sum(final long slot) {
+			final int length = slots.length();
+			long sum = 0;
+
+			for (int i = 0; i < length; i++) {
+				final long value = slots.get(i);
+
+				if (slot - (value >>> COUNT_BITS) < length) {
+					sum += value & COUNT_MASK;
+				}
+			}
+
+			return sum;
+		}
+
+	}
+
+}
\ No newline at end of file
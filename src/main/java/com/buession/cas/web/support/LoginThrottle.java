@@ -0,0 +1,166 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 
+ * (the "License"); you may not use this file except in compliance with the License. You may obtain 
+ * a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * =================================================================================================
+ * 
+ * This software consists of voluntary contributions made by many individuals on behalf of the
+ * Apache Software Foundation. For more information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ * 
+ * +------------------------------------------------------------------------------------------------+
+ * | License: http://cas-server-support.buession.com.cn/LICENSE 									|
+ * | Author: Yong.Teng <webmaster@buession.com> 													|
+ * | Copyright @ 2013-2014 Buession.com Inc.														|
+ * +------------------------------------------------------------------------------------------------+
+ */
+package com.buession.cas.web.support;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * 登录失败限流，按用户名和 IP 分别统计时间窗口内的登录失败次数，超过阈值时拒绝登录
+ * 
+ * @author Yong.Teng <webmaster@buession.com>
+ */
+public class LoginThrottle {
+
+	private final static String USERNAME_PREFIX = "u:";
+
+	private final static String IP_PREFIX = "i:";
+
+	/**
+	 * 登录失败计数器
+	 */
+	@NotNull
+	private FailureCounter failureCounter = new LocalFailureCounter();
+
+	/**
+	 * 同一用户名失败次数阈值，小于等于 0 时不限制
+	 */
+	private int usernameThreshold = 10;
+
+	/**
+	 * 同一 IP 失败次数阈值，小于等于 0 时不限制
+	 */
+	private int ipThreshold = 50;
+
+	/**
+	 * 返回登录失败计数器
+	 * 
+	 * @return 登录失败计数器
+	 */
+	public FailureCounter getFailureCounter() {
+		return failureCounter;
+	}
+
+	/**
+	 * 设置登录失败计数器，默认为进程内计数器
+	 * 
+	 * @param failureCounter
+	 *        登录失败计数器
+	 */
+	public void setFailureCounter(final FailureCounter failureCounter) {
+		this.failureCounter = failureCounter;
+	}
+
+	/**
+	 * 返回同一用户名失败次数阈值
+	 * 
+	 * @return 同一用户名失败次数阈值
+	 */
+	public int getUsernameThreshold() {
+		return usernameThreshold;
+	}
+
+	/**
+	 * 设置同一用户名失败次数阈值，小于等于 0 时不限制
+	 * 
+	 * @param usernameThreshold
+	 *        同一用户名失败次数阈值
+	 */
+	public void setUsernameThreshold(final int usernameThreshold) {
+		this.usernameThreshold = usernameThreshold;
+	}
+
+	/**
+	 * 返回同一 IP 失败次数阈值
+	 * 
+	 * @return 同一 IP 失败次数阈值
+	 */
+	public int getIpThreshold() {
+		return ipThreshold;
+	}
+
+	/**
+	 * 设置同一 IP 失败次数阈值，小于等于 0 时不限制
+	 * 
+	 * @param ipThreshold
+	 *        同一 IP 失败次数阈值
+	 */
+	public void setIpThreshold(final int ipThreshold) {
+		this.ipThreshold = ipThreshold;
+	}
+
+	/**
+	 * 判断是否拒绝登录
+	 * 
+	 * @param username
+	 *        用户名
+	 * @param ip
+	 *        客户端 IP
+	 * @return 失败次数达到阈值时返回 true
+	 */
+	public boolean isThrottled(final String username, final String ip) {
+		if (usernameThreshold > 0 && username != null
+				&& failureCounter.get(USERNAME_PREFIX + username) >= usernameThreshold) {
+			return true;
+		}
+
+		return ipThreshold > 0 && ip != null
+				&& failureCounter.get(IP_PREFIX + ip) >= ipThreshold;
+	}
+
+	/**
+	 * 记录登录失败
+	 * 
+	 * @param username
+	 *        用户名
+	 * @param ip
+	 *        客户端 IP
+	 */
+	public void loginFailed(final String username, final String ip) {
+		if (usernameThreshold > 0 && username != null) {
+			failureCounter.increment(USERNAME_PREFIX + username);
+		}
+
+		if (ipThreshold > 0 && ip != null) {
+			failureCounter.increment(IP_PREFIX + ip);
+		}
+	}
+
+	/**
+	 * 记录登录成功，清零该用户名的失败次数；IP 的失败次数不清零，避免以自有账号登录绕过限制
+	 * 
+	 * @param username
+	 *        用户名
+	 * @param ip
+	 *        客户端 IP
+	 */
+	public void loginSucceeded(final String username, final String ip) {
+		if (username != null) {
+			failureCounter.reset(USERNAME_PREFIX + username);
+		}
+	}
+
+}
\ No newline at end of file
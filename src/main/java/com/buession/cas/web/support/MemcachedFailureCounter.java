@@ -0,0 +1,236 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 
+ * (the "License"); you may not use this file except in compliance with the License. You may obtain 
+ * a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * =================================================================================================
+ * 
+ * This software consists of voluntary contributions made by many individuals on behalf of the
+ * Apache Software Foundation. For more information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ * 
+ * +------------------------------------------------------------------------------------------------+
+ * | License: http://cas-server-support.buession.com.cn/LICENSE 									|
+ * | Author: Yong.Teng <webmaster@buession.com> 													|
+ * | Copyright @ 2013-2014 Buession.com Inc.														|
+ * +------------------------------------------------------------------------------------------------+
+ */
+package com.buession.cas.web.support;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.validation.constraints.NotNull;
+
+import net.spy.memcached.MemcachedClient;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+import org.springframework.util.DigestUtils;
+
+/**
+ * Memcached 登录失败计数器，多个节点共享计数；每个桶为一个 Memcached Key，以 incr 原子更新，
+ * 按时间窗口自动过期。Memcached 不可用时计数为 0，不影响登录
+ * 
+ * @author Yong.Teng <webmaster@buession.com>
+ */
+public class MemcachedFailureCounter implements FailureCounter {
+
+	private final static Charset UTF_8 = Charset.forName("UTF-8");
+
+	/**
+	 * Memcached Client
+	 */
+	@NotNull
+	private MemcachedClient memcachedClient;
+
+	/**
+	 * Key 前缀
+	 */
+	private String prefix = "login_failure_";
+
+	/**
+	 * 时间窗口（秒）
+	 */
+	private int window = 15 * 60;
+
+	/**
+	 * 桶数
+	 */
+	private int buckets = 15;
+
+	private final static Logger logger = LoggerFactory.getLogger(MemcachedFailureCounter.class);
+
+	/**
+	 * 返回 Memcached Client
+	 * 
+	 * @return Memcached Client
+	 */
+	public MemcachedClient getMemcachedClient() {
+		return memcachedClient;
+	}
+
+	/**
+	 * 设置 Memcached Client
+	 * 
+	 * @param memcachedClient
+	 *        Memcached Client
+	 */
+	public void setMemcachedClient(final MemcachedClient memcachedClient) {
+		this.memcachedClient = memcachedClient;
+	}
+
+	/**
+	 * 返回 Key 前缀
+	 * 
+	 * @return Key 前缀
+	 */
+	public String getPrefix() {
+		return prefix;
+	}
+
+	/**
+	 * 设置 Key 前缀
+	 * 
+	 * @param prefix
+	 *        Key 前缀
+	 */
+	public void setPrefix(final String prefix) {
+		this.prefix = prefix;
+	}
+
+	/**
+	 * 返回时间窗口（秒）
+	 * 
+	 * @return 时间窗口
+	 */
+	public int getWindow() {
+		return window;
+	}
+
+	/**
+	 * 设置时间窗口（秒）
+	 * 
+	 * @param window
+	 *        时间窗口
+	 */
+	public void setWindow(final int window) {
+		Assert.isTrue(window > 0, "Window must be greater than 0");
+		this.window = window;
+	}
+
+	/**
+	 * 返回桶数
+	 * 
+	 * @return 桶数
+	 */
+	public int getBuckets() {
+		return buckets;
+	}
+
+	/**
+	 * 设置桶数
+	 * 
+	 * @param buckets
+	 *        桶数
+	 */
+	public void setBuckets(final int buckets) {
+		Assert.isTrue(buckets > 0, "Buckets must be greater than 0");
+		this.buckets = buckets;
+	}
+
+	@Override
+	public long increment(final String key) {
+		final String hashedKey = hash(key);
+		final long slot = currentSlot();
+		final long count;
+
+		try {
+			count = memcachedClient.incr(bucketKey(hashedKey, slot), 1, 1, window + bucketWidth());
+		} catch (final RuntimeException e) {
+			logger.error("Increment login failure counter failure: {}", e.getMessage());
+			return 0;
+		}
+
+		if (buckets == 1) {
+			return count;
+		}
+
+		return sum(hashedKey, slot);
+	}
+
+	@Override
+	public long get(final String key) {
+		return sum(hash(key), currentSlot());
+	}
+
+	@Override
+	public void reset(final String key) {
+		final String hashedKey = hash(key);
+		final long slot = currentSlot();
+
+		try {
+			for (int i = 0; i < buckets; i++) {
+				memcachedClient.delete(bucketKey(hashedKey, slot - i));
+			}
+		} catch (final RuntimeException e) {
+			logger.error("Reset login failure counter failure: {}", e.getMessage());
+		}
+	}
+
+	private long sum(final String hashedKey, final long slot) {
+		final List<String> keys = new ArrayList<String>(buckets);
+
+		for (int i = 0; i < buckets; i++) {
+			keys.add(bucketKey(hashedKey, slot - i));
+		}
+
+		try {
+			final Map<String, Object> values = memcachedClient.getBulk(keys);
+			long sum = 0;
+
+			for (final Object value : values.values()) {
+				if (value != null) {
+					sum += Long.parseLong(value.toString().trim());
+				}
+			}
+
+			return sum;
+		} catch (final RuntimeException e) {
+			logger.error("Get login failure counter failure: {}", e.getMessage());
+			return 0;
+		}
+	}
+
+	private int bucketWidth() {
+		return Math.max(1, window / buckets);
+	}
+
+	private long currentSlot() {
+		return System.currentTimeMillis() / 1000L / bucketWidth();
+	}
+
+	private String bucketKey(final String hashedKey, final long slot) {
+		return prefix + hashedKey + '_' + slot;
+	}
+
+	/**
+	 * 用户名可能含有 Memcached Key 不允许的字符，统一摘要
+	 */
+	private final static String hash(final String key) {
+		return DigestUtils.md5DigestAsHex(key.getBytes(UTF_8));
+	}
+
+}
\ No newline at end of file
@@ -26,11 +26,19 @@
  */
 package com.buession.cas.web.utils;
 
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+
 import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 
 import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
 
+import com.buession.cas.utils.HexUtils;
 import com.buession.mcrypt.Sha512Mcrypt;
 import com.google.code.kaptcha.util.Config;
 
@@ -45,7 +53,19 @@ public class CaptchaUtils {
 
 	public final static String VALIDATE_CODE = "validateCode";
 
-	private final static Sha512Mcrypt mcrypt = new Sha512Mcrypt("UTF-8", 2);
+	private final static Charset UTF_8 = Charset.forName("UTF-8");
+
+	private final static int DIGEST_LENGTH = 64;
+
+	/**
+	 * SHA-512 摘要原型，每次摘要时克隆，不支持克隆时重新创建
+	 */
+	private final static MessageDigest DIGEST_PROTOTYPE = createDigest();
+
+	/**
+	 * 是否接受 0.0.1 版本的验证码 Cookie
+	 */
+	private static volatile boolean legacyCookieEnabled = false;
 
 	private CaptchaUtils() {
 	}
@@ -63,6 +83,50 @@ public class CaptchaUtils {
 		return name == null ? VALIDATE_CODE : name;
 	}
 
+	/**
+	 * 返回是否接受 0.0.1 版本以会话 ID 为盐的 Sha512Mcrypt 格式验证码 Cookie
+	 * 
+	 * @return 是否接受 0.0.1 版本的验证码 Cookie
+	 */
+	public final static boolean isLegacyCookieEnabled() {
+		return legacyCookieEnabled;
+	}
+
+	/**
+	 * 设置是否接受 0.0.1 版本以会话 ID 为盐的 Sha512Mcrypt 格式验证码 Cookie，默认不接受；仅用于升级期间兼容已下发的
+	 * Cookie，将在下一版本移除
+	 * 
+	 * @param legacyCookieEnabled
+	 *        是否接受 0.0.1 版本的验证码 Cookie
+	 */
+	public final static void setLegacyCookieEnabled(final boolean legacyCookieEnabled) {
+		CaptchaUtils.legacyCookieEnabled = legacyCookieEnabled;
+	}
+
+	/**
+	 * 下发验证码 Cookie，Cookie 值由 {@link #encode(String, String)} 生成
+	 * 
+	 * @param request
+	 *        HttpServletRequest
+	 * @param response
+	 *        HttpServletResponse
+	 * @param config
+	 *        验证码配置
+	 * @param validateCode
+	 *        验证码
+	 */
+	public static void addCookie(final HttpServletRequest request,
+			final HttpServletResponse response, final Config config, final String validateCode) {
+		final Cookie cookie = new Cookie(getCaptchaCookieName(config), encode(request.getSession()
+				.getId(), validateCode));
+
+		cookie.setPath(StringUtils.hasText(request.getContextPath()) ? request.getContextPath()
+				: "/");
+		cookie.setHttpOnly(true);
+		cookie.setSecure(request.isSecure());
+		response.addCookie(cookie);
+	}
+
 	/**
 	 * 验证码验证
 	 * 
@@ -108,12 +172,77 @@ public class CaptchaUtils {
 			Cookie cookie = cookies[i];
 
 			if (captchaCookieName.equals(cookie.getName()) == true) {
-				mcrypt.setSalt(request.getSession().getId());
-				return mcrypt.encode(validateCode).equalsIgnoreCase(cookie.getValue());
+				final String sessionId = request.getSession().getId();
+
+				return HexUtils.isEqual(digest(sessionId, validateCode), cookie.getValue())
+						|| (legacyCookieEnabled == true && matchesLegacy(sessionId, validateCode,
+								cookie.getValue()));
 			}
 		}
 
 		return false;
 	}
 
+	/**
+	 * 生成验证码 Cookie 值：会话 ID 与验证码的 SHA-512 摘要（十六进制）
+	 * 
+	 * @param sessionId
+	 *        会话 ID
+	 * @param validateCode
+	 *        验证码
+	 * @return 验证码 Cookie 值
+	 */
+	public static String encode(final String sessionId, final String validateCode) {
+		return HexUtils.encode(digest(sessionId, validateCode));
+	}
+
+	/**
+	 * 以 0.0.1 版本的 Sha512Mcrypt 格式（以会话 ID 为盐）比较验证码 Cookie
+	 * 
+	 * @param sessionId
+	 *        会话 ID
+	 * @param validateCode
+	 *        需要验证的验证码
+	 * @param value
+	 *        验证码 Cookie 值
+	 * @return 是否相等
+	 */
+	private static boolean matchesLegacy(final String sessionId, final String validateCode,
+			final String value) {
+		if (value == null || value.length() != DIGEST_LENGTH << 1) {
+			return false;
+		}
+
+		final Sha512Mcrypt mcrypt = new Sha512Mcrypt("UTF-8", 2);
+		mcrypt.setSalt(sessionId);
+
+		final String encoded = mcrypt.encode(validateCode);
+		return encoded != null
+				&& MessageDigest.isEqual(encoded.toLowerCase(Locale.ENGLISH).getBytes(UTF_8), value
+						.toLowerCase(Locale.ENGLISH).getBytes(UTF_8));
+	}
+
+	private static byte[] digest(final String sessionId, final String validateCode) {
+		MessageDigest messageDigest;
+
+		try {
+			messageDigest = (MessageDigest) DIGEST_PROTOTYPE.clone();
+		} catch (final CloneNotSupportedException e) {
+			messageDigest = createDigest();
+		}
+
+		messageDigest.update(sessionId.getBytes(UTF_8));
+		messageDigest.update(validateCode.getBytes(UTF_8));
+
+		return messageDigest.digest();
+	}
+
+	private static MessageDigest createDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-512");
+		} catch (final NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
 }
\ No newline at end of file
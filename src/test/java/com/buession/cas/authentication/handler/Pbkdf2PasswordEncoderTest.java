@@ -0,0 +1,131 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 
+ * (the "License"); you may not use this file except in compliance with the License. You may obtain 
+ * a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * =================================================================================================
+ * 
+ * This software consists of voluntary contributions made by many individuals on behalf of the
+ * Apache Software Foundation. For more information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ * 
+ * +------------------------------------------------------------------------------------------------+
+ * | License: http://cas-server-support.buession.com.cn/LICENSE 									|
+ * | Author: Yong.Teng <webmaster@buession.com> 													|
+ * | Copyright @ 2013-2014 Buession.com Inc.														|
+ * +------------------------------------------------------------------------------------------------+
+ */
+package com.buession.cas.authentication.handler;
+
+import junit.framework.TestCase;
+
+/**
+ * @author Yong.Teng <webmaster@buession.com>
+ */
+public class Pbkdf2PasswordEncoderTest extends TestCase {
+
+	public void testRfc6070Vector() {
+		final Pbkdf2PasswordEncoder encoder = new Pbkdf2PasswordEncoder();
+
+		// RFC 6070：P = "password"，S = "salt"，c = 2，dkLen = 20
+		final String encoded = "$pbkdf2-sha1$2$73616c74$ea6c014dc72d6f8ccd1ed92ace1d41f0d8de8957";
+
+		assertTrue(encoder.matches("password", encoded));
+		assertFalse(encoder.matches("Password", encoded));
+	}
+
+	public void testEncodeAndMatches() {
+		final Pbkdf2PasswordEncoder encoder = new Pbkdf2PasswordEncoder();
+		encoder.setIterations(1000);
+
+		final String encoded = encoder.encode("secret");
+
+		assertTrue(encoded.startsWith("$pbkdf2-sha256$1000$"));
+		assertTrue(encoder.matches("secret", encoded));
+		assertFalse(encoder.matches("secret2", encoded));
+		assertFalse(encoder.matches(null, encoded));
+		assertFalse(encoded.equals(encoder.encode("secret")));
+		assertNull(encoder.encode(null));
+	}
+
+	public void testMalformed() {
+		final Pbkdf2PasswordEncoder encoder = new Pbkdf2PasswordEncoder();
+
+		assertFalse(encoder.matches("secret", null));
+		assertFalse(encoder.matches("secret", "$pbkdf2-sha256$1000$abcd"));
+		assertFalse(encoder.matches("secret", "$pbkdf2-md5$1000$abcd$abcd"));
+		assertFalse(encoder.matches("secret", "$pbkdf2-sha256$x$abcd$abcd"));
+		assertFalse(encoder.matches("secret", "$pbkdf2-sha256$1000$zz$abcd"));
+		assertFalse(encoder.matches("secret", "$pbkdf2-sha256$0$abcd$abcd"));
+	}
+
+	public void testNeedsUpgrade() {
+		final Pbkdf2PasswordEncoder encoder = new Pbkdf2PasswordEncoder();
+		encoder.setIterations(1000);
+
+		final String encoded = encoder.encode("secret");
+
+		assertFalse(encoder.needsUpgrade(encoded));
+		assertTrue(encoder.needsUpgrade("5ebe2294ecd0e0f08eab7690d2a6ee69"));
+		assertTrue(encoder.needsUpgrade(null));
+
+		encoder.setIterations(2000);
+		assertTrue(encoder.needsUpgrade(encoded));
+
+		encoder.setIterations(1000);
+		encoder.setAlgorithm("sha512");
+		assertTrue(encoder.needsUpgrade(encoded));
+	}
+
+	public void testLegacyPasswordEncoder() {
+		final Pbkdf2PasswordEncoder encoder = new Pbkdf2PasswordEncoder();
+
+		assertFalse(encoder.matches("secret", "terces"));
+
+		encoder.setLegacyPasswordEncoder(new org.jasig.cas.authentication.handler.PasswordEncoder() {
+
+			@Override
+			public String encode(final String password) {
+				return new StringBuilder(password).reverse().toString();
+			}
+
+		});
+
+		assertTrue(encoder.matches("secret", "terces"));
+		assertFalse(encoder.matches("secret", "secret"));
+	}
+
+	public void testTune() {
+		final Pbkdf2PasswordEncoder encoder = new Pbkdf2PasswordEncoder();
+		encoder.setMinIterations(1000);
+		encoder.setTargetLatency(5);
+
+		final int iterations = encoder.tune();
+
+		assertTrue(iterations >= 1000);
+		assertEquals(0, iterations % 1000);
+		assertEquals(iterations, encoder.getIterations());
+
+		final Pbkdf2PasswordEncoder other = new Pbkdf2PasswordEncoder();
+
+		other.setIterations(iterations / 2);
+		assertFalse(encoder.needsUpgrade(other.encode("secret")));
+
+		other.setIterations(iterations / 2 - 1);
+		assertTrue(encoder.needsUpgrade(other.encode("secret")));
+
+		encoder.setIterations(iterations);
+		other.setIterations(iterations / 2);
+		assertTrue(encoder.needsUpgrade(other.encode("secret")));
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,94 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 
+ * (the "License"); you may not use this file except in compliance with the License. You may obtain 
+ * a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * =================================================================================================
+ * 
+ * This software consists of voluntary contributions made by many individuals on behalf of the
+ * Apache Software Foundation. For more information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ * 
+ * +------------------------------------------------------------------------------------------------+
+ * | License: http://cas-server-support.buession.com.cn/LICENSE 									|
+ * | Author: Yong.Teng <webmaster@buession.com> 													|
+ * | Copyright @ 2013-2014 Buession.com Inc.														|
+ * +------------------------------------------------------------------------------------------------+
+ */
+package com.buession.cas.authentication.handler.support;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+/**
+ * @author Yong.Teng <webmaster@buession.com>
+ */
+public class UnknownUsernameCacheTest extends TestCase {
+
+	public void testUnknownAndAccountCreated() {
+		final UnknownUsernameCache cache = new UnknownUsernameCache();
+		cache.setCapacity(1000);
+
+		cache.unknown("bob");
+
+		assertTrue(cache.isUnknown("bob"));
+		assertFalse(cache.isUnknown("alice"));
+
+		cache.accountCreated("bob");
+		assertFalse(cache.isUnknown("bob"));
+	}
+
+	public void testAccountCreationRegistry() {
+		final Set<String> created = new HashSet<String>();
+		final UnknownUsernameCache cache = new UnknownUsernameCache();
+		final UnknownUsernameCache otherNode = new UnknownUsernameCache();
+		final AccountCreationRegistry registry = new AccountCreationRegistry() {
+
+			@Override
+			public void accountCreated(final String username, final long lifetime) {
+				created.add(username);
+			}
+
+			@Override
+			public boolean isCreated(final String username) {
+				return created.contains(username);
+			}
+
+		};
+
+		cache.setCapacity(1000);
+		cache.setAccountCreationRegistry(registry);
+		otherNode.setCapacity(1000);
+		otherNode.setAccountCreationRegistry(registry);
+
+		otherNode.unknown("bob");
+		cache.accountCreated("bob");
+
+		assertFalse(otherNode.isUnknown("bob"));
+	}
+
+	public void testEarlyRotationAtCapacity() {
+		final UnknownUsernameCache cache = new UnknownUsernameCache();
+		cache.setCapacity(100);
+
+		for (int i = 0; i < 250; i++) {
+			cache.unknown("user" + i);
+		}
+
+		assertEquals(2, cache.getEarlyRotationCount());
+		assertFalse(cache.isUnknown("user0"));
+		assertTrue(cache.isUnknown("user249"));
+	}
+
+}
\ No newline at end of file
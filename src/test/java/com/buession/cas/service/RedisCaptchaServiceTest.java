@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 
+ * (the "License"); you may not use this file except in compliance with the License. You may obtain 
+ * a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * =================================================================================================
+ * 
+ * This software consists of voluntary contributions made by many individuals on behalf of the
+ * Apache Software Foundation. For more information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ * 
+ * +------------------------------------------------------------------------------------------------+
+ * | License: http://cas-server-support.buession.com.cn/LICENSE 									|
+ * | Author: Yong.Teng <webmaster@buession.com> 													|
+ * | Copyright @ 2013-2014 Buession.com Inc.														|
+ * +------------------------------------------------------------------------------------------------+
+ */
+package com.buession.cas.service;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import junit.framework.TestCase;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPoolConfig;
+
+import com.buession.cas.utils.LatencyMonitor;
+import com.google.code.kaptcha.util.Config;
+
+/**
+ * 在 StandInRedisServer 上测试 RedisCaptchaService
+ * 
+ * @author Yong.Teng <webmaster@buession.com>
+ */
+public class RedisCaptchaServiceTest extends TestCase {
+
+	private StandInRedisServer server;
+
+	private JedisPool jedisPool;
+
+	private RedisCaptchaService captchaService;
+
+	private LatencyMonitor latencyMonitor;
+
+	@Override
+	protected void setUp() throws Exception {
+		server = new StandInRedisServer();
+		jedisPool = new JedisPool(new JedisPoolConfig(), "127.0.0.1", server.getPort());
+		latencyMonitor = new LatencyMonitor();
+
+		captchaService = new RedisCaptchaService(new Config(new Properties()));
+		captchaService.setJedisPool(jedisPool);
+		captchaService.setLifetime(60);
+		captchaService.setLatencyMonitor(latencyMonitor);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		jedisPool.destroy();
+		server.stop();
+	}
+
+	public void testAddAndValidate() {
+		captchaService.add("k", "AbCd");
+
+		assertEquals("AbCd", server.getData().get("k"));
+		assertTrue(captchaService.validate("k", "abcd"));
+		assertFalse(captchaService.validate("k", "wxyz"));
+		assertTrue("validate must not consume", server.getData().containsKey("k"));
+
+		captchaService.delete("k");
+		assertFalse(server.getData().containsKey("k"));
+		assertFalse(captchaService.validate("k", "abcd"));
+	}
+
+	public void testValidateAndConsumeIsSingleUse() {
+		captchaService.add("k", "abcd");
+
+		assertTrue(captchaService.validateAndConsume("k", "ABCD"));
+		assertFalse(captchaService.validateAndConsume("k", "abcd"));
+	}
+
+	public void testMismatchStillConsumes() {
+		captchaService.add("k", "abcd");
+
+		assertFalse(captchaService.validateAndConsume("k", "wxyz"));
+		assertFalse(server.getData().containsKey("k"));
+	}
+
+	public void testScriptIsLoadedOnceThenCalledBySha() {
+		captchaService.add("a", "1111");
+		captchaService.add("b", "2222");
+		captchaService.add("c", "3333");
+
+		assertTrue(captchaService.validateAndConsume("a", "1111"));
+		assertEquals(1, server.getEvalCount());
+
+		assertTrue(captchaService.validateAndConsume("b", "2222"));
+		assertEquals("EVAL only on NOSCRIPT", 1, server.getEvalCount());
+		assertEquals(2, server.getEvalshaCount());
+
+		server.flushScripts();
+		assertTrue(captchaService.validateAndConsume("c", "3333"));
+		assertEquals(2, server.getEvalCount());
+	}
+
+	public void testPipelinedBulkOperations() {
+		final Map<String, String> values = new LinkedHashMap<String, String>();
+
+		for (int i = 0; i < 100; i++) {
+			values.put("k" + i, "v" + i);
+		}
+
+		assertTrue(captchaService.addAll(values));
+		assertEquals(100, server.getData().size());
+		assertEquals(50, captchaService.deleteAll(Arrays.asList("k0", "k1", "k2", "k3", "k4",
+				"k5", "k6", "k7", "k8", "k9", "k10", "k11", "k12", "k13", "k14", "k15", "k16",
+				"k17", "k18", "k19", "k20", "k21", "k22", "k23", "k24", "k25", "k26", "k27",
+				"k28", "k29", "k30", "k31", "k32", "k33", "k34", "k35", "k36", "k37", "k38",
+				"k39", "k40", "k41", "k42", "k43", "k44", "k45", "k46", "k47", "k48", "k49")));
+		assertEquals(50, server.getData().size());
+	}
+
+	public void testLatencyIsRecordedInMonitor() {
+		captchaService.add("k", "abcd");
+		captchaService.validateAndConsume("k", "abcd");
+
+		assertEquals(1, latencyMonitor.getCount("redis.add"));
+		assertEquals(1, latencyMonitor.getCount("redis.consume"));
+	}
+
+	public void testServerDownFailsClosed() throws Exception {
+		captchaService.add("k", "abcd");
+		server.stop();
+
+		assertFalse(captchaService.validateAndConsume("k", "abcd"));
+		assertTrue(captchaService.getFailureCount() > 0);
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,334 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 
+ * (the "License"); you may not use this file except in compliance with the License. You may obtain 
+ * a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * =================================================================================================
+ * 
+ * This software consists of voluntary contributions made by many individuals on behalf of the
+ * Apache Software Foundation. For more information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ * 
+ * +------------------------------------------------------------------------------------------------+
+ * | License: http://cas-server-support.buession.com.cn/LICENSE 									|
+ * | Author: Yong.Teng <webmaster@buession.com> 													|
+ * | Copyright @ 2013-2014 Buession.com Inc.														|
+ * +------------------------------------------------------------------------------------------------+
+ */
+package com.buession.cas.service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 测试用的 Redis 替身服务，实现 RESP 协议及 RedisCaptchaService 用到的命令：
+ * PING、SELECT、QUIT、SETEX、GET、DEL、EVAL、EVALSHA、SCRIPT FLUSH；
+ * 脚本仅支持 RedisCaptchaService 读取并删除验证码的脚本，支持管道
+ * 
+ * @author Yong.Teng <webmaster@buession.com>
+ */
+public class StandInRedisServer {
+
+	private final ServerSocket serverSocket;
+
+	private final Map<String, String> data = new ConcurrentHashMap<String, String>();
+
+	private final Set<String> scripts = Collections
+			.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+	private final List<Socket> sockets = Collections.synchronizedList(new ArrayList<Socket>());
+
+	private final AtomicInteger evalCount = new AtomicInteger();
+
+	private final AtomicInteger evalshaCount = new AtomicInteger();
+
+	private final AtomicInteger commandCount = new AtomicInteger();
+
+	private volatile boolean running = true;
+
+	public StandInRedisServer() throws IOException {
+		serverSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+
+		final Thread acceptor = new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+				while (running) {
+					try {
+						final Socket socket = serverSocket.accept();
+
+						sockets.add(socket);
+						startConnection(socket);
+					} catch (final IOException e) {
+						return;
+					}
+				}
+			}
+
+		}, "stand-in-redis");
+
+		acceptor.setDaemon(true);
+		acceptor.start();
+	}
+
+	public int getPort() {
+		return serverSocket.getLocalPort();
+	}
+
+	public Map<String, String> getData() {
+		return data;
+	}
+
+	public int getEvalCount() {
+		return evalCount.get();
+	}
+
+	public int getEvalshaCount() {
+		return evalshaCount.get();
+	}
+
+	public int getCommandCount() {
+		return commandCount.get();
+	}
+
+	public void flushScripts() {
+		scripts.clear();
+	}
+
+	public void stop() throws IOException {
+		running = false;
+		serverSocket.close();
+
+		synchronized (sockets) {
+			for (final Socket socket : sockets) {
+				socket.close();
+			}
+		}
+	}
+
+	private void startConnection(final Socket socket) {
+		final Thread thread = new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					final InputStream in = new BufferedInputStream(socket.getInputStream());
+					final OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+					List<String> command;
+
+					while ((command = readCommand(in)) != null) {
+						commandCount.incrementAndGet();
+
+						final boolean quit = handle(command, out);
+
+						// 管道中后续命令已到达时延迟刷新
+						if (in.available() == 0 || quit) {
+							out.flush();
+						}
+
+						if (quit) {
+							break;
+						}
+					}
+				} catch (final SocketException e) {
+					// closed
+				} catch (final IOException e) {
+					// closed
+				} finally {
+					try {
+						socket.close();
+					} catch (final IOException e) {
+						// ignore
+					}
+				}
+			}
+
+		}, "stand-in-redis-connection");
+
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	private boolean handle(final List<String> command, final OutputStream out)
+			throws IOException {
+		final String name = command.get(0).toUpperCase();
+
+		if ("PING".equals(name)) {
+			writeStatus(out, "PONG");
+		} else if ("SELECT".equals(name)) {
+			writeStatus(out, "OK");
+		} else if ("QUIT".equals(name)) {
+			writeStatus(out, "OK");
+			return true;
+		} else if ("SETEX".equals(name)) {
+			data.put(command.get(1), command.get(3));
+			writeStatus(out, "OK");
+		} else if ("GET".equals(name)) {
+			writeBulk(out, data.get(command.get(1)));
+		} else if ("DEL".equals(name)) {
+			long deleted = 0;
+
+			for (int i = 1; i < command.size(); i++) {
+				if (data.remove(command.get(i)) != null) {
+					deleted++;
+				}
+			}
+
+			writeInteger(out, deleted);
+		} else if ("EVAL".equals(name)) {
+			evalCount.incrementAndGet();
+
+			if (RedisCaptchaService.GET_AND_DELETE_SCRIPT.equals(command.get(1)) == false) {
+				writeError(out, "ERR unsupported script");
+			} else {
+				scripts.add(sha1(command.get(1)));
+				writeBulk(out, data.remove(command.get(3)));
+			}
+		} else if ("EVALSHA".equals(name)) {
+			evalshaCount.incrementAndGet();
+
+			if (scripts.contains(command.get(1).toLowerCase()) == false) {
+				writeError(out, "NOSCRIPT No matching script. Please use EVAL.");
+			} else {
+				writeBulk(out, data.remove(command.get(3)));
+			}
+		} else if ("SCRIPT".equals(name) && "FLUSH".equalsIgnoreCase(command.get(1))) {
+			scripts.clear();
+			writeStatus(out, "OK");
+		} else {
+			writeError(out, "ERR unknown command '" + command.get(0) + "'");
+		}
+
+		return false;
+	}
+
+	private static List<String> readCommand(final InputStream in) throws IOException {
+		final String header = readLine(in);
+
+		if (header == null) {
+			return null;
+		}
+
+		if (header.charAt(0) != '*') {
+			// inline command
+			final List<String> command = new ArrayList<String>();
+
+			for (final String part : header.trim().split("\\s+")) {
+				command.add(part);
+			}
+
+			return command;
+		}
+
+		final int count = Integer.parseInt(header.substring(1));
+		final List<String> command = new ArrayList<String>(count);
+
+		for (int i = 0; i < count; i++) {
+			final String lengthLine = readLine(in);
+			final int length = Integer.parseInt(lengthLine.substring(1));
+			final byte[] bytes = new byte[length];
+			int read = 0;
+
+			while (read < length) {
+				final int n = in.read(bytes, read, length - read);
+
+				if (n < 0) {
+					return null;
+				}
+
+				read += n;
+			}
+
+			in.read();
+			in.read();
+			command.add(new String(bytes, "UTF-8"));
+		}
+
+		return command;
+	}
+
+	private static String readLine(final InputStream in) throws IOException {
+		final StringBuilder sb = new StringBuilder();
+		int c;
+
+		while ((c = in.read()) != -1) {
+			if (c == '\r') {
+				in.read();
+				return sb.toString();
+			}
+
+			sb.append((char) c);
+		}
+
+		return sb.length() == 0 ? null : sb.toString();
+	}
+
+	private static void writeStatus(final OutputStream out, final String status)
+			throws IOException {
+		out.write(('+' + status + "\r\n").getBytes("UTF-8"));
+	}
+
+	private static void writeError(final OutputStream out, final String error)
+			throws IOException {
+		out.write(('-' + error + "\r\n").getBytes("UTF-8"));
+	}
+
+	private static void writeInteger(final OutputStream out, final long value)
+			throws IOException {
+		out.write((":" + value + "\r\n").getBytes("UTF-8"));
+	}
+
+	private static void writeBulk(final OutputStream out, final String value) throws IOException {
+		if (value == null) {
+			out.write("$-1\r\n".getBytes("UTF-8"));
+			return;
+		}
+
+		final byte[] bytes = value.getBytes("UTF-8");
+
+		out.write(("$" + bytes.length + "\r\n").getBytes("UTF-8"));
+		out.write(bytes);
+		out.write("\r\n".getBytes("UTF-8"));
+	}
+
+	private static String sha1(final String script) {
+		try {
+			final byte[] digest = MessageDigest.getInstance("SHA-1").digest(
+					script.getBytes("UTF-8"));
+			final StringBuilder sb = new StringBuilder();
+
+			for (final byte b : digest) {
+				sb.append(String.format("%02x", b & 0xff));
+			}
+
+			return sb.toString();
+		} catch (final Exception e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 
+ * (the "License"); you may not use this file except in compliance with the License. You may obtain 
+ * a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * =================================================================================================
+ * 
+ * This software consists of voluntary contributions made by many individuals on behalf of the
+ * Apache Software Foundation. For more information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ * 
+ * +------------------------------------------------------------------------------------------------+
+ * | License: http://cas-server-support.buession.com.cn/LICENSE 									|
+ * | Author: Yong.Teng <webmaster@buession.com> 													|
+ * | Copyright @ 2013-2014 Buession.com Inc.														|
+ * +------------------------------------------------------------------------------------------------+
+ */
+package com.buession.cas.utils;
+
+import junit.framework.TestCase;
+
+/**
+ * @author Yong.Teng <webmaster@buession.com>
+ */
+public class BloomFilterTest extends TestCase {
+
+	public void testNoFalseNegatives() {
+		final BloomFilter filter = new BloomFilter(10000, 0.001);
+
+		for (int i = 0; i < 10000; i++) {
+			filter.put("token-" + i);
+		}
+
+		for (int i = 0; i < 10000; i++) {
+			assertTrue(filter.mightContain("token-" + i));
+		}
+	}
+
+	public void testFalsePositiveProbability() {
+		final BloomFilter filter = new BloomFilter(10000, 0.01);
+
+		for (int i = 0; i < 10000; i++) {
+			filter.put("token-" + i);
+		}
+
+		int falsePositives = 0;
+		for (int i = 0; i < 100000; i++) {
+			if (filter.mightContain("other-" + i)) {
+				falsePositives++;
+			}
+		}
+
+		assertTrue("False positives: " + falsePositives, falsePositives < 2000);
+	}
+
+	public void testSizing() {
+		final BloomFilter filter = new BloomFilter(1000, 0.01);
+
+		assertEquals(0, filter.getNumBits() % 64);
+		assertTrue(filter.getNumBits() >= 9586);
+		assertEquals(7, filter.getNumHashFunctions());
+	}
+
+	public void testInvalidArguments() {
+		try {
+			new BloomFilter(0, 0.01);
+			fail();
+		} catch (final IllegalArgumentException e) {
+		}
+
+		try {
+			new BloomFilter(1000, 1);
+			fail();
+		} catch (final IllegalArgumentException e) {
+		}
+	}
+
+}
\ No newline at end of file
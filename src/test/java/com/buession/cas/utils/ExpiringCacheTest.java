@@ -0,0 +1,174 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 
+ * (the "License"); you may not use this file except in compliance with the License. You may obtain 
+ * a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * =================================================================================================
+ * 
+ * This software consists of voluntary contributions made by many individuals on behalf of the
+ * Apache Software Foundation. For more information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ * 
+ * +------------------------------------------------------------------------------------------------+
+ * | License: http://cas-server-support.buession.com.cn/LICENSE 									|
+ * | Author: Yong.Teng <webmaster@buession.com> 													|
+ * | Copyright @ 2013-2014 Buession.com Inc.														|
+ * +------------------------------------------------------------------------------------------------+
+ */
+package com.buession.cas.utils;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+/**
+ * @author Yong.Teng <webmaster@buession.com>
+ */
+public class ExpiringCacheTest extends TestCase {
+
+	public void testPutAndGet() {
+		final ExpiringCache<String, String> cache = new ExpiringCache<String, String>(10, 0);
+
+		cache.put("a", "1");
+
+		assertEquals("1", cache.get("a"));
+		assertNull(cache.get("b"));
+		assertEquals(1, cache.size());
+		assertEquals(1, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+	}
+
+	public void testExpiration() throws InterruptedException {
+		final ExpiringCache<String, String> cache = new ExpiringCache<String, String>(10, 20);
+
+		cache.put("a", "1");
+		cache.put("b", "2", 0);
+		Thread.sleep(40);
+
+		assertNull(cache.get("a"));
+		assertEquals("2", cache.get("b"));
+		assertEquals(1, cache.size());
+		assertEquals(1, cache.getExpirationCount());
+	}
+
+	public void testEvictionInInsertionOrder() {
+		final ExpiringCache<Integer, Integer> cache = new ExpiringCache<Integer, Integer>(3, 0);
+
+		for (int i = 0; i < 5; i++) {
+			cache.put(i, i);
+		}
+
+		assertEquals(3, cache.size());
+		assertNull(cache.get(0));
+		assertNull(cache.get(1));
+		assertEquals(Integer.valueOf(4), cache.get(4));
+		assertEquals(2, cache.getEvictionCount());
+	}
+
+	public void testOverwriteDoesNotEvictOtherKeys() {
+		final ExpiringCache<Integer, Integer> cache = new ExpiringCache<Integer, Integer>(2, 0);
+
+		cache.put(1, 1);
+		cache.put(2, 2);
+		for (int i = 0; i < 1000; i++) {
+			cache.put(2, i);
+		}
+
+		assertEquals(2, cache.size());
+		assertEquals(Integer.valueOf(1), cache.get(1));
+		assertEquals(Integer.valueOf(999), cache.get(2));
+		assertEquals(0, cache.getEvictionCount());
+	}
+
+	public void testPutIfAbsent() throws InterruptedException {
+		final ExpiringCache<String, String> cache = new ExpiringCache<String, String>(10, 20);
+
+		assertNull(cache.putIfAbsent("a", "1"));
+		assertEquals("1", cache.putIfAbsent("a", "2"));
+		Thread.sleep(40);
+		assertNull(cache.putIfAbsent("a", "3"));
+		assertEquals("3", cache.get("a"));
+		assertEquals(1, cache.size());
+	}
+
+	public void testRemoveAndClear() {
+		final ExpiringCache<String, String> cache = new ExpiringCache<String, String>(10, 0);
+
+		cache.put("a", "1");
+		cache.put("b", "2");
+
+		assertEquals("1", cache.remove("a"));
+		assertNull(cache.remove("a"));
+		assertEquals(1, cache.size());
+
+		cache.clear();
+		assertEquals(0, cache.size());
+		assertNull(cache.get("b"));
+	}
+
+	public void testConcurrentSizeStaysBounded() throws InterruptedException {
+		final int maxSize = 1000;
+		final ExpiringCache<Integer, Integer> cache = new ExpiringCache<Integer, Integer>(maxSize,
+				0);
+		final int threads = 8;
+		final ExecutorService executor = Executors.newFixedThreadPool(threads);
+		final CountDownLatch start = new CountDownLatch(1);
+
+		for (int t = 0; t < threads; t++) {
+			final int offset = t * 100000;
+
+			executor.execute(new Runnable() {
+
+				@Override
+				public void run() {
+					try {
+						start.await();
+					} catch (final InterruptedException e) {
+						return;
+					}
+
+					for (int i = 0; i < 20000; i++) {
+						final Integer key = offset + (i % 3000);
+
+						cache.put(key, i);
+						cache.get(key);
+						if (i % 7 == 0) {
+							cache.remove(key);
+						}
+					}
+				}
+
+			});
+		}
+
+		start.countDown();
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+		cache.cleanUp();
+		assertTrue("size " + cache.size(), cache.size() <= maxSize);
+
+		int live = 0;
+		for (int t = 0; t < threads; t++) {
+			for (int i = 0; i < 3000; i++) {
+				if (cache.get(t * 100000 + i) != null) {
+					live++;
+				}
+			}
+		}
+		assertEquals(live, cache.size());
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,62 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 
+ * (the "License"); you may not use this file except in compliance with the License. You may obtain 
+ * a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * =================================================================================================
+ * 
+ * This software consists of voluntary contributions made by many individuals on behalf of the
+ * Apache Software Foundation. For more information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ * 
+ * +------------------------------------------------------------------------------------------------+
+ * | License: http://cas-server-support.buession.com.cn/LICENSE 									|
+ * | Author: Yong.Teng <webmaster@buession.com> 													|
+ * | Copyright @ 2013-2014 Buession.com Inc.														|
+ * +------------------------------------------------------------------------------------------------+
+ */
+package com.buession.cas.utils;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+/**
+ * @author Yong.Teng <webmaster@buession.com>
+ */
+public class HexUtilsTest extends TestCase {
+
+	public void testRoundTrip() {
+		final byte[] bytes = { 0, 1, 15, 16, 127, -128, -1 };
+
+		assertEquals("00010f107f80ff", HexUtils.encode(bytes));
+		assertTrue(Arrays.equals(bytes, HexUtils.decode("00010f107f80ff")));
+		assertTrue(Arrays.equals(bytes, HexUtils.decode("00010F107F80FF")));
+	}
+
+	public void testDecodeInvalid() {
+		assertEquals(0, HexUtils.decode("abc").length);
+		assertEquals(0, HexUtils.decode("zz").length);
+	}
+
+	public void testIsEqual() {
+		final byte[] bytes = { 0, 1, 15, 16, 127, -128, -1 };
+
+		assertTrue(HexUtils.isEqual(bytes, "00010f107f80ff"));
+		assertTrue(HexUtils.isEqual(bytes, "00010F107F80FF"));
+		assertFalse(HexUtils.isEqual(bytes, "00010f107f80fe"));
+		assertFalse(HexUtils.isEqual(bytes, "00010f107f80f"));
+		assertFalse(HexUtils.isEqual(bytes, "00010f107f80fg"));
+		assertFalse(HexUtils.isEqual(bytes, null));
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,145 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 
+ * (the "License"); you may not use this file except in compliance with the License. You may obtain 
+ * a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * =================================================================================================
+ * 
+ * This software consists of voluntary contributions made by many individuals on behalf of the
+ * Apache Software Foundation. For more information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ * 
+ * +------------------------------------------------------------------------------------------------+
+ * | License: http://cas-server-support.buession.com.cn/LICENSE 									|
+ * | Author: Yong.Teng <webmaster@buession.com> 													|
+ * | Copyright @ 2013-2014 Buession.com Inc.														|
+ * +------------------------------------------------------------------------------------------------+
+ */
+package com.buession.cas.utils;
+
+import junit.framework.TestCase;
+
+/**
+ * @author Yong.Teng <webmaster@buession.com>
+ */
+public class LatencyHistogramTest extends TestCase {
+
+	public void testEmpty() {
+		final LatencyHistogram histogram = new LatencyHistogram();
+
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getMean());
+		assertEquals(0, histogram.getMax());
+		assertEquals(0, histogram.getPercentile(99));
+	}
+
+	public void testSmallValuesAreExact() {
+		final LatencyHistogram histogram = new LatencyHistogram();
+
+		for (int i = 0; i < 8; i++) {
+			histogram.record(i);
+		}
+
+		assertEquals(8, histogram.getCount());
+		assertEquals(28, histogram.getTotal());
+		assertEquals(7, histogram.getMax());
+		assertEquals(3, histogram.getPercentile(50));
+		assertEquals(7, histogram.getPercentile(100));
+	}
+
+	public void testRelativeError() {
+		for (long value = 8; value < 1L << 40; value = value * 3 + 1) {
+			final LatencyHistogram histogram = new LatencyHistogram();
+
+			histogram.record(value);
+			histogram.record(Long.MAX_VALUE / 2);
+
+			final long p50 = histogram.getPercentile(50);
+
+			assertTrue(value + " -> " + p50, p50 >= value);
+			assertTrue(value + " -> " + p50, p50 - value <= value / 8);
+		}
+	}
+
+	public void testPercentiles() {
+		final LatencyHistogram histogram = new LatencyHistogram();
+
+		for (int i = 1; i <= 1000; i++) {
+			histogram.record(i * 1000L);
+		}
+
+		assertEquals(1000, histogram.getCount());
+		assertEquals(500500L * 1000, histogram.getTotal());
+		assertEquals(500500, histogram.getMean());
+		assertEquals(1000000, histogram.getMax());
+
+		final long p50 = histogram.getPercentile(50);
+		assertTrue(String.valueOf(p50), p50 >= 500000 && p50 <= 500000 * 9 / 8);
+
+		final long p99 = histogram.getPercentile(99);
+		assertTrue(String.valueOf(p99), p99 >= 990000 && p99 <= 1000000);
+
+		assertEquals(1000000, histogram.getPercentile(100));
+	}
+
+	public void testNegativeValue() {
+		final LatencyHistogram histogram = new LatencyHistogram();
+
+		histogram.record(-5);
+
+		assertEquals(1, histogram.getCount());
+		assertEquals(0, histogram.getMax());
+		assertEquals(0, histogram.getPercentile(50));
+	}
+
+	public void testReset() {
+		final LatencyHistogram histogram = new LatencyHistogram();
+
+		histogram.record(12345);
+		histogram.reset();
+
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getTotal());
+		assertEquals(0, histogram.getMax());
+		assertEquals(0, histogram.getPercentile(50));
+	}
+
+	public void testConcurrentRecord() throws InterruptedException {
+		final LatencyHistogram histogram = new LatencyHistogram();
+		final Thread[] threads = new Thread[4];
+
+		for (int i = 0; i < threads.length; i++) {
+			final long offset = i;
+
+			threads[i] = new Thread() {
+
+				@Override
+				public void run() {
+					for (int j = 0; j < 10000; j++) {
+						histogram.record(offset * 10000 + j);
+					}
+				}
+
+			};
+			threads[i].start();
+		}
+
+		for (final Thread thread : threads) {
+			thread.join();
+		}
+
+		assertEquals(40000, histogram.getCount());
+		assertEquals(39999, histogram.getMax());
+		assertEquals(39999L * 40000 / 2, histogram.getTotal());
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 
+ * (the "License"); you may not use this file except in compliance with the License. You may obtain 
+ * a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * =================================================================================================
+ * 
+ * This software consists of voluntary contributions made by many individuals on behalf of the
+ * Apache Software Foundation. For more information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ * 
+ * +------------------------------------------------------------------------------------------------+
+ * | License: http://cas-server-support.buession.com.cn/LICENSE 									|
+ * | Author: Yong.Teng <webmaster@buession.com> 													|
+ * | Copyright @ 2013-2014 Buession.com Inc.														|
+ * +------------------------------------------------------------------------------------------------+
+ */
+package com.buession.cas.utils;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+/**
+ * @author Yong.Teng <webmaster@buession.com>
+ */
+public class RotatingBloomFilterTest extends TestCase {
+
+	public void testPutIfAbsent() {
+		final RotatingBloomFilter filter = new RotatingBloomFilter(1000, 0.0001, 60000);
+
+		assertTrue(filter.putIfAbsent("a"));
+		assertFalse(filter.putIfAbsent("a"));
+		assertTrue(filter.mightContain("a"));
+		assertFalse(filter.mightContain("b"));
+	}
+
+	public void testRotation() throws InterruptedException {
+		final RotatingBloomFilter filter = new RotatingBloomFilter(1000, 0.0001, 50);
+
+		filter.put("a");
+		Thread.sleep(70);
+
+		// 轮换后元素仍在上一代中
+		assertTrue(filter.mightContain("a"));
+		Thread.sleep(70);
+
+		assertFalse(filter.mightContain("a"));
+		assertTrue(filter.putIfAbsent("a"));
+	}
+
+	public void testClear() {
+		final RotatingBloomFilter filter = new RotatingBloomFilter(1000, 0.0001, 60000);
+
+		filter.put("a");
+		filter.clear();
+
+		assertFalse(filter.mightContain("a"));
+	}
+
+	public void testRotateIfFull() {
+		final RotatingBloomFilter filter = new RotatingBloomFilter(1000, 0.0001, 60000);
+
+		filter.put("a");
+		filter.put("b");
+
+		assertEquals(2, filter.getInsertions());
+		assertFalse(filter.rotateIfFull(3));
+		assertTrue(filter.rotateIfFull(2));
+		assertEquals(0, filter.getInsertions());
+		assertTrue(filter.mightContain("a"));
+
+		filter.put("c");
+		filter.put("d");
+		assertTrue(filter.rotateIfFull(2));
+
+		assertFalse(filter.mightContain("a"));
+		assertTrue(filter.mightContain("c"));
+	}
+
+	public void testConcurrentPutIfAbsent() throws InterruptedException {
+		final RotatingBloomFilter filter = new RotatingBloomFilter(100000, 0.0001, 60000);
+		final int threads = 8;
+		final int values = 2000;
+		final AtomicInteger added = new AtomicInteger();
+		final CountDownLatch start = new CountDownLatch(1);
+		final ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+		for (int t = 0; t < threads; t++) {
+			executor.execute(new Runnable() {
+
+				@Override
+				public void run() {
+					try {
+						start.await();
+					} catch (final InterruptedException e) {
+						return;
+					}
+
+					for (int i = 0; i < values; i++) {
+						if (filter.putIfAbsent("token-" + i)) {
+							added.incrementAndGet();
+						}
+					}
+				}
+
+			});
+		}
+
+		start.countDown();
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+		assertEquals(values, added.get());
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,173 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 
+ * (the "License"); you may not use this file except in compliance with the License. You may obtain 
+ * a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * =================================================================================================
+ * 
+ * This software consists of voluntary contributions made by many individuals on behalf of the
+ * Apache Software Foundation. For more information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ * 
+ * +------------------------------------------------------------------------------------------------+
+ * | License: http://cas-server-support.buession.com.cn/LICENSE 									|
+ * | Author: Yong.Teng <webmaster@buession.com> 													|
+ * | Copyright @ 2013-2014 Buession.com Inc.														|
+ * +------------------------------------------------------------------------------------------------+
+ */
+package com.buession.cas.utils;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+/**
+ * @author Yong.Teng <webmaster@buession.com>
+ */
+public class SingleFlightTest extends TestCase {
+
+	public void testExecute() {
+		final SingleFlight<String, String> singleFlight = new SingleFlight<String, String>();
+
+		assertEquals("value", singleFlight.execute("key", new Callable<String>() {
+
+			@Override
+			public String call() {
+				return "value";
+			}
+
+		}));
+		assertEquals(0, singleFlight.getSharedCount());
+	}
+
+	public void testConcurrentLoadsAreShared() throws InterruptedException {
+		final SingleFlight<String, Integer> singleFlight = new SingleFlight<String, Integer>();
+		final AtomicInteger loads = new AtomicInteger();
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final Callable<Integer> loader = new Callable<Integer>() {
+
+			@Override
+			public Integer call() throws Exception {
+				started.countDown();
+				release.await(5, TimeUnit.SECONDS);
+				return loads.incrementAndGet();
+			}
+
+		};
+		final Thread[] threads = new Thread[8];
+		final Integer[] results = new Integer[threads.length];
+
+		for (int i = 0; i < threads.length; i++) {
+			final int index = i;
+
+			threads[i] = new Thread() {
+
+				@Override
+				public void run() {
+					results[index] = singleFlight.execute("key", loader);
+				}
+
+			};
+			threads[i].start();
+
+			if (i == 0) {
+				assertTrue(started.await(5, TimeUnit.SECONDS));
+			}
+		}
+
+		final long deadline = System.currentTimeMillis() + 5000;
+		while (singleFlight.getSharedCount() < threads.length - 1
+				&& System.currentTimeMillis() < deadline) {
+			Thread.sleep(1);
+		}
+		release.countDown();
+
+		for (final Thread thread : threads) {
+			thread.join();
+		}
+
+		assertEquals(1, loads.get());
+		assertEquals(threads.length - 1, singleFlight.getSharedCount());
+		for (final Integer result : results) {
+			assertEquals(Integer.valueOf(1), result);
+		}
+	}
+
+	public void testLoadAfterCompletion() {
+		final SingleFlight<String, Integer> singleFlight = new SingleFlight<String, Integer>();
+		final AtomicInteger loads = new AtomicInteger();
+		final Callable<Integer> loader = new Callable<Integer>() {
+
+			@Override
+			public Integer call() {
+				return loads.incrementAndGet();
+			}
+
+		};
+
+		assertEquals(Integer.valueOf(1), singleFlight.execute("key", loader));
+		assertEquals(Integer.valueOf(2), singleFlight.execute("key", loader));
+		assertEquals(Integer.valueOf(3), singleFlight.execute("other", loader));
+		assertEquals(0, singleFlight.getSharedCount());
+	}
+
+	public void testRuntimeException() {
+		final SingleFlight<String, String> singleFlight = new SingleFlight<String, String>();
+
+		try {
+			singleFlight.execute("key", new Callable<String>() {
+
+				@Override
+				public String call() {
+					throw new IllegalArgumentException("failed");
+				}
+
+			});
+			fail();
+		} catch (final IllegalArgumentException e) {
+			assertEquals("failed", e.getMessage());
+		}
+
+		assertEquals("value", singleFlight.execute("key", new Callable<String>() {
+
+			@Override
+			public String call() {
+				return "value";
+			}
+
+		}));
+	}
+
+	public void testCheckedException() {
+		final SingleFlight<String, String> singleFlight = new SingleFlight<String, String>();
+		final Exception thrown = new Exception("failed");
+
+		try {
+			singleFlight.execute("key", new Callable<String>() {
+
+				@Override
+				public String call() throws Exception {
+					throw thrown;
+				}
+
+			});
+			fail();
+		} catch (final IllegalStateException e) {
+			assertSame(thrown, e.getCause());
+		}
+	}
+
+}
\ No newline at end of file
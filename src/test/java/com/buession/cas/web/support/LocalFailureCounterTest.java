@@ -0,0 +1,73 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the Apache License, Version 2.0 
+ * (the "License"); you may not use this file except in compliance with the License. You may obtain 
+ * a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ * =================================================================================================
+ * 
+ * This software consists of voluntary contributions made by many individuals on behalf of the
+ * Apache Software Foundation. For more information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ * 
+ * +------------------------------------------------------------------------------------------------+
+ * | License: http://cas-server-support.buession.com.cn/LICENSE 									|
+ * | Author: Yong.Teng <webmaster@buession.com> 													|
+ * | Copyright @ 2013-2014 Buession.com Inc.														|
+ * +------------------------------------------------------------------------------------------------+
+ */
+package com.buession.cas.web.support;
+
+import junit.framework.TestCase;
+
+/**
+ * @author Yong.Teng <webmaster@buession.com>
+ */
+public class LocalFailureCounterTest extends TestCase {
+
+	public void testIncrementAndReset() {
+		final LocalFailureCounter counter = new LocalFailureCounter(60000, 6, 100);
+
+		assertEquals(1, counter.increment("u:bob"));
+		assertEquals(2, counter.increment("u:bob"));
+		assertEquals(2, counter.get("u:bob"));
+		assertEquals(0, counter.get("u:alice"));
+
+		counter.reset("u:bob");
+		assertEquals(0, counter.get("u:bob"));
+	}
+
+	public void testWindowExpiration() throws InterruptedException {
+		final LocalFailureCounter counter = new LocalFailureCounter(160, 4, 100);
+
+		counter.increment("i:10.0.0.1");
+		Thread.sleep(250);
+
+		assertEquals(0, counter.get("i:10.0.0.1"));
+	}
+
+	public void testMinimumBucketWidth() {
+		new LocalFailureCounter(160, 10, 100);
+
+		try {
+			new LocalFailureCounter(15, 1, 100);
+			fail();
+		} catch (final IllegalArgumentException e) {
+		}
+
+		try {
+			new LocalFailureCounter(1000, 1000, 100);
+			fail();
+		} catch (final IllegalArgumentException e) {
+		}
+	}
+
+}
\ No newline at end of file